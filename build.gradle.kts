@@ -1,38 +1,140 @@
 plugins {
 	java
-	id("org.springframework.boot") version "3.1.0"
-	id("io.spring.dependency-management") version "1.1.0"
+	id("org.springframework.boot") version "3.2.0"
+	id("io.spring.dependency-management") version "1.1.4"
 	jacoco
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.openclassroomsProject"
 version = "0.0.1-SNAPSHOT"
-java.sourceCompatibility = JavaVersion.VERSION_17
+java {
+	toolchain {
+		languageVersion.set(JavaLanguageVersion.of(21))
+	}
+}
 
 repositories {
 	mavenCentral()
 }
 
+sourceSets {
+	create("loadTest")
+}
+
 dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-data-mongodb")
+	implementation("org.springframework.boot:spring-boot-starter-data-mongodb-reactive")
 	implementation("org.springframework.boot:spring-boot-starter-web")
+	implementation("org.springframework.boot:spring-boot-starter-webflux")
 	implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
-	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.1.0")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	implementation("org.springframework.boot:spring-boot-starter-aop")
+	implementation("io.micrometer:micrometer-registry-prometheus")
+	implementation("com.github.ben-manes.caffeine:caffeine")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+	implementation("org.apache.lucene:lucene-core:9.9.1")
+	implementation("org.apache.lucene:lucene-analysis-common:9.9.1")
+	implementation("org.apache.lucene:lucene-queryparser:9.9.1")
+	implementation("org.apache.lucene:lucene-highlighter:9.9.1")
+	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
-	testImplementation("org.testcontainers:mongodb:1.18.1")
+	testImplementation("org.testcontainers:mongodb:1.19.3")
 	testImplementation ("org.junit.jupiter:junit-jupiter:5.8.1")
-	testImplementation ("org.testcontainers:testcontainers:1.18.1")
-	testImplementation ("org.testcontainers:junit-jupiter:1.18.1")
+	testImplementation ("org.testcontainers:testcontainers:1.19.3")
+	testImplementation ("org.testcontainers:junit-jupiter:1.19.3")
 	testImplementation("com.openpojo:openpojo:0.9.1")
+	testImplementation("io.projectreactor:reactor-test")
+	jmhImplementation("org.testcontainers:mongodb:1.19.3")
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
 
+jacoco {
+	toolVersion = "0.8.11"
+}
+
 tasks.test {
 	finalizedBy(tasks.jacocoTestReport)
 }
 tasks.jacocoTestReport {
 	dependsOn(tasks.test)
-}
\ No newline at end of file
+}
+
+// Closed loop HTTP load test against a running instance, see README (Load test)
+tasks.register<JavaExec>("loadTest") {
+	group = "verification"
+	description = "Measures the latency percentiles and the maximum concurrency of a running instance."
+	classpath = sourceSets["loadTest"].runtimeClasspath
+	mainClass.set("com.openclassroomsProject.Mediscreennotes.loadtest.NoteLoadTest")
+	args = listOf(
+		project.findProperty("baseUrl")?.toString() ?: "http://localhost:8082",
+		project.findProperty("label")?.toString() ?: "unnamed",
+		project.findProperty("levels")?.toString() ?: "50,100,200,400,800,1600",
+		project.findProperty("stepSeconds")?.toString() ?: "20",
+		project.findProperty("sloMillis")?.toString() ?: "500"
+	)
+}
+
+jmh {
+	warmupIterations.set(3)
+	iterations.set(5)
+	fork.set(1)
+	resultFormat.set("JSON")
+	// bytes allocated per operation (gc.alloc.rate.norm) next to each score
+	profilers.set(listOf("gc"))
+	// -Pjmh.includes=TriggerMatcher runs only the matching benchmarks
+	project.findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+}
+
+val jmhResults = layout.buildDirectory.file("results/jmh/results.json")
+val jmhBaseline = file("benchmarks/baseline.json")
+
+// Records the last JMH results as the local baseline (not committed, the scores only compare runs of the same machine)
+tasks.register<Copy>("jmhSaveBaseline") {
+	group = "benchmark"
+	description = "Copies the last JMH results to the local baseline benchmarks/baseline.json."
+	from(jmhResults)
+	into(jmhBaseline.parentFile)
+	rename { jmhBaseline.name }
+}
+
+// Prints the score of each benchmark of the last JMH run next to the baseline
+tasks.register("jmhCompare") {
+	group = "benchmark"
+	description = "Compares the last JMH results with the local baseline benchmarks/baseline.json."
+	doLast {
+		if (!jmhBaseline.exists()) {
+			throw GradleException("No baseline: run jmh then jmhSaveBaseline on this machine before the change to measure")
+		}
+		@Suppress("UNCHECKED_CAST")
+		fun runs(results: File) = groovy.json.JsonSlurper().parse(results) as List<Map<String, Any?>>
+		fun jvm(results: File) = runs(results).firstOrNull()?.let { "${it["vmName"]} ${it["jdkVersion"]}" } ?: "unknown JVM"
+		fun scores(results: File): Map<String, Pair<Double, String>> {
+			return runs(results).associate { run ->
+				@Suppress("UNCHECKED_CAST")
+				val params = (run["params"] as Map<String, Any?>?)?.entries?.joinToString(",", "(", ")") { "${it.key}=${it.value}" } ?: ""
+				@Suppress("UNCHECKED_CAST")
+				val metric = run["primaryMetric"] as Map<String, Any?>
+				val name = run["benchmark"].toString().split('.').takeLast(2).joinToString(".")
+				(name + params) to Pair((metric["score"] as Number).toDouble(), metric["scoreUnit"].toString())
+			}
+		}
+		val currentJvm = jvm(jmhResults.get().asFile)
+		val baselineJvm = jvm(jmhBaseline)
+		println("baseline : $baselineJvm, current : $currentJvm")
+		if (currentJvm != baselineJvm) {
+			println("WARNING the baseline was measured on another JVM, the deltas are not comparable")
+		}
+		val current = scores(jmhResults.get().asFile)
+		val baseline = scores(jmhBaseline)
+		current.toSortedMap().forEach { (name, score) ->
+			val reference = baseline[name]
+			val delta = reference?.let { String.format("%+.1f%%", (score.first - it.first) / it.first * 100) } ?: "new"
+			println(String.format("%-80s %14.3f %-8s %s", name, score.first, score.second, delta))
+		}
+	}
+}
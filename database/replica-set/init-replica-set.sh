@@ -0,0 +1,28 @@
+#!/bin/bash
+# Initiates the replica set, its members are named after the host so the application started on the host reaches them.
+set -e
+
+for port in 27017 27018 27019; do
+  until mongosh --quiet --host "host.docker.internal:$port" --eval 'db.adminCommand({ ping: 1 }).ok' > /dev/null 2>&1; do
+    sleep 1
+  done
+done
+
+mongosh --quiet --host host.docker.internal:27017 --eval '
+  try {
+    rs.status().ok;
+  } catch (error) {
+    rs.initiate({
+      _id: "rs-notes",
+      members: [
+        { _id: 0, host: "host.docker.internal:27017", priority: 2 },
+        { _id: 1, host: "host.docker.internal:27018" },
+        { _id: 2, host: "host.docker.internal:27019" }
+      ]
+    });
+  }
+'
+until [ "$(mongosh --quiet --host host.docker.internal:27017 --eval 'db.hello().isWritablePrimary')" = "true" ]; do
+  sleep 1
+done
+mongosh --quiet --host host.docker.internal:27017 --eval 'rs.status().members.forEach(member => print(member.name, member.stateStr))'
@@ -0,0 +1,28 @@
+#!/bin/bash
+# Initiates the replica sets of the config server and of the shards, then adds the shards to the cluster.
+set -e
+
+wait_for() {
+  until mongosh --quiet --host "$1" --eval 'db.adminCommand({ ping: 1 }).ok' > /dev/null 2>&1; do
+    sleep 1
+  done
+}
+
+initiate() {
+  wait_for "$1"
+  mongosh --quiet --host "$1" --eval "try { rs.status().ok } catch (error) { rs.initiate($2).ok }"
+  until [ "$(mongosh --quiet --host "$1" --eval 'db.hello().isWritablePrimary')" = "true" ]; do
+    sleep 1
+  done
+}
+
+initiate notes-config:27019 '{ _id: "rs-config", configsvr: true, members: [{ _id: 0, host: "notes-config:27019" }] }'
+initiate notes-shard-1:27018 '{ _id: "rs-shard-1", members: [{ _id: 0, host: "notes-shard-1:27018" }] }'
+initiate notes-shard-2:27018 '{ _id: "rs-shard-2", members: [{ _id: 0, host: "notes-shard-2:27018" }] }'
+
+wait_for notes-mongos:27017
+mongosh --quiet --host notes-mongos:27017 --eval '
+  sh.addShard("rs-shard-1/notes-shard-1:27018");
+  sh.addShard("rs-shard-2/notes-shard-2:27018");
+  printjson(sh.status().value.shards);
+'
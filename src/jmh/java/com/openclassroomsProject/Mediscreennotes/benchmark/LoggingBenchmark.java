@@ -0,0 +1,93 @@
+package com.openclassroomsProject.Mediscreennotes.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.openclassroomsProject.Mediscreennotes.logging.CallLogSamplingFilter;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.openjdk.jmh.annotations.*;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the log line written on every service and controller call: the former string concatenation
+ * with the whole note, the current parameterized message, and the same message sampled at 1% by
+ * CallLogSamplingFilter, when the level is enabled and when it is not.
+ * Enabled events are formatted with the console pattern of Spring Boot and written to a discarding stream,
+ * so the benchmark measures the formatting and not the terminal. Run it with the gc profiler to get the
+ * bytes allocated per call (gc.alloc.rate.norm).
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggingBenchmark {
+
+    @Param({"INFO", "WARN"})
+    public String level;
+
+    private LoggerContext loggerContext;
+    private LoggerContext sampledContext;
+    private Logger logger;
+    private Logger sampledLogger;
+    private Note note;
+
+    @Setup
+    public void setUp() {
+        loggerContext = new LoggerContext();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%t] %-40.40logger{39} : %m%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(loggerContext);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        logger = loggerContext.getLogger(LoggingBenchmark.class);
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        logger.setLevel(Level.toLevel(level));
+        sampledContext = new LoggerContext();
+        CallLogSamplingFilter samplingFilter = new CallLogSamplingFilter();
+        samplingFilter.setRates("updateNote=0.01");
+        samplingFilter.start();
+        sampledContext.addTurboFilter(samplingFilter);
+        sampledLogger = sampledContext.getLogger(LoggingBenchmark.class);
+        sampledLogger.addAppender(appender);
+        sampledLogger.setAdditive(false);
+        sampledLogger.setLevel(Level.toLevel(level));
+        note = new Note("64b7f0c2e13e4a5b9c0d1e2f", 42, new NoteDataGenerator(NoteDataGenerator.DEFAULT_SEED).comment(300));
+    }
+
+    @TearDown
+    public void tearDown() {
+        sampledContext.stop();
+        loggerContext.stop();
+    }
+
+    @Benchmark
+    public void concatenation() {
+        logger.info("[SERVICE]-> call method : updateNote [PARAM]-> note = " + note.getId() + " " + note.getPatientId() + " " + note.getComment());
+    }
+
+    @Benchmark
+    public void parameterized() {
+        logger.info("[SERVICE]-> call method : updateNote [PARAM]-> note = {}", note);
+    }
+
+    @Benchmark
+    public void parameterizedId() {
+        logger.info("[SERVICE]-> call method : updateNote [PARAM]-> noteId = {}", note.getId());
+    }
+
+    @Benchmark
+    public void parameterizedSampled() {
+        sampledLogger.info("[SERVICE]-> call method : updateNote [PARAM]-> note = {}", note);
+    }
+}
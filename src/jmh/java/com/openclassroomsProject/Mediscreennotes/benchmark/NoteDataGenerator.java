@@ -0,0 +1,117 @@
+package com.openclassroomsProject.Mediscreennotes.benchmark;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible generator of practitioner notes.
+ * The same seed always produces the same notes, so benchmark runs on different revisions read the same data.
+ * Comments are built from practitioner sentences, a part of them containing trigger terms, with lengths
+ * following a log-normal distribution around 300 characters (most notes are short, a few are several kilobytes).
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteDataGenerator {
+
+    public static final long DEFAULT_SEED = 42L;
+
+    private static final String[] SENTENCES = {
+            "Patient states that they are feeling terrific.",
+            "Weight at or below recommended level.",
+            "Patient states that they are feeling a great deal of stress at work.",
+            "Patient also complains that their hearing seems Abnormal as of late.",
+            "Patient states that they have had a Reaction to medication within last 3 months.",
+            "Patient states that they are short term Smoker.",
+            "Lab reports Cholesterol LDL high.",
+            "Patient states that walking up stairs has become difficult.",
+            "Lab results indicate Antibodies present elevated Reaction to medication.",
+            "Patient states that they are experiencing back pain when seated for a long time.",
+            "Hemoglobin A1C above recommended level.",
+            "Body Height, Body Weight, Cholesterol, Dizziness and Reaction checked.",
+            "Patient reports a Relapse of the symptoms after two weeks.",
+            "Microalbumin test requested for next visit.",
+            "No particular complaint, blood pressure within normal range.",
+            "Patient was advised to exercise at least thirty minutes a day.",
+            "Follow-up appointment scheduled in six months.",
+            "Le patient déclare une fatigue persistante et des vertiges occasionnels."
+    };
+    private static final double MEDIAN_LENGTH = 300;
+    private static final double LENGTH_SIGMA = 0.8;
+    private static final int MAX_LENGTH = 16_384;
+
+    private final SplittableRandom random;
+
+    public NoteDataGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Generates the notes of a range of patients, in patient order.
+     *
+     * @param patients        Number of patients, their ids start at 1.
+     * @param notesPerPatient Number of notes of each patient.
+     * @return The notes, without ids.
+     */
+    public List<Note> generate(int patients, int notesPerPatient) {
+        List<Note> notes = new ArrayList<>(patients * notesPerPatient);
+        for (int patientId = 1; patientId <= patients; patientId++) {
+            for (int note = 0; note < notesPerPatient; note++) {
+                notes.add(new Note(patientId, comment()));
+            }
+        }
+        return notes;
+    }
+
+    /**
+     * Generates one comment with a realistic length.
+     *
+     * @return The comment.
+     */
+    public String comment() {
+        double length = MEDIAN_LENGTH * Math.exp(LENGTH_SIGMA * random.nextGaussian());
+        return comment((int) Math.min(MAX_LENGTH, Math.max(40, length)));
+    }
+
+    /**
+     * Generates one comment of about the given length.
+     *
+     * @param length Number of characters, the last sentence may make it slightly longer.
+     * @return The comment.
+     */
+    public String comment(int length) {
+        StringBuilder comment = new StringBuilder(length + 128);
+        comment.append("Patient: Test").append(random.nextInt(1000)).append(" Practitioner's notes/recommendations:");
+        while (comment.length() < length) {
+            comment.append(' ').append(SENTENCES[random.nextInt(SENTENCES.length)]);
+        }
+        return comment.toString();
+    }
+
+    /**
+     * Writes a newline delimited JSON file that can be sent to POST /api/note/bulk.
+     *
+     * @param args output file, number of patients, notes per patient and optionally the seed.
+     * @throws IOException if the file can not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Path output = Path.of(args[0]);
+        int patients = Integer.parseInt(args[1]);
+        int notesPerPatient = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        NoteDataGenerator generator = new NoteDataGenerator(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Note note : generator.generate(patients, notesPerPatient)) {
+                writer.write("{\"patientId\":" + note.getPatientId() + ",\"comment\":\"" + note.getComment().replace("\"", "\\\"") + "\"}");
+                writer.newLine();
+            }
+        }
+    }
+}
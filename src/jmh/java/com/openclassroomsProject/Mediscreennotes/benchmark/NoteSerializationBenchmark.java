@@ -0,0 +1,62 @@
+package com.openclassroomsProject.Mediscreennotes.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of notes, as done by the controllers, for a single note
+ * and for the note list of a patient, in JSON and in the binary formats of the API (CBOR and Smile).
+ * The size of the payload of each format is printed at the setup of its trial.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteSerializationBenchmark {
+
+    private static final TypeReference<List<Note>> NOTE_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1", "20"})
+    public int notesPerPatient;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private List<Note> notes;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+        notes = new NoteDataGenerator(NoteDataGenerator.DEFAULT_SEED).generate(1, notesPerPatient);
+        notes.forEach(note -> note.setId(new ObjectId().toHexString()));
+        payload = objectMapper.writeValueAsBytes(notes);
+        System.out.printf("%n%s payload of %d notes : %d bytes%n", format, notesPerPatient, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(notes);
+    }
+
+    @Benchmark
+    public List<Note> deserialize() throws Exception {
+        return objectMapper.readValue(payload, NOTE_LIST);
+    }
+}
@@ -0,0 +1,105 @@
+package com.openclassroomsProject.Mediscreennotes.benchmark;
+
+import com.openclassroomsProject.Mediscreennotes.MediscreenNotesApplication;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Methods of NoteServiceImpl against a real MongoDB started with Testcontainers.
+ * The application context is started without web server, and the database is filled once per trial
+ * by the data generator, with and without the patient notes cache.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteServiceBenchmark {
+
+    private static final int PATIENTS = 2_000;
+    private static final int NOTES_PER_PATIENT = 10;
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private MongoDBContainer mongoDBContainer;
+    private ConfigurableApplicationContext context;
+    private INoteService noteService;
+    private NoteDataGenerator generator;
+    private String lastNoteId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mongoDBContainer = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+        mongoDBContainer.start();
+        context = new SpringApplicationBuilder(MediscreenNotesApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.uri=" + mongoDBContainer.getReplicaSetUrl(),
+                        "mediscreen.notes.cache.enabled=" + cacheEnabled,
+                        "logging.level.com.openclassroomsProject=WARN")
+                .run();
+        noteService = context.getBean(INoteService.class);
+        generator = new NoteDataGenerator(NoteDataGenerator.DEFAULT_SEED);
+        List<Note> notes = generator.generate(PATIENTS, NOTES_PER_PATIENT);
+        for (int from = 0; from < notes.size(); from += 1000) {
+            noteService.createNotes(notes.subList(from, Math.min(notes.size(), from + 1000)));
+        }
+        lastNoteId = noteService.getNotesPage(null, 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        mongoDBContainer.stop();
+    }
+
+    @Benchmark
+    public List<Note> getAllNotesByPatientId() {
+        return noteService.getAllNotesByPatientId(randomPatientId());
+    }
+
+    @Benchmark
+    public List<String> getNoteIdsByPatientId() {
+        return noteService.getNoteIdsByPatientId(randomPatientId());
+    }
+
+    @Benchmark
+    public Object getNoteById() {
+        return noteService.getNoteById(lastNoteId, null);
+    }
+
+    @Benchmark
+    public List<Note> getNotesPage() {
+        return noteService.getNotesPage(lastNoteId, 100);
+    }
+
+    @Benchmark
+    public Note createNote() {
+        return noteService.createNote(new Note(randomPatientId(), generator.comment()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void readMostlyMix(Blackhole blackhole) {
+        int patientId = randomPatientId();
+        for (int read = 0; read < 9; read++) {
+            blackhole.consume(noteService.getAllNotesByPatientId(patientId));
+        }
+        blackhole.consume(noteService.createNote(new Note(patientId, "Follow-up appointment scheduled in six months.")));
+    }
+
+    private static int randomPatientId() {
+        return ThreadLocalRandom.current().nextInt(1, PATIENTS + 1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.openclassroomsProject.Mediscreennotes.benchmark;
+
+import com.openclassroomsProject.Mediscreennotes.trigger.TriggerTermMatcher;
+import org.openjdk.jmh.annotations.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting of the trigger terms in one comment, for short, typical and long comments.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TriggerMatcherBenchmark {
+
+    private static final List<String> TERMS = List.of("Hemoglobin A1C", "Microalbumin", "Body Height", "Body Weight", "Smoker",
+            "Abnormal", "Cholesterol", "Dizziness", "Relapse", "Reaction", "Antibodies");
+
+    @Param({"100", "300", "2000", "16000"})
+    public int commentLength;
+
+    private TriggerTermMatcher matcher;
+    private String comment;
+
+    @Setup
+    public void setUp() {
+        matcher = TriggerTermMatcher.compile(TERMS);
+        comment = new NoteDataGenerator(NoteDataGenerator.DEFAULT_SEED).comment(commentLength);
+    }
+
+    @Benchmark
+    public long[] count() {
+        return matcher.count(comment);
+    }
+
+    @Benchmark
+    public TriggerTermMatcher compile() {
+        return TriggerTermMatcher.compile(TERMS);
+    }
+}
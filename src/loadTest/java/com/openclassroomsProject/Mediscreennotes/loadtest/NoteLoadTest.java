@@ -0,0 +1,180 @@
+package com.openclassroomsProject.Mediscreennotes.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop load test of a running instance.
+ * For each concurrency level, as many clients as the level send requests back to back for a fixed time
+ * (reads of the notes of a random patient, one write every 10 requests). The p50 / p99 latencies, the throughput
+ * and the errors are printed for each level, then the maximum concurrency is the highest level whose error rate
+ * stays under 1% and whose p99 stays under the SLO.
+ * Run it once against an instance started normally (platform threads) and once against an instance started
+ * with the virtual profile to compare both modes.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteLoadTest {
+
+    private static final int PATIENTS = 1000;
+    private static final int NOTES_PER_PATIENT = 5;
+    private static final Duration WARM_UP = Duration.ofSeconds(5);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+
+    public NoteLoadTest(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * @param args base url, label of the run, comma separated concurrency levels, seconds per level, p99 SLO in milliseconds.
+     * @throws Exception if the test data can not be inserted.
+     */
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args[0];
+        String label = args[1];
+        int[] levels = Arrays.stream(args[2].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        Duration step = Duration.ofSeconds(Long.parseLong(args[3]));
+        long sloMillis = Long.parseLong(args[4]);
+
+        NoteLoadTest loadTest = new NoteLoadTest(baseUrl);
+        loadTest.seed();
+        loadTest.run(levels[0], WARM_UP);
+
+        System.out.printf("%n[%s] %s, %ds per level, p99 SLO %d ms%n", label, baseUrl, step.toSeconds(), sloMillis);
+        System.out.printf("%8s %10s %10s %10s %10s %8s%n", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        int maxConcurrency = 0;
+        for (int level : levels) {
+            Result result = loadTest.run(level, step);
+            System.out.printf("%8d %10.0f %10.1f %10.1f %10.1f %8d%n", level, result.throughput(),
+                    result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(100), result.errors);
+            boolean withinSlo = result.errorRate() < 0.01 && result.percentileMillis(99) <= sloMillis;
+            if (!withinSlo) {
+                break;
+            }
+            maxConcurrency = level;
+        }
+        System.out.printf("[%s] maximum concurrency within the SLO : %d clients%n", label, maxConcurrency);
+    }
+
+    /**
+     * Inserts the notes read by the test with the bulk endpoint.
+     */
+    private void seed() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+            for (int note = 0; note < NOTES_PER_PATIENT; note++) {
+                body.append("{\"patientId\":").append(patientId)
+                        .append(",\"comment\":\"Load test note, patient states that they are a short term Smoker\"}\n");
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/note/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with status " + response.statusCode());
+        }
+    }
+
+    private Result run(int clients, Duration duration) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>(clients);
+        List<int[]> counts = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                long[] clientLatencies = new long[1 << 16];
+                int[] clientCount = new int[1];
+                latencies.add(clientLatencies);
+                counts.add(clientCount);
+                executor.submit(() -> {
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        if (!send(clientCount[0])) {
+                            errors.incrementAndGet();
+                        }
+                        if (clientCount[0] < clientLatencies.length) {
+                            clientLatencies[clientCount[0]] = System.nanoTime() - start;
+                        }
+                        clientCount[0]++;
+                    }
+                });
+            }
+            Thread.sleep(duration.toMillis());
+            running.set(false);
+        }
+        int total = 0;
+        for (int index = 0; index < clients; index++) {
+            total += Math.min(counts.get(index)[0], latencies.get(index).length);
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (int index = 0; index < clients; index++) {
+            int recorded = Math.min(counts.get(index)[0], latencies.get(index).length);
+            System.arraycopy(latencies.get(index), 0, all, position, recorded);
+            position += recorded;
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get(), duration);
+    }
+
+    private boolean send(int sequence) {
+        int patientId = ThreadLocalRandom.current().nextInt(1, PATIENTS + 1);
+        HttpRequest.Builder request = HttpRequest.newBuilder().timeout(Duration.ofSeconds(30));
+        if (sequence % 10 == 9) {
+            request.uri(URI.create(baseUrl + "/api/note"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"patientId\":" + patientId + ",\"comment\":\"Load test write\"}"));
+        } else {
+            request.uri(URI.create(baseUrl + "/api/note/patient/" + patientId)).GET();
+        }
+        try {
+            HttpResponse<Void> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception exception) {
+            return false;
+        }
+    }
+
+    private record Result(long[] sortedLatencies, long errors, Duration duration) {
+
+        double throughput() {
+            return sortedLatencies.length / (double) duration.toSeconds();
+        }
+
+        double errorRate() {
+            return sortedLatencies.length == 0 ? 1 : errors / (double) sortedLatencies.length;
+        }
+
+        double percentileMillis(int percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.openclassroomsProject.Mediscreennotes;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MediscreenNotesApplication {
 
 	public static void main(String[] args) {
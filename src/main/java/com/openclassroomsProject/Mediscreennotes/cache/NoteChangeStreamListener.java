@@ -0,0 +1,240 @@
+package com.openclassroomsProject.Mediscreennotes.cache;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Listens to the change stream of the note collection and evicts the patients touched by any write,
+ * made by this instance or by another one, from the local caches.
+ * The resume token is saved per instance, so that the events written while the instance was stopped
+ * are still applied after a restart. Requires a replica set, a single node one is enough.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "mediscreen.notes.change-stream", name = "enabled", havingValue = "true")
+public class NoteChangeStreamListener implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteChangeStreamListener.class);
+    static final String TOKEN_COLLECTION = "change_stream_token";
+    private static final Set<Integer> HISTORY_LOST_ERRORS = Set.of(260, 280, 286);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PatientNotesCache patientNotesCache;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    private volatile boolean running;
+    private Thread worker;
+    private String instanceId;
+    private BsonDocument resumeToken;
+    private BsonDocument savedToken;
+    private int eventsSinceSave;
+    private long lastSaveMillis;
+
+    @Override
+    public void start() {
+        instanceId = resolveInstanceId();
+        resumeToken = loadToken();
+        enablePreImages();
+        running = true;
+        worker = new Thread(this::listen, "note-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+        LOGGER.info("[CHANGE STREAM]-> listener started [PARAM]-> instanceId = {} [PARAM]-> resume = {}", instanceId, resumeToken != null);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor()) {
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        apply(change);
+                        eventsSinceSave++;
+                    }
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                    saveTokenIfDue();
+                }
+            } catch (MongoCommandException exception) {
+                if (HISTORY_LOST_ERRORS.contains(exception.getErrorCode())) {
+                    LOGGER.warn("[CHANGE STREAM]-> resume token no longer available, all caches are cleared");
+                    resumeToken = null;
+                    patientNotesCache.evictAll();
+                } else {
+                    retryLater(exception);
+                }
+            } catch (MongoException exception) {
+                retryLater(exception);
+            }
+        }
+        saveToken();
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor() {
+        List<Document> pipeline = List.of(new Document("$project", new Document("operationType", 1)
+                .append("documentKey", 1)
+                .append("fullDocument.patientId", 1)
+                .append("fullDocumentBeforeChange.patientId", 1)));
+        var changeStream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class))
+                .watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            changeStream = changeStream.resumeAfter(resumeToken);
+        }
+        return changeStream.cursor();
+    }
+
+    /**
+     * Evicts the patients touched by a change. When the patient of a change is unknown,
+     * a delete without pre-image for instance, all the patients are evicted.
+     *
+     * @param change The change stream event.
+     */
+    void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> {
+                Integer before = patientId(change.getFullDocumentBeforeChange());
+                Integer after = patientId(change.getFullDocument());
+                if (before == null && after == null) {
+                    patientNotesCache.evictAll();
+                } else {
+                    patientNotesCache.evict(before);
+                    patientNotesCache.evict(after);
+                }
+            }
+            default -> {
+                LOGGER.info("[CHANGE STREAM]-> collection level event, all caches are cleared [PARAM]-> operation = {}", change.getOperationType());
+                patientNotesCache.evictAll();
+            }
+        }
+    }
+
+    private static Integer patientId(Document document) {
+        return document == null ? null : document.getInteger("patientId");
+    }
+
+    private void retryLater(MongoException exception) {
+        if (!running) {
+            return;
+        }
+        LOGGER.error("[CHANGE STREAM]-> change stream failed, resuming", exception);
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void saveTokenIfDue() {
+        NoteProperties.ChangeStream settings = noteProperties.getChangeStream();
+        long now = System.currentTimeMillis();
+        if (eventsSinceSave >= settings.getTokenSaveEvents() || now - lastSaveMillis >= settings.getTokenSaveInterval().toMillis()) {
+            saveToken();
+            lastSaveMillis = now;
+        }
+    }
+
+    private void saveToken() {
+        if (resumeToken == null || resumeToken.equals(savedToken)) {
+            return;
+        }
+        try {
+            mongoTemplate.upsert(query(where("_id").is(instanceId)),
+                    new Update().set("token", resumeToken.toJson()).set("updatedAt", new Date()), TOKEN_COLLECTION);
+            savedToken = resumeToken;
+            eventsSinceSave = 0;
+        } catch (RuntimeException exception) {
+            LOGGER.error("[CHANGE STREAM]-> unable to save the resume token", exception);
+        }
+    }
+
+    private BsonDocument loadToken() {
+        Document saved = mongoTemplate.findById(instanceId, Document.class, TOKEN_COLLECTION);
+        if (saved == null || saved.getString("token") == null) {
+            return null;
+        }
+        savedToken = BsonDocument.parse(saved.getString("token"));
+        return savedToken;
+    }
+
+    /**
+     * Asks MongoDB (6.0 or later) to record the pre-images of the note collection,
+     * needed to know the patient of a deleted note.
+     */
+    private void enablePreImages() {
+        try {
+            if (!mongoTemplate.collectionExists(Note.class)) {
+                mongoTemplate.createCollection(Note.class);
+            }
+            mongoTemplate.getDb().runCommand(new Document("collMod", mongoTemplate.getCollectionName(Note.class))
+                    .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+        } catch (RuntimeException exception) {
+            LOGGER.warn("[CHANGE STREAM]-> pre-images unavailable, deletes will clear all caches : {}", exception.getMessage());
+        }
+    }
+
+    private String resolveInstanceId() {
+        String configured = noteProperties.getChangeStream().getInstanceId();
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException exception) {
+            throw new IllegalStateException("Set mediscreen.notes.change-stream.instance-id, the host name is unknown", exception);
+        }
+    }
+}
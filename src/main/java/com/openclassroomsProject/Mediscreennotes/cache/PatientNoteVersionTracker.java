@@ -0,0 +1,162 @@
+package com.openclassroomsProject.Mediscreennotes.cache;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import org.bson.BsonTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps the version and the last modification date of the note list of each patient, used by conditional GETs.
+ * The versions are stored in MongoDB and incremented after each write, so they are shared by all the instances.
+ * Reads never write: a patient gets a version document with the first write of one of its notes.
+ * The versions are incremented by the last listeners of the write events, once the cached lists are evicted.
+ * If a version can not be incremented, it is removed: it is then created again with a new epoch, and the ETags
+ * given before no longer match, a client is never told that an outdated list is current.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class PatientNoteVersionTracker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatientNoteVersionTracker.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Returns the version of the note list of a patient, a read only lookup.
+     * The version document of a patient is only created by the increment following a write. Until then a version 0
+     * with a new epoch is returned, not stored: its ETag changes at every read and never matches, so a list never
+     * tracked, or whose version has been reset, is never answered as not modified.
+     *
+     * @param patientId Patient identifier.
+     * @return The version.
+     */
+    public PatientNoteVersion getVersion(Integer patientId) {
+        PatientNoteVersion version = mongoTemplate.findById(patientId, PatientNoteVersion.class);
+        return version != null ? version : untracked(patientId);
+    }
+
+    /**
+     * Returns the version of the note list of a patient, read like its notes: with their read preference and in a
+     * causally consistent session started after the given operation time. The operation time of the session is kept
+     * in {@link PatientNoteVersion#getReadAt()}: the notes read after it are never older than the version, even when
+     * they are read from another secondary.
+     *
+     * @param patientId      Patient identifier.
+     * @param readPreference The read preference of the notes.
+     * @param readAfter      The operation time sent by the client, null if none.
+     * @return The version.
+     */
+    public PatientNoteVersion getVersion(Integer patientId, ReadPreference readPreference, BsonTimestamp readAfter) {
+        try (ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().causallyConsistent(true).build())) {
+            if (readAfter != null) {
+                session.advanceOperationTime(readAfter);
+            }
+            PatientNoteVersion version = mongoTemplate.withSession(session)
+                    .findOne(query(where("_id").is(patientId)).withReadPreference(readPreference), PatientNoteVersion.class);
+            if (version == null) {
+                version = untracked(patientId);
+            }
+            // null on a standalone server, which has no secondary to lag behind
+            BsonTimestamp operationTime = session.getOperationTime();
+            version.setReadAt(operationTime == null ? null : operationTime.getValue());
+            return version;
+        }
+    }
+
+    private static PatientNoteVersion untracked(Integer patientId) {
+        Date now = new Date();
+        PatientNoteVersion untracked = new PatientNoteVersion();
+        untracked.setPatientId(patientId);
+        untracked.setVersion(0L);
+        untracked.setLastModified(now);
+        // random and negative, unlike the creation times of the stored epochs
+        untracked.setEpoch(ThreadLocalRandom.current().nextLong(Long.MIN_VALUE, 0));
+        return untracked;
+    }
+
+    /**
+     * @param version A version of a note list.
+     * @return False for the version 0 returned while the list has no stored version, it is never current.
+     */
+    public static boolean isTracked(PatientNoteVersion version) {
+        return version.getEpoch() >= 0;
+    }
+
+    /**
+     * Builds the strong ETag of a note list.
+     *
+     * @param version The version of the note list.
+     * @return The quoted ETag.
+     */
+    public static String eTag(PatientNoteVersion version) {
+        return "\"" + Long.toString(version.getEpoch(), 36) + "-" + version.getVersion() + "\"";
+    }
+
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onNoteChanged(NoteChangedEvent event) {
+        Set<Integer> patientIds = new TreeSet<>();
+        addPatient(patientIds, event.getPrevious());
+        addPatient(patientIds, event.getCurrent());
+        increment(patientIds);
+    }
+
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onNotesInserted(NotesInsertedEvent event) {
+        Set<Integer> patientIds = new TreeSet<>();
+        event.getNotes().forEach(note -> addPatient(patientIds, note));
+        increment(patientIds);
+    }
+
+    private void increment(Set<Integer> patientIds) {
+        if (patientIds.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        try {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PatientNoteVersion.class);
+            for (Integer patientId : patientIds) {
+                bulkOperations.upsert(query(where("_id").is(patientId)),
+                        new Update().inc("version", 1).set("lastModified", now).setOnInsert("epoch", now.getTime()));
+            }
+            bulkOperations.execute();
+        } catch (RuntimeException exception) {
+            LOGGER.error("[CACHE]-> unable to increment the note list versions, they are reset [PARAM]-> patientIds = {}", patientIds, exception);
+            try {
+                mongoTemplate.remove(query(where("_id").in(patientIds)), PatientNoteVersion.class);
+            } catch (RuntimeException removeException) {
+                LOGGER.error("[CACHE]-> unable to reset the note list versions [PARAM]-> patientIds = {}", patientIds, removeException);
+            }
+        }
+    }
+
+    private static void addPatient(Set<Integer> patientIds, Note note) {
+        if (note != null && note.getPatientId() != null) {
+            patientIds.add(note.getPatientId());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.openclassroomsProject.Mediscreennotes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of the note lists of the patients, bounded in number of patients and in estimated bytes,
+ * with a time to live. An entry is invalidated by each write touching its patient, before the version of the note list
+ * is incremented. Each entry keeps the version of the note list read before loading it, and is only returned for
+ * that version: a list loaded before a write of another instance is read again once the version has changed,
+ * it is never served under the ETag of a later version.
+ * Hits, misses and evictions are published as cache metrics under the name patientNotes.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class PatientNotesCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatientNotesCache.class);
+    static final String CACHE_NAME = "patientNotes";
+    private static final int NOTE_OVERHEAD = 96;
+
+    private final boolean enabled;
+    private final Cache<Integer, Entry> cache;
+
+    public PatientNotesCache(NoteProperties noteProperties, MeterRegistry meterRegistry) {
+        NoteProperties.Cache settings = noteProperties.getCache();
+        this.enabled = settings.isEnabled();
+        // Caffeine can not bound both the size and the weight : every entry weighs at least
+        // maximumWeight / maximumSize, so that the weight bound also caps the number of entries.
+        long minimumWeight = Math.max(1, settings.getMaximumWeight() / Math.max(1, settings.getMaximumSize()));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaximumWeight())
+                .weigher((Integer patientId, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, Math.max(minimumWeight, weigh(entry.notes))))
+                .expireAfterWrite(settings.getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the notes of a patient, loading them on a miss or when the cached notes were loaded under another version.
+     * Concurrent loads of the same patient read the notes once. The notes of a patient without stored version are not cached.
+     *
+     * @param patientId Patient identifier.
+     * @param version   Version of the note list, read before the notes.
+     * @param loader    Reads the notes of the patient from the database.
+     * @return The notes of the patient, as an unmodifiable list.
+     */
+    public List<Note> get(Integer patientId, PatientNoteVersion version, Function<Integer, List<Note>> loader) {
+        if (!enabled || patientId == null || !PatientNoteVersionTracker.isTracked(version)) {
+            return loader.apply(patientId);
+        }
+        String eTag = PatientNoteVersionTracker.eTag(version);
+        Entry entry = cache.getIfPresent(patientId);
+        if (entry == null || !entry.eTag.equals(eTag)) {
+            entry = cache.asMap().compute(patientId, (id, current) -> current != null && current.eTag.equals(eTag)
+                    ? current : new Entry(eTag, List.copyOf(loader.apply(id))));
+        }
+        return entry.notes;
+    }
+
+    /**
+     * @param patientId Patient identifier.
+     * @param version   Version of the note list, read before.
+     * @return The cached notes of the patient, null if they are not cached or were loaded under another version.
+     */
+    public List<Note> getIfPresent(Integer patientId, PatientNoteVersion version) {
+        if (!enabled || patientId == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(patientId);
+        return entry == null || !entry.eTag.equals(PatientNoteVersionTracker.eTag(version)) ? null : entry.notes;
+    }
+
+    /**
+     * Removes the notes of a patient from the cache.
+     * Waits for a load of the same patient in progress, so that the data it read is not kept.
+     *
+     * @param patientId Patient identifier.
+     */
+    public void evict(Integer patientId) {
+        if (patientId != null) {
+            cache.invalidate(patientId);
+        }
+    }
+
+    /**
+     * Removes all the patients from the cache.
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onNoteChanged(NoteChangedEvent event) {
+        if (event.getPrevious() != null) {
+            evict(event.getPrevious().getPatientId());
+        }
+        if (event.getCurrent() != null) {
+            evict(event.getCurrent().getPatientId());
+        }
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onNotesInserted(NotesInsertedEvent event) {
+        event.getNotes().stream().map(Note::getPatientId).distinct().forEach(this::evict);
+        LOGGER.debug("[CACHE]-> patients evicted after bulk insert [PARAM]-> event = {}", event);
+    }
+
+    /**
+     * Notes of a patient and the ETag of the version they were loaded under.
+     */
+    private static class Entry {
+
+        private final String eTag;
+        private final List<Note> notes;
+
+        Entry(String eTag, List<Note> notes) {
+            this.eTag = eTag;
+            this.notes = notes;
+        }
+    }
+
+    private static long weigh(List<Note> notes) {
+        long weight = NOTE_OVERHEAD;
+        for (Note note : notes) {
+            weight += NOTE_OVERHEAD;
+            weight += note.getComment() == null ? 0 : 2L * note.getComment().length();
+            weight += note.getId() == null ? 0 : 2L * note.getId().length();
+        }
+        return weight;
+    }
+}
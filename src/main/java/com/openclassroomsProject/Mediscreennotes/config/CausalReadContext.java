@@ -0,0 +1,116 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Operation times of the causal consistency between the requests of a client, on the servlet stack.
+ * The operation time of the last write of a request is returned in the X-Note-Operation-Time header
+ * ("seconds.increment" of the cluster time). Sent back with a later read, the read then starts after the write,
+ * even when it is routed to a secondary. The times are kept for the thread of the request: the blocking driver
+ * reports each command on the thread that issued it. A streamed body, written by another thread, is {@link #bind bound}
+ * to the times of its request.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class CausalReadContext implements CommandListener {
+
+    public static final String OPERATION_TIME_HEADER = "X-Note-Operation-Time";
+    private static final ThreadLocal<BsonTimestamp> LAST_OPERATION_TIME = new ThreadLocal<>();
+    private static final ThreadLocal<BsonTimestamp> READ_AFTER = new ThreadLocal<>();
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        BsonValue operationTime = event.getResponse().get("operationTime");
+        if (operationTime != null && operationTime.isTimestamp()) {
+            LAST_OPERATION_TIME.set(operationTime.asTimestamp());
+        }
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+    }
+
+    /**
+     * @return The operation time of the last command of the current request, null if none returned one (standalone server).
+     */
+    public String getLastOperationTime() {
+        BsonTimestamp operationTime = LAST_OPERATION_TIME.get();
+        return operationTime == null ? null : format(operationTime);
+    }
+
+    /**
+     * @return The operation time the reads of the current request must start after, null if none.
+     */
+    public BsonTimestamp getReadAfter() {
+        return READ_AFTER.get();
+    }
+
+    /**
+     * Starts a request.
+     *
+     * @param operationTime The operation time sent by the client, null if none.
+     * @throws IllegalArgumentException if the operation time is not valid.
+     */
+    public void start(String operationTime) {
+        LAST_OPERATION_TIME.remove();
+        READ_AFTER.set(operationTime == null || operationTime.isBlank() ? null : parse(operationTime));
+    }
+
+    /**
+     * Ends a request, the thread may serve another one.
+     */
+    public void clear() {
+        LAST_OPERATION_TIME.remove();
+        READ_AFTER.remove();
+    }
+
+    /**
+     * Binds a streamed body to the current request: Spring MVC writes it on an async thread, which does not see
+     * the operation time sent by the client. The body reads after it, and the times of the async thread are cleared
+     * once it is written, the thread may then write the body of another request.
+     *
+     * @param body The body, written by another thread.
+     * @return The body reading after the operation time of the current request.
+     */
+    public StreamingResponseBody bind(StreamingResponseBody body) {
+        BsonTimestamp readAfter = READ_AFTER.get();
+        return outputStream -> {
+            LAST_OPERATION_TIME.remove();
+            READ_AFTER.set(readAfter);
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                clear();
+            }
+        };
+    }
+
+    static String format(BsonTimestamp operationTime) {
+        return Integer.toUnsignedString(operationTime.getTime()) + "." + Integer.toUnsignedString(operationTime.getInc());
+    }
+
+    static BsonTimestamp parse(String operationTime) {
+        String[] parts = operationTime.trim().split("\\.");
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException(operationTime);
+            }
+            return new BsonTimestamp(Integer.parseUnsignedInt(parts[0]), Integer.parseUnsignedInt(parts[1]));
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid operation time : " + operationTime, exception);
+        }
+    }
+}
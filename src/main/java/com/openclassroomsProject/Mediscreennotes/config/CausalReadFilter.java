@@ -0,0 +1,54 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+
+/**
+ * Reads the X-Note-Operation-Time header of the note API requests into the {@link CausalReadContext}.
+ * A request with an invalid operation time gets a 400 bad request response.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CausalReadFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CausalReadFilter.class);
+    private static final String NOTE_API = "/api/note";
+
+    @Autowired
+    private CausalReadContext causalReadContext;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(NOTE_API);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            causalReadContext.start(request.getHeader(CausalReadContext.OPERATION_TIME_HEADER));
+        } catch (IllegalArgumentException exception) {
+            LOGGER.info("[CONTROLLER API]-> invalid operation time [PARAM]-> header = {}", request.getHeader(CausalReadContext.OPERATION_TIME_HEADER));
+            response.sendError(HttpStatus.BAD_REQUEST.value(), exception.getMessage());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            causalReadContext.clear();
+        }
+    }
+}
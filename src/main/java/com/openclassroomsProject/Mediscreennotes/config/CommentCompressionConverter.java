@@ -0,0 +1,122 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.convert.MongoConversionContext;
+import org.springframework.data.mongodb.core.convert.MongoValueConverter;
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores the comments longer than mediscreen.notes.compression.threshold as a deflate compressed BSON binary,
+ * shorter comments, and comments that do not shrink, stay as text. Registered on Note.comment, it is applied to
+ * the documents, the queries and the updates, so the rest of the application only sees text.
+ * A comment is inflated when it is mapped: the queries that do not select it (ids, patients) never pay for it.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class CommentCompressionConverter implements MongoValueConverter<String, Object> {
+
+    /**
+     * User defined binary subtype, marks a deflate compressed UTF-8 text.
+     */
+    static final byte DEFLATE_SUBTYPE = (byte) 0x80;
+    private static final int BUFFER_SIZE = 8192;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    @Override
+    public String read(Object value, MongoConversionContext context) {
+        if (value instanceof Binary binary && binary.getType() == DEFLATE_SUBTYPE) {
+            return inflate(binary.getData());
+        }
+        return value.toString();
+    }
+
+    @Override
+    public Object write(String value, MongoConversionContext context) {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        NoteProperties.Compression compression = noteProperties.getCompression();
+        if (raw.length >= compression.getThreshold()) {
+            byte[] compressed = deflate(raw, compression.getLevel());
+            if (compressed.length < raw.length) {
+                noteMetrics.recordCommentWrite(raw.length, compressed.length);
+                return new Binary(DEFLATE_SUBTYPE, compressed);
+            }
+        }
+        noteMetrics.recordCommentWrite(raw.length, raw.length);
+        return value;
+    }
+
+    /**
+     * Reads the beginning of a stored comment. A compressed comment is only inflated up to the bytes needed.
+     *
+     * @param value    The comment as stored, text or compressed binary.
+     * @param maxChars Number of characters (code points) to read.
+     * @return The comment, or its first maxChars characters followed by at least one more if it is longer.
+     */
+    public static String readPrefix(Object value, int maxChars) {
+        if (value instanceof Binary binary && binary.getType() == DEFLATE_SUBTYPE) {
+            // A code point takes at most 4 bytes in UTF-8, the decoded prefix holds maxChars + 1 whole code points
+            return inflate(binary.getData(), 4 * (maxChars + 1) + 4);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    static byte[] deflate(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String inflate(byte[] compressed) {
+        return inflate(compressed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param compressed The compressed comment.
+     * @param maxBytes   Stops once this number of bytes is inflated, the last character may then be incomplete.
+     * @return The inflated text.
+     */
+    private static String inflate(byte[] compressed, int maxBytes) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(maxBytes, compressed.length * 4));
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, maxBytes)];
+            while (!inflater.finished() && output.size() < maxBytes) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed comment");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException exception) {
+            throw new IllegalStateException("Invalid compressed comment", exception);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+/**
+ * Conversions of the mapped properties, shared by the blocking and the reactive Mongo templates.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Configuration
+public class MongoConversionConfig {
+
+    /**
+     * @param commentCompressionConverter Compression of the long comments.
+     * @return The conversions, replacing the default empty ones.
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(CommentCompressionConverter commentCompressionConverter) {
+        return MongoCustomConversions.create(adapter -> adapter.configurePropertyConversions(registrar ->
+                registrar.registerConverter(Note.class, "comment", commentCompressionConverter)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the connection pool of the Mongo clients (blocking and reactive) from mediscreen.notes.pool.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Configuration
+public class MongoPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoPoolConfig.class);
+
+    /**
+     * With virtual threads every request can reach the driver at the same time, the pool must then be large
+     * enough for the expected concurrency, and a request waiting for a connection must fail fast rather than queue for minutes.
+     *
+     * @param noteProperties The note settings.
+     * @return The customizer applied to the Mongo client settings.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer(NoteProperties noteProperties) {
+        NoteProperties.Pool pool = noteProperties.getPool();
+        LOGGER.info("[STARTUP]-> Mongo connection pool [PARAM]-> maxSize = {} [PARAM]-> minSize = {} [PARAM]-> maxConnecting = {} [PARAM]-> maxWaitTime = {}",
+                pool.getMaxSize(), pool.getMinSize(), pool.getMaxConnecting(), pool.getMaxWaitTime());
+        return builder -> builder.applyToConnectionPoolSettings(settings -> settings
+                .maxSize(pool.getMaxSize())
+                .minSize(pool.getMinSize())
+                .maxConnecting(pool.getMaxConnecting())
+                .maxWaitTime(pool.getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
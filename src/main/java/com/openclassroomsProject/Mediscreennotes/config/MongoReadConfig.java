@@ -0,0 +1,24 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the {@link CausalReadContext} on the Mongo clients, to keep the operation time of the writes.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Configuration
+public class MongoReadConfig {
+
+    /**
+     * @param causalReadContext The operation times of the current request.
+     * @return The customizer applied to the Mongo client settings.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer causalReadCustomizer(CausalReadContext causalReadContext) {
+        return builder -> builder.addCommandListener(causalReadContext);
+    }
+}
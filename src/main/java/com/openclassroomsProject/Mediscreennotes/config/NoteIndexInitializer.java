@@ -0,0 +1,223 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes of the note and tombstone collections at startup, before the application accepts traffic,
+ * then checks that the hot queries do not scan the whole collection. A missing index or a collection scan fails the startup.
+ * Notes written before the delta sync have no modification date, it is set once from the creation time of their id,
+ * the migrations applied being recorded in the note_migration collection. The patients written before the versions
+ * of the note lists get a version once. The preview of the comments read by the summaries is written once per preview
+ * length. A changed tombstone retention is applied to the existing TTL index.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteIndexInitializer implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteIndexInitializer.class);
+    static final String PATIENT_INDEX = "patientId_id";
+    static final String UPDATED_AT_INDEX = "updatedAt_id";
+    static final String DELETED_AT_INDEX = "deletedAt_id";
+    static final String TOMBSTONE_TTL_INDEX = "deletedAt_ttl";
+    static final String MIGRATION_COLLECTION = "note_migration";
+    static final String UPDATED_AT_MIGRATION = "backfill_updatedAt";
+    static final String PATIENT_NOTE_VERSION_MIGRATION = "backfill_patientNoteVersion";
+    static final String PREVIEW_MIGRATION = "backfill_preview_";
+    private static final int PREVIEW_BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Note.class);
+        indexOperations.ensureIndex(new Index().on("patientId", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named(PATIENT_INDEX));
+        indexOperations.ensureIndex(new Index().on("updatedAt", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named(UPDATED_AT_INDEX));
+        IndexOperations tombstoneIndexOperations = mongoTemplate.indexOps(NoteTombstone.class);
+        tombstoneIndexOperations.ensureIndex(new Index().on("deletedAt", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named(DELETED_AT_INDEX));
+        Duration tombstoneRetention = noteProperties.getSync().getTombstoneRetention();
+        updateTombstoneRetention(tombstoneRetention);
+        tombstoneIndexOperations.ensureIndex(new Index().on("deletedAt", Sort.Direction.ASC).named(TOMBSTONE_TTL_INDEX)
+                .expire(tombstoneRetention));
+        for (String index : List.of(PATIENT_INDEX, UPDATED_AT_INDEX)) {
+            if (indexOperations.getIndexInfo().stream().noneMatch(info -> index.equals(info.getName()))) {
+                throw new IllegalStateException("Index " + index + " missing on the note collection");
+            }
+            LOGGER.info("[STARTUP]-> index verified [PARAM]-> index = {}", index);
+        }
+        migrateOnce(UPDATED_AT_MIGRATION, this::backfillUpdatedAt);
+        migrateOnce(PATIENT_NOTE_VERSION_MIGRATION, this::backfillPatientNoteVersions);
+        int previewLength = noteProperties.getSummary().getPreviewLength();
+        migrateOnce(PREVIEW_MIGRATION + previewLength, () -> backfillPreviews(previewLength));
+        checkQueryPlan("findByPatientId", new Document("patientId", 0), new Document());
+        checkQueryPlan("findByPatientIdIn", new Document("patientId", new Document("$in", List.of(0, 1))), new Document("patientId", 1));
+        checkQueryPlan("findByIdGreaterThan", new Document("_id", new Document("$gt", "")), new Document("_id", 1));
+        checkQueryPlan("getChangesSince", new Document("updatedAt", new Document("$gt", new Date(0))), new Document("updatedAt", 1).append("_id", 1));
+    }
+
+    /**
+     * Applies a changed tombstone retention to the existing TTL index with collMod: creating the index again with
+     * another expireAfterSeconds would fail with an IndexOptionsConflict.
+     *
+     * @param retention The retention of the tombstones.
+     */
+    private void updateTombstoneRetention(Duration retention) {
+        String collection = mongoTemplate.getCollectionName(NoteTombstone.class);
+        if (!mongoTemplate.collectionExists(collection)) {
+            return;
+        }
+        for (Document index : mongoTemplate.getCollection(collection).listIndexes()) {
+            Number expireAfterSeconds = index.get("expireAfterSeconds", Number.class);
+            if (TOMBSTONE_TTL_INDEX.equals(index.getString("name")) && expireAfterSeconds != null
+                    && expireAfterSeconds.longValue() != retention.toSeconds()) {
+                mongoTemplate.getDb().runCommand(new Document("collMod", collection).append("index",
+                        new Document("name", TOMBSTONE_TTL_INDEX).append("expireAfterSeconds", retention.toSeconds())));
+                LOGGER.info("[STARTUP]-> tombstone retention updated [PARAM]-> from = {}s [PARAM]-> to = {}s",
+                        expireAfterSeconds, retention.toSeconds());
+            }
+        }
+    }
+
+    /**
+     * Runs a data migration unless it has already been applied, then records it in the migration collection.
+     * Two instances starting together may both run it, a migration must therefore be idempotent.
+     *
+     * @param id        Identifier of the migration.
+     * @param migration The migration.
+     */
+    private void migrateOnce(String id, Runnable migration) {
+        MongoCollection<Document> migrations = mongoTemplate.getCollection(MIGRATION_COLLECTION);
+        if (migrations.find(new Document("_id", id)).first() != null) {
+            return;
+        }
+        migration.run();
+        try {
+            migrations.insertOne(new Document("_id", id).append("appliedAt", new Date()));
+            LOGGER.info("[STARTUP]-> migration applied [PARAM]-> migration = {}", id);
+        } catch (MongoWriteException exception) {
+            if (exception.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Sets the modification and creation dates of the notes written before they existed to the creation time of their id,
+     * or to the current time if the id is not an ObjectId.
+     */
+    private void backfillUpdatedAt() {
+        Document idDate = new Document("$convert", new Document("input", "$_id").append("to", "date")
+                .append("onError", "$$NOW").append("onNull", "$$NOW"));
+        Document set = new Document("$set", new Document("updatedAt", idDate)
+                .append("createdAt", new Document("$ifNull", List.of("$createdAt", idDate))));
+        long modified = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class))
+                .updateMany(new Document("updatedAt", null), List.of(set)).getModifiedCount();
+        LOGGER.info("[STARTUP]-> modification date set on existing notes [PARAM]-> count = {}", modified);
+    }
+
+    /**
+     * Creates the version of the note lists of the patients written before the versions existed, so that their lists
+     * can be cached: a list without stored version is always read from the database. The existing versions are kept.
+     */
+    private void backfillPatientNoteVersions() {
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", "$patientId")),
+                new Document("$match", new Document("_id", new Document("$ne", null))),
+                new Document("$project", new Document("version", new Document("$literal", 0L))
+                        .append("lastModified", "$$NOW")
+                        .append("epoch", new Document("$toLong", "$$NOW"))),
+                new Document("$merge", new Document("into", mongoTemplate.getCollectionName(PatientNoteVersion.class))
+                        .append("on", "_id").append("whenMatched", "keepExisting").append("whenNotMatched", "insert")));
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class)).aggregate(pipeline).allowDiskUse(true).toCollection();
+        LOGGER.info("[STARTUP]-> note list versions created for the existing patients");
+    }
+
+    /**
+     * Writes the preview of the comment of every note, for the notes written before the previews existed or with another
+     * preview length. A note is only updated if it is still at the version read, a note updated meanwhile already has
+     * the preview of its new comment.
+     *
+     * @param previewLength Number of characters of the preview of the summaries.
+     */
+    private void backfillPreviews(int previewLength) {
+        MongoCollection<Document> notes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class));
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(PREVIEW_BATCH_SIZE);
+        long modified = 0;
+        for (Document note : notes.find().projection(new Document("patientId", 1).append("comment", 1).append("version", 1)).batchSize(PREVIEW_BATCH_SIZE)) {
+            String preview = NotePreviewCallback.preview(CommentCompressionConverter.readPrefix(note.get("comment"), previewLength), previewLength);
+            Document atVersion = new Document("_id", note.get("_id")).append("patientId", note.get("patientId")).append("version", note.get("version"));
+            updates.add(new UpdateOneModel<>(atVersion, new Document("$set", new Document(NotePreviewCallback.PREVIEW_FIELD, preview))));
+            if (updates.size() == PREVIEW_BATCH_SIZE) {
+                modified += notes.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                updates.clear();
+            }
+        }
+        if (!updates.isEmpty()) {
+            modified += notes.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+        LOGGER.info("[STARTUP]-> comment previews set on existing notes [PARAM]-> length = {} [PARAM]-> count = {}", previewLength, modified);
+    }
+
+    /**
+     * Fails the startup if the winning plan of a query is a collection scan.
+     *
+     * @param name   Name of the query in the logs.
+     * @param filter Filter of the query.
+     * @param sort   Sort of the query.
+     * @throws IllegalStateException if the query scans the whole collection.
+     */
+    private void checkQueryPlan(String name, Document filter, Document sort) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(Note.class)).append("filter", filter);
+        if (!sort.isEmpty()) {
+            find.append("sort", sort);
+        }
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+        Object winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+        if (hasStage(winningPlan, "COLLSCAN")) {
+            throw new IllegalStateException("The plan of the query " + name + " is a collection scan : " + winningPlan);
+        } else {
+            LOGGER.info("[STARTUP]-> query plan uses an index [PARAM]-> query = {}", name);
+        }
+    }
+
+    static boolean hasStage(Object plan, String stage) {
+        if (plan instanceof Map<?, ?> map) {
+            if (stage.equals(map.get("stage"))) {
+                return true;
+            }
+            return map.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return false;
+    }
+}
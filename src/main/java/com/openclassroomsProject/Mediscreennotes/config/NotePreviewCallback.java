@@ -0,0 +1,61 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stores the beginning of the comment of a note as plain text in the preview field, read by the summaries instead of
+ * the comment, which may be compressed. The preview keeps one character more than mediscreen.notes.summary.preview-length,
+ * to know if the comment is longer. Added to the document of every inserted note, by the blocking and the reactive
+ * templates, bulk inserts included; the comment updates set it with the comment.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NotePreviewCallback implements BeforeSaveCallback<Note> {
+
+    public static final String PREVIEW_FIELD = "preview";
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Override
+    public Note onBeforeSave(Note note, Document document, String collection) {
+        document.put(PREVIEW_FIELD, preview(note.getComment(), noteProperties.getSummary().getPreviewLength()));
+        return note;
+    }
+
+    /**
+     * @param comment       The comment, null if none.
+     * @param previewLength Number of characters of the preview.
+     * @return The first previewLength + 1 characters (code points) of the comment, the whole comment if it is shorter.
+     */
+    public static String preview(String comment, int previewLength) {
+        if (comment == null || comment.codePointCount(0, comment.length()) <= previewLength + 1) {
+            return comment;
+        }
+        return comment.substring(0, comment.offsetByCodePoints(0, previewLength + 1));
+    }
+
+    /**
+     * The same preview for the notes inserted by the reactive template.
+     */
+    @Component
+    public static class Reactive implements ReactiveBeforeSaveCallback<Note> {
+
+        @Autowired
+        private NotePreviewCallback notePreviewCallback;
+
+        @Override
+        public Publisher<Note> onBeforeSave(Note note, Document document, String collection) {
+            return Mono.just(notePreviewCallback.onBeforeSave(note, document, collection));
+        }
+    }
+}
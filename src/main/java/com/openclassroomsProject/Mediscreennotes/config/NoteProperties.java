@@ -0,0 +1,659 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.mongodb.ReadPreference;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the note endpoints and storage.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@ConfigurationProperties(prefix = "mediscreen.notes")
+public class NoteProperties {
+
+    private final Bulk bulk = new Bulk();
+    private final Cache cache = new Cache();
+    private final ChangeStream changeStream = new ChangeStream();
+    private final Pool pool = new Pool();
+    private final Sync sync = new Sync();
+    private final Search search = new Search();
+    private final Compression compression = new Compression();
+    private final Summary summary = new Summary();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final Sharding sharding = new Sharding();
+    private final Reads reads = new Reads();
+    private final Export export = new Export();
+    private final WarmUp warmUp = new WarmUp();
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public ChangeStream getChangeStream() {
+        return changeStream;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Sync getSync() {
+        return sync;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Summary getSummary() {
+        return summary;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public Reads getReads() {
+        return reads;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Bulk ingestion of notes.
+     */
+    public static class Bulk {
+
+        private int batchSize = 1000;
+        private int maxLineLength = 1024 * 1024;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * @return Maximum number of characters of a line, a longer line is rejected.
+         */
+        public int getMaxLineLength() {
+            return maxLineLength;
+        }
+
+        public void setMaxLineLength(int maxLineLength) {
+            this.maxLineLength = maxLineLength;
+        }
+    }
+
+    /**
+     * In-process cache of the note lists of the patients.
+     */
+    public static class Cache {
+
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+        private long maximumWeight = 64L * 1024 * 1024;
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * Change stream keeping the local caches of several instances coherent.
+     */
+    public static class ChangeStream {
+
+        private boolean enabled = false;
+        private String instanceId;
+        private int tokenSaveEvents = 100;
+        private Duration tokenSaveInterval = Duration.ofSeconds(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public void setInstanceId(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        public int getTokenSaveEvents() {
+            return tokenSaveEvents;
+        }
+
+        public void setTokenSaveEvents(int tokenSaveEvents) {
+            this.tokenSaveEvents = tokenSaveEvents;
+        }
+
+        public Duration getTokenSaveInterval() {
+            return tokenSaveInterval;
+        }
+
+        public void setTokenSaveInterval(Duration tokenSaveInterval) {
+            this.tokenSaveInterval = tokenSaveInterval;
+        }
+    }
+
+    /**
+     * Connection pool of the Mongo driver.
+     * The defaults are the ones of the driver, they are raised by the virtual profile where the number
+     * of concurrent requests is no longer limited by the Tomcat thread pool.
+     */
+    public static class Pool {
+
+        private int maxSize = 100;
+        private int minSize = 0;
+        private int maxConnecting = 2;
+        private Duration maxWaitTime = Duration.ofMinutes(2);
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public int getMaxConnecting() {
+            return maxConnecting;
+        }
+
+        public void setMaxConnecting(int maxConnecting) {
+            this.maxConnecting = maxConnecting;
+        }
+
+        public Duration getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        public void setMaxWaitTime(Duration maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+        }
+    }
+
+    /**
+     * Changes endpoint (delta synchronization).
+     */
+    public static class Sync {
+
+        private Duration visibilityLag = Duration.ofSeconds(5);
+        private Duration tombstoneRetention = Duration.ofDays(30);
+
+        /**
+         * @return Only the changes older than this lag are returned, so that a write dated before a watermark
+         * but still in flight when the watermark was given can not be missed.
+         */
+        public Duration getVisibilityLag() {
+            return visibilityLag;
+        }
+
+        public void setVisibilityLag(Duration visibilityLag) {
+            this.visibilityLag = visibilityLag;
+        }
+
+        public Duration getTombstoneRetention() {
+            return tombstoneRetention;
+        }
+
+        public void setTombstoneRetention(Duration tombstoneRetention) {
+            this.tombstoneRetention = tombstoneRetention;
+        }
+    }
+
+    /**
+     * Full-text search index of the comments.
+     */
+    public static class Search {
+
+        private String indexPath = "";
+        private Duration refreshInterval = Duration.ofSeconds(1);
+        private Duration syncInterval = Duration.ofSeconds(10);
+        private int maxPageSize = 100;
+        private int maxResultWindow = 10000;
+
+        /**
+         * @return Directory of the index, kept between restarts. Blank to keep the index in memory,
+         * it is then built again from the notes at each startup.
+         */
+        public String getIndexPath() {
+            return indexPath;
+        }
+
+        public void setIndexPath(String indexPath) {
+            this.indexPath = indexPath;
+        }
+
+        /**
+         * @return Delay before a write is visible to the searches, the index is refreshed by a scheduled task
+         * at this interval, and at most every 10 ms.
+         */
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        /**
+         * @return Interval between two reads of the note changes, which apply the writes of the other instances.
+         */
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+
+        /**
+         * @return Maximum rank of a search result, (page + 1) * size.
+         */
+        public int getMaxResultWindow() {
+            return maxResultWindow;
+        }
+
+        public void setMaxResultWindow(int maxResultWindow) {
+            this.maxResultWindow = maxResultWindow;
+        }
+    }
+
+    /**
+     * Compression of the long comments in the database.
+     */
+    public static class Compression {
+
+        private int threshold = 1024;
+        private int level = 6;
+
+        /**
+         * @return Size in bytes (UTF-8) from which a comment is stored compressed, shorter comments are stored as text.
+         */
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * @return Deflate level, from 1 (fastest) to 9 (smallest).
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Summary view of the note lists (view=summary).
+     */
+    public static class Summary {
+
+        private int previewLength = 100;
+
+        /**
+         * @return Number of characters (code points) of the comment returned in a summary.
+         */
+        public int getPreviewLength() {
+            return previewLength;
+        }
+
+        public void setPreviewLength(int previewLength) {
+            this.previewLength = previewLength;
+        }
+    }
+
+    /**
+     * Write-behind creation of the notes: a created note is acknowledged once journaled on the local disk,
+     * and inserted later with the other pending notes.
+     */
+    public static class WriteBehind {
+
+        private boolean enabled = false;
+        private String journalPath = "./data/note-journal";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private int flushSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private int maxPending = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return Directory of the journal segments, it must not be shared by two instances.
+         */
+        public String getJournalPath() {
+            return journalPath;
+        }
+
+        public void setJournalPath(String journalPath) {
+            this.journalPath = journalPath;
+        }
+
+        /**
+         * @return Size of a journal segment file, a note larger than a segment is inserted directly.
+         */
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * @return Maximum number of notes of an insert.
+         */
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        public void setFlushSize(int flushSize) {
+            this.flushSize = flushSize;
+        }
+
+        /**
+         * @return Maximum time a note waits for the other notes of its insert.
+         */
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        /**
+         * @return Number of pending notes above which the notes are inserted directly again.
+         */
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    /**
+     * Sharding of the note collection on a hashed patient key, behind a mongos router.
+     */
+    public static class Sharding {
+
+        private boolean enabled = false;
+
+        /**
+         * @return true to shard the note collection at startup, the application must be connected to a mongos.
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Read preference of the read operations of the note service, by method name.
+     */
+    public static class Reads {
+
+        private String preferences = "";
+        private Duration maxStaleness = Duration.ofSeconds(90);
+        private Map<String, ReadPreference> readPreferences = Map.of();
+
+        /**
+         * @return Comma separated list of method=readPreference pairs ("getAllNotes=secondaryPreferred"),
+         * the other methods read from the primary.
+         */
+        public String getPreferences() {
+            return preferences;
+        }
+
+        public void setPreferences(String preferences) {
+            Map<String, ReadPreference> parsed = new HashMap<>();
+            for (String entry : preferences.split(",")) {
+                String[] pair = entry.split("=");
+                if (pair.length == 2) {
+                    parsed.put(pair[0].trim(), ReadPreference.valueOf(pair[1].trim()));
+                }
+            }
+            this.preferences = preferences;
+            this.readPreferences = parsed;
+        }
+
+        /**
+         * @return Maximum replication lag of the secondaries read, 90 seconds at least.
+         */
+        public Duration getMaxStaleness() {
+            return maxStaleness;
+        }
+
+        public void setMaxStaleness(Duration maxStaleness) {
+            this.maxStaleness = maxStaleness;
+        }
+
+        /**
+         * @param operation Name of the method of the note service.
+         * @return The read preference of the method, the primary if none is set, bounded by the maximum staleness.
+         */
+        public ReadPreference readPreference(String operation) {
+            ReadPreference readPreference = readPreferences.getOrDefault(operation, ReadPreference.primary());
+            if (readPreference.equals(ReadPreference.primary()) || maxStaleness == null || maxStaleness.isZero()) {
+                return readPreference;
+            }
+            return ReadPreference.valueOf(readPreference.getName(), List.of(), maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Snapshot export of all notes to a binary file, for the analytics jobs.
+     */
+    public static class Export {
+
+        private String path = "./data/note-export";
+        private int parallelism = 4;
+        private int rangesPerWorker = 4;
+        private DataSize blockSize = DataSize.ofMegabytes(1);
+
+        /**
+         * @return Directory of the export file, and of the part files while an export runs.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        /**
+         * @return Number of _id ranges read and written in parallel.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * @return Number of _id ranges per parallel reader, smaller ranges even out the work of the readers.
+         */
+        public int getRangesPerWorker() {
+            return rangesPerWorker;
+        }
+
+        public void setRangesPerWorker(int rangesPerWorker) {
+            this.rangesPerWorker = rangesPerWorker;
+        }
+
+        /**
+         * @return Size above which a block of notes is written, the memory used by a reader.
+         */
+        public DataSize getBlockSize() {
+            return blockSize;
+        }
+
+        public void setBlockSize(DataSize blockSize) {
+            this.blockSize = blockSize;
+        }
+    }
+
+    /**
+     * Warm-up at startup, before the application is reported ready.
+     */
+    public static class WarmUp {
+
+        private boolean enabled;
+        private Duration maxDuration = Duration.ofSeconds(60);
+        private int patients = 1000;
+        private int requests = 2000;
+        private int parallelism = 4;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return Time after which the warm-up stops, where it is.
+         */
+        public Duration getMaxDuration() {
+            return maxDuration;
+        }
+
+        public void setMaxDuration(Duration maxDuration) {
+            this.maxDuration = maxDuration;
+        }
+
+        /**
+         * @return Number of patients whose notes are loaded, from the sample recorded at the last stop,
+         * or the patients having the most notes.
+         */
+        public int getPatients() {
+            return patients;
+        }
+
+        public void setPatients(int patients) {
+            this.patients = patients;
+        }
+
+        /**
+         * @return Number of requests sent to the patient endpoints of the application, to compile their code.
+         */
+        public int getRequests() {
+            return requests;
+        }
+
+        public void setRequests(int requests) {
+            this.requests = requests;
+        }
+
+        /**
+         * @return Number of patients loaded, or of requests sent, in parallel.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shards the note collection on a hashed patient key at startup (mediscreen.notes.sharding.enabled).
+ * The notes of a patient live on one shard: the reads and writes of a patient, and those of a note when its patient
+ * is given, are routed by mongos to that shard only. The scans of all notes are sent to every shard in parallel
+ * and merged by mongos, in the order of the query.
+ * The other collections, small, stay on the primary shard of the database.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteShardingInitializer implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteShardingInitializer.class);
+    static final String SHARD_KEY_INDEX = "patientId_hashed";
+    static final Document SHARD_KEY = new Document("patientId", "hashed");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!noteProperties.getSharding().isEnabled()) {
+            return;
+        }
+        String database = mongoTemplate.getDb().getName();
+        String namespace = database + "." + mongoTemplate.getCollectionName(Note.class);
+        try {
+            Document sharded = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("config").getCollection("collections")
+                    .find(new Document("_id", namespace)).first();
+            if (sharded != null && sharded.get("key") != null) {
+                if (SHARD_KEY.equals(sharded.get("key"))) {
+                    LOGGER.info("[STARTUP]-> note collection sharded [PARAM]-> key = {}", sharded.get("key"));
+                } else {
+                    LOGGER.warn("[STARTUP]-> note collection sharded on another key, the writes of a note are not routed by its patient [PARAM]-> key = {}",
+                            sharded.get("key"));
+                }
+                return;
+            }
+            // The shard key index must exist before a collection holding documents is sharded
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class)).createIndex(SHARD_KEY, new IndexOptions().name(SHARD_KEY_INDEX));
+            MongoDatabase admin = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("admin");
+            // Implicit since MongoDB 6.0, required before
+            admin.runCommand(new Document("enableSharding", database));
+            admin.runCommand(new Document("shardCollection", namespace).append("key", SHARD_KEY));
+            LOGGER.info("[STARTUP]-> note collection sharded [PARAM]-> namespace = {} [PARAM]-> key = {}", namespace, SHARD_KEY);
+        } catch (RuntimeException exception) {
+            LOGGER.error("[STARTUP]-> unable to shard the note collection, is the application connected to a mongos ? [PARAM]-> namespace = {}",
+                    namespace, exception);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trigger terms searched in the notes of a patient for the diabetes risk report.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@ConfigurationProperties(prefix = "mediscreen.triggers")
+public class TriggerProperties {
+
+    private List<String> terms = new ArrayList<>();
+    private int rebuildBatchSize = 500;
+    private int rebuildParallelism = Runtime.getRuntime().availableProcessors();
+    private int batchChunkSize = 500;
+    private int maxCountedNotes = 1000;
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+
+    public int getRebuildBatchSize() {
+        return rebuildBatchSize;
+    }
+
+    public void setRebuildBatchSize(int rebuildBatchSize) {
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+
+    public int getRebuildParallelism() {
+        return rebuildParallelism;
+    }
+
+    public void setRebuildParallelism(int rebuildParallelism) {
+        this.rebuildParallelism = rebuildParallelism;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public void setBatchChunkSize(int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    public int getMaxCountedNotes() {
+        return maxCountedNotes;
+    }
+
+    public void setMaxCountedNotes(int maxCountedNotes) {
+        this.maxCountedNotes = maxCountedNotes;
+    }
+}
@@ -0,0 +1,101 @@
+package com.openclassroomsProject.Mediscreennotes.controller;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the UTF-8 chunks of a request body into lines, the reactive counterpart of {@link BoundedLineReader}:
+ * no more than a maximum number of characters of a line is held in memory, the end of a longer line is skipped,
+ * and the line is reported too long. It replaces the string decoder of the codecs, whose own limit
+ * (spring.codec.max-in-memory-size) would fail the whole request on the first long line.
+ * Lines end with \n, \r or \r\n. Not thread safe, a decoder reads the chunks of one body in order.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+final class BoundedLineDecoder {
+
+    private final int maxLength;
+    private final long maxBytes;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private boolean skipLineFeed;
+    private boolean tooLong;
+    private boolean read;
+
+    /**
+     * A line of the body.
+     */
+    static final class Line {
+
+        final String text;
+        final boolean tooLong;
+
+        Line(String text, boolean tooLong) {
+            this.text = text;
+            this.tooLong = tooLong;
+        }
+
+        boolean isBlank() {
+            return !tooLong && text.isBlank();
+        }
+    }
+
+    BoundedLineDecoder(int maxLength) {
+        this.maxLength = maxLength;
+        // A character takes at most 3 bytes in UTF-8, 4 bytes for a surrogate pair of 2 characters
+        this.maxBytes = 3L * maxLength;
+    }
+
+    /**
+     * @param buffer The next chunk of the body, released once read.
+     * @return The lines ended in this chunk.
+     */
+    List<Line> decode(DataBuffer buffer) {
+        List<Line> lines = new ArrayList<>();
+        try {
+            while (buffer.readableByteCount() > 0) {
+                byte character = buffer.read();
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (character == '\n') {
+                        continue;
+                    }
+                }
+                if (character == '\n' || character == '\r') {
+                    skipLineFeed = character == '\r';
+                    lines.add(complete());
+                    continue;
+                }
+                read = true;
+                if (line.size() < maxBytes) {
+                    line.write(character);
+                } else {
+                    tooLong = true;
+                }
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return lines;
+    }
+
+    /**
+     * @return The last line if the body does not end with a line end, none otherwise.
+     */
+    List<Line> end() {
+        return read ? List.of(complete()) : List.of();
+    }
+
+    private Line complete() {
+        String text = line.toString(StandardCharsets.UTF_8);
+        Line completed = tooLong || text.length() > maxLength ? new Line(null, true) : new Line(text, false);
+        line.reset();
+        tooLong = false;
+        read = false;
+        return completed;
+    }
+}
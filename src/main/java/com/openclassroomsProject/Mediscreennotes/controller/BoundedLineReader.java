@@ -0,0 +1,76 @@
+package com.openclassroomsProject.Mediscreennotes.controller;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the lines of a text like {@link java.io.BufferedReader#readLine()}, without holding more than a maximum
+ * number of characters of a line in memory: the end of a longer line is read and skipped, and the line is reported too long.
+ * Lines end with \n, \r or \r\n.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+final class BoundedLineReader {
+
+    private final Reader reader;
+    private final int maxLength;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder line = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private boolean tooLong;
+
+    BoundedLineReader(Reader reader, int maxLength) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return The next line, without its end, cut to the maximum length if it is longer. Null at the end of the text.
+     * @throws IOException if the text can not be read.
+     */
+    String readLine() throws IOException {
+        line.setLength(0);
+        tooLong = false;
+        boolean read = false;
+        while (position < limit || fill()) {
+            char character = buffer[position++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (character == '\n') {
+                    continue;
+                }
+            }
+            if (character == '\n' || character == '\r') {
+                skipLineFeed = character == '\r';
+                return line.toString();
+            }
+            read = true;
+            if (line.length() < maxLength) {
+                line.append(character);
+            } else {
+                tooLong = true;
+            }
+        }
+        return read ? line.toString() : null;
+    }
+
+    /**
+     * @return True if the last line read was longer than the maximum length.
+     */
+    boolean isTooLong() {
+        return tooLong;
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        while (count == 0) {
+            count = reader.read(buffer, 0, buffer.length);
+        }
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+}
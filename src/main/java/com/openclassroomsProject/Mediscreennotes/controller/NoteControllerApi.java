@@ -1,54 +1,255 @@
 package com.openclassroomsProject.Mediscreennotes.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.config.BinaryFormatConfig;
+import com.openclassroomsProject.Mediscreennotes.config.CausalReadContext;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.exception.NoteVersionConflictException;
+import com.openclassroomsProject.Mediscreennotes.exception.WatermarkExpiredException;
+import com.openclassroomsProject.Mediscreennotes.journal.NoteWriteBehindQueue;
 import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerBatchRequest;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerIndexCheckpoint;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerReport;
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteExportService;
+import com.openclassroomsProject.Mediscreennotes.service.INoteSearchService;
 import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import com.openclassroomsProject.Mediscreennotes.service.ITriggerService;
+import com.openclassroomsProject.Mediscreennotes.warmup.HotPatientSample;
+import com.openclassroomsProject.Mediscreennotes.warmup.NoteWarmUp;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
+ * Note API of the servlet (Spring MVC) stack, the default one.
+ * The notes are exchanged in JSON, or in CBOR or Smile when asked by the Accept and Content-Type headers (see {@link BinaryFormatConfig}).
+ * The writes return the operation time of the write in the X-Note-Operation-Time header. A client sending it back
+ * with its next reads reads its own writes, even when the reads are routed to a secondary (see {@link CausalReadContext}).
+ *
  * @author jonathan GOUVEIA
  * @version 1.0
  */
 @RestController
 @RequestMapping("/api/note")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class NoteControllerApi {
     private static final Logger LOGGER = LoggerFactory.getLogger(NoteControllerApi.class);
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final List<MediaType> STREAMED_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, BinaryFormatConfig.APPLICATION_SMILE);
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     @Autowired
     private INoteService noteService;
 
+    @Autowired
+    private ITriggerService triggerService;
+
+    @Autowired
+    private INoteSearchService noteSearchService;
+
+    @Autowired
+    private INoteExportService noteExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private NoteWriteBehindQueue noteWriteBehindQueue;
+
+    @Autowired
+    private HotPatientSample hotPatientSample;
+
+    @Autowired
+    private CausalReadContext causalReadContext;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+
     /**
      * Get the list of all notes.
+     * The notes are written to the response as they are read from the Mongo cursor,
+     * so the memory used by a request does not depend on the size of the collection.
      *
-     * @return Contains a list of notes if they exist, otherwise returns a 404 not found error.
+     * @param accept The Accept header, the notes are written in JSON unless CBOR or Smile is preferred.
+     * @return Contains a list of notes if they exist, otherwise returns a 204 no content response.
+     * A 406 not acceptable response if the client accepts neither JSON, CBOR nor Smile.
      */
     @GetMapping
-    public ResponseEntity<List<Note>> getAllNotes() {
+    public ResponseEntity<StreamingResponseBody> getAllNotes(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         LOGGER.info("[CONTROLLER API]-> call method : getAllNotes");
-        List<Note> noteList = noteService.getAllNotes();
-        if (!noteList.isEmpty()) {
-            return ResponseEntity.ok(noteList);
-        } else {
+        return writeArray(noteService.streamAllNotes(), accept);
+    }
+
+    /**
+     * Get the summaries of all notes (view=summary) : id, patient, version, dates and the beginning of the comment.
+     * Streamed like the full notes.
+     *
+     * @param accept The Accept header, the summaries are written in JSON unless CBOR or Smile is preferred.
+     * @return Contains a list of note summaries if notes exist, otherwise returns a 204 no content response.
+     * A 406 not acceptable response if the client accepts neither JSON, CBOR nor Smile.
+     */
+    @GetMapping(params = "view=summary")
+    public ResponseEntity<StreamingResponseBody> getAllNoteSummaries(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        LOGGER.info("[CONTROLLER API]-> call method : getAllNoteSummaries");
+        return writeArray(noteService.streamAllNoteSummaries(), accept);
+    }
+
+    /**
+     * Get a page of notes ordered by id (keyset pagination).
+     * The cursor of the next page is returned in the X-Next-Cursor header when more notes may exist.
+     *
+     * @param limit Maximum number of notes of the page, between 1 and 1000.
+     * @param after Opaque cursor returned by the previous page, absent for the first page.
+     * @return Contains the notes of the page, a 204 no content response if the page is empty,
+     * or a 400 bad request if the parameters are invalid.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<List<Note>> getNotesPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNotesPage [PARAM]-> limit = {} [PARAM]-> after = {}", limit, after);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String afterId;
+        try {
+            afterId = after == null ? null : decodeCursor(after);
+        } catch (IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Note> notes = noteService.getNotesPage(afterId, limit);
+        if (notes.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (notes.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, encodeCursor(notes.get(notes.size() - 1).getId()));
+        }
+        return response.body(notes);
+    }
+
+    /**
+     * GET Request, full-text search of the note comments.
+     * Accents and case are ignored. The query accepts "quoted phrases", prefix* terms, | for or and - to exclude a term,
+     * all the other terms are required.
+     *
+     * @param q         The query.
+     * @param patientId Patient identifier to search only the notes of a patient, absent to search all notes.
+     * @param page      Index of the page, from 0.
+     * @param size      Number of hits of a page, at most 100.
+     * @return Contains the page of hits with the matching passage of each comment,
+     * or a 400 bad request if the query is blank or the page out of bounds.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<NoteSearchResult> searchNotes(@RequestParam String q, @RequestParam(required = false) Integer patientId,
+                                                        @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+        LOGGER.info("[CONTROLLER API]-> call method : searchNotes [PARAM]-> q = {} [PARAM]-> patientId = {}", q, patientId);
+        try {
+            return ResponseEntity.ok(noteSearchService.searchNotes(q, patientId, page, size));
+        } catch (IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * GET Request, get the notes created, updated or deleted since the previous call (delta sync).
+     * The watermark of the response is given as since parameter of the next call, the changes are complete
+     * when the complete flag is true.
+     *
+     * @param since Opaque watermark returned by the previous call, absent for the first call.
+     * @param limit Maximum number of notes, and of deleted notes, between 1 and 1000.
+     * @return Contains the changes, a 400 bad request if the parameters are invalid, or a 410 gone if the watermark
+     * is older than the retention of the deleted notes, the client must then sync all notes again.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<NoteChanges> getChangesSince(@RequestParam(required = false) String since,
+                                                       @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit) {
+        LOGGER.info("[CONTROLLER API]-> call method : getChangesSince [PARAM]-> since = {} [PARAM]-> limit = {}", since, limit);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(noteService.getChangesSince(since, limit));
+        } catch (IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().build();
+        } catch (WatermarkExpiredException exception) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
     }
 
     /**
      * GET Request, get all notes for a patient.
+     * The response carries the version of the note list in the ETag and Last-Modified headers. When the client sends
+     * the current ETag in If-None-Match (or a date not older than the last write in If-Modified-Since),
+     * a 304 not modified response is returned without loading the notes.
      *
-     * @param patientId Patient identifier.
-     * @return Contains a list of all patient notes if they exist, otherwise returns a 404 not found error.
+     * @param patientId  Patient identifier.
+     * @param webRequest The current request, to evaluate its conditional headers.
+     * @return Contains a list of all patient notes if they exist, a 304 not modified response if the client is current,
+     * otherwise returns a 204 no content response.
      */
     @GetMapping("/patient/{patientId}")
-    public ResponseEntity<List<Note>> getNotesByPatientId(@PathVariable Integer patientId) {
-        LOGGER.info("[CONTROLLER API]-> call method : getNotesByPatientId [PARAM]-> patientId = " + patientId);
-        List<Note> notesList = noteService.getAllNotesByPatientId(patientId);
+    public ResponseEntity<List<Note>> getNotesByPatientId(@PathVariable Integer patientId, WebRequest webRequest) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNotesByPatientId [PARAM]-> patientId = {}", patientId);
+        hotPatientSample.record(patientId, webRequest.getHeader(NoteWarmUp.WARM_UP_HEADER));
+        // Read like the notes, which are then read after it
+        PatientNoteVersion version = noteService.getPatientNoteVersion(patientId, "getAllNotesByPatientId");
+        // Also writes the ETag and Last-Modified headers to the response
+        if (webRequest.checkNotModified(PatientNoteVersionTracker.eTag(version), version.getLastModified().getTime())) {
+            return null;
+        }
+        // The notes are read under the version sent as ETag, never from a cached list of an older version
+        List<Note> notesList = noteService.getAllNotesByPatientId(patientId, version);
         if (!notesList.isEmpty()) {
             return ResponseEntity.ok(notesList);
         } else {
@@ -56,66 +257,478 @@ public class NoteControllerApi {
         }
     }
 
+    /**
+     * GET Request, get the summaries of the notes of a patient (view=summary) : id, version, dates and the beginning
+     * of the comment. Conditional like the full list.
+     *
+     * @param patientId  Patient identifier.
+     * @param webRequest The current request, to evaluate its conditional headers.
+     * @return Contains the summaries of the patient notes if they exist, a 304 not modified response if the client is current,
+     * otherwise returns a 204 no content response.
+     */
+    @GetMapping(value = "/patient/{patientId}", params = "view=summary")
+    public ResponseEntity<List<NoteSummary>> getNoteSummariesByPatientId(@PathVariable Integer patientId, WebRequest webRequest) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteSummariesByPatientId [PARAM]-> patientId = {}", patientId);
+        PatientNoteVersion version = noteService.getPatientNoteVersion(patientId, "getNoteSummariesByPatientId");
+        if (webRequest.checkNotModified(PatientNoteVersionTracker.eTag(version), version.getLastModified().getTime())) {
+            return null;
+        }
+        List<NoteSummary> summaries = noteService.getNoteSummariesByPatientId(patientId, version);
+        if (!summaries.isEmpty()) {
+            return ResponseEntity.ok(summaries);
+        } else {
+            return ResponseEntity.noContent().build();
+        }
+    }
+
+    /**
+     * GET Request, get the ids of all notes of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @return Contains the ids of the patient notes if they exist, otherwise returns a 204 no content response.
+     */
+    @GetMapping("/patient/{patientId}/ids")
+    public ResponseEntity<List<String>> getNoteIdsByPatientId(@PathVariable Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteIdsByPatientId [PARAM]-> patientId = {}", patientId);
+        List<String> noteIds = noteService.getNoteIdsByPatientId(patientId);
+        if (!noteIds.isEmpty()) {
+            return ResponseEntity.ok(noteIds);
+        } else {
+            return ResponseEntity.noContent().build();
+        }
+    }
+
+    /**
+     * GET Request, count the trigger terms found in the notes of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @return Contains the number of occurrences of each trigger term, zero if the patient has no notes.
+     */
+    @GetMapping("/patient/{patientId}/triggers")
+    public ResponseEntity<TriggerReport> getTriggersByPatientId(@PathVariable Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggersByPatientId [PARAM]-> patientId = {}", patientId);
+        return ResponseEntity.ok(triggerService.countTriggersByPatientId(patientId));
+    }
+
+    /**
+     * POST Request, count the trigger terms of several patients in one call.
+     * The reports are streamed as newline delimited JSON, one line per patient.
+     *
+     * @param request Either a list of patient identifiers or an inclusive range of patient identifiers.
+     * @return ResponseEntity streaming the reports, or a 400 bad request if no patients are given.
+     */
+    @PostMapping("/triggers/batch")
+    public ResponseEntity<StreamingResponseBody> getTriggersByPatientIds(@RequestBody TriggerBatchRequest request) {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggersByPatientIds [PARAM]-> request = {}", request);
+        Stream<TriggerReport> reports;
+        if (request.getPatientIds() != null) {
+            reports = triggerService.countTriggersByPatientIds(request.getPatientIds());
+        } else if (request.getFromPatientId() != null && request.getToPatientId() != null) {
+            reports = triggerService.countTriggersByPatientRange(request.getFromPatientId(), request.getToPatientId());
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(writeNdjson(reports));
+    }
+
+    /**
+     * POST Request, start or resume the rebuild of the trigger index of all patients.
+     *
+     * @return ResponseEntity containing the progress of the rebuild with status code 202, Accepted.
+     */
+    @PostMapping("/triggers/index/rebuild")
+    public ResponseEntity<TriggerIndexCheckpoint> rebuildTriggerIndex() {
+        LOGGER.info("[CONTROLLER API]-> call method : rebuildTriggerIndex");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(triggerService.rebuildTriggerIndex());
+    }
+
+    /**
+     * GET Request, get the progress of the last rebuild of the trigger index.
+     *
+     * @return Contains the progress of the rebuild.
+     */
+    @GetMapping("/triggers/index/rebuild")
+    public ResponseEntity<TriggerIndexCheckpoint> getTriggerIndexRebuildStatus() {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggerIndexRebuildStatus");
+        return ResponseEntity.ok(triggerService.getTriggerIndexRebuildStatus());
+    }
+
+    /**
+     * POST Request, start a snapshot export of all notes to a binary file, for the analytics jobs.
+     *
+     * @return ResponseEntity containing the state of the export with status code 202, Accepted.
+     */
+    @PostMapping("/export")
+    public ResponseEntity<NoteExportStatus> exportNotes() {
+        LOGGER.info("[CONTROLLER API]-> call method : exportNotes");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(noteExportService.exportNotes());
+    }
+
+    /**
+     * GET Request, get the state of the export in progress or of the last export.
+     *
+     * @return Contains the state of the export.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<NoteExportStatus> getNoteExportStatus() {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteExportStatus");
+        return ResponseEntity.ok(noteExportService.getNoteExportStatus());
+    }
+
+    /**
+     * GET Request, download the last complete export.
+     * The file is sent by Tomcat with sendfile, from the page cache to the socket without being copied into the JVM.
+     * Only sendfile is zero-copy: when it is not available (TLS connector), the file is copied through a heap buffer
+     * to the response output stream.
+     *
+     * @param request  The request, to hand the file over to Tomcat.
+     * @param response The response, receiving the file.
+     * @throws IOException if the file can not be read or the response can not be written.
+     */
+    @GetMapping("/export/file")
+    public void downloadNoteExport(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        LOGGER.info("[CONTROLLER API]-> call method : downloadNoteExport");
+        Optional<Path> file = noteExportService.getNoteExportFile();
+        if (file.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(size);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.get().getFileName() + "\"");
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.get().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            Channels.newInputStream(channel).transferTo(response.getOutputStream());
+        }
+    }
+
     /**
      * GET Request, get note by id.
+     * The version of the note is returned in the ETag header, to be sent back in If-Match by a conditional update or delete.
      *
-     * @param noteId Identifier of the wanted note.
+     * @param noteId    Identifier of the wanted note.
+     * @param patientId Optional patient of the note, reads only the shard of the note when the notes are sharded.
      * @return Contains the note if it exists, otherwise returns a 404 not found error.
      */
     @GetMapping("/{noteId}")
-    public ResponseEntity<Note> getNoteById(@PathVariable String noteId) {
-        LOGGER.info("[CONTROLLER API]-> call method : getNoteById [PARAM]-> noteId = " + noteId);
-        Optional<Note> note = noteService.getNoteById(noteId);
-        return note.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<Note> getNoteById(@PathVariable String noteId, @RequestParam(required = false) Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteById [PARAM]-> noteId = {} [PARAM]-> patientId = {}", noteId, patientId);
+        Optional<Note> note = noteService.getNoteById(noteId, patientId);
+        return note.map(existingNote -> ResponseEntity.ok().eTag(eTag(existingNote)).body(existingNote))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
      * Creates a new note.
+     * With the write-behind mode, the note is journaled and inserted shortly after the response.
      *
      * @param note the note to create.
-     * @return ResponseEntity containing the note created with status code 201, Created.
+     * @return ResponseEntity containing the note created with status code 201, Created, and its operation time,
+     * or the note with its id and status code 202, Accepted, if it is journaled.
      */
     @PostMapping
     public ResponseEntity<Note> createNote(@RequestBody Note note) {
-        LOGGER.info("[CONTROLLER API]-> call method : createNote [PARAM]-> note = " + note);
+        LOGGER.info("[CONTROLLER API]-> call method : createNote [PARAM]-> note = {}", note);
+        if (noteWriteBehindQueue.accept(note)) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(note);
+        }
         Note createdNote = noteService.createNote(note);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdNote);
+        return ResponseEntity.status(HttpStatus.CREATED).headers(operationTime()).body(createdNote);
     }
 
     /**
-     * Updates an existing note.
+     * Creates notes from a newline delimited JSON stream, one note per line.
+     * The notes are inserted by batches of unordered bulk writes, and the result of each line
+     * is streamed back as newline delimited JSON. The next batch is only read once the previous one
+     * has been written to the database and its results sent, so a slow database or client slows the upload down.
+     * A line longer than mediscreen.notes.bulk.max-line-length is skipped without being held in memory, and reported failed.
      *
-     * @param noteId The ID of the note to update.
-     * @param note   The new version of the note.
-     * @return ResponseEntity containing the updated note if it exists, otherwise a 404, not found response.
+     * @param body     The request body, one JSON note per line.
+     * @param response The response, receiving one result per non blank line.
+     * @throws IOException if the request can not be read or the response can not be written.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createNotes(InputStream body, HttpServletResponse response) throws IOException {
+        LOGGER.info("[CONTROLLER API]-> call method : createNotes");
+        int batchSize = Math.max(1, noteProperties.getBulk().getBatchSize());
+        int maxLineLength = noteProperties.getBulk().getMaxLineLength();
+        ObjectReader noteReader = objectMapper.readerFor(Note.class);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        BoundedLineReader reader = new BoundedLineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            List<Note> batch = new ArrayList<>(batchSize);
+            List<Long> batchLines = new ArrayList<>(batchSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (reader.isTooLong()) {
+                    NoteIngestResult result = new NoteIngestResult(null, IngestStatus.FAILED, "Line longer than " + maxLineLength + " characters");
+                    result.setLine(lineNumber);
+                    writeLine(generator, result);
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(noteReader.readValue(line));
+                    batchLines.add(lineNumber);
+                } catch (JsonProcessingException exception) {
+                    NoteIngestResult result = new NoteIngestResult(null, IngestStatus.FAILED, exception.getOriginalMessage());
+                    result.setLine(lineNumber);
+                    writeLine(generator, result);
+                }
+                if (batch.size() >= batchSize) {
+                    ingestBatch(generator, batch, batchLines);
+                }
+            }
+            ingestBatch(generator, batch, batchLines);
+        }
+    }
+
+    /**
+     * Updates the comment of an existing note, in a single write.
+     * With an If-Match header the update is only applied if the note is still at the version of the given ETag.
+     *
+     * @param noteId  The ID of the note to update.
+     * @param note    The new version of the note, only its comment is used, and its patient to find the note on its shard when the notes are sharded.
+     * @param ifMatch Optional ETag of the version the note must have.
+     * @return ResponseEntity containing the updated note and its new ETag if it exists, a 404, not found response if it does not,
+     * or a 412, precondition failed response if it has been modified since.
      */
     @PutMapping("/{noteId}")
-    public ResponseEntity<Note> updateNote(@PathVariable String noteId, @RequestBody Note note) {
-        LOGGER.info("[CONTROLLER API]-> call method : updateNote [PARAM]-> noteId = " + noteId + " [PARAM]-> note= " + note);
-        Optional<Note> existingNote = noteService.getNoteById(noteId);
-        if (existingNote.isPresent()) {
-            existingNote.get().setComment(note.getComment());
-            return ResponseEntity.ok(noteService.updateNote(existingNote.get()));
-        } else {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<Note> updateNote(@PathVariable String noteId, @RequestBody Note note,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        LOGGER.info("[CONTROLLER API]-> call method : updateNote [PARAM]-> noteId = {} [PARAM]-> note= {} [PARAM]-> ifMatch = {}", noteId, note, ifMatch);
+        Note update = new Note(noteId, note.getPatientId(), note.getComment());
+        try {
+            update.setVersion(parseIfMatch(ifMatch));
+            return noteService.updateNote(update)
+                    .map(updatedNote -> ResponseEntity.ok().eTag(eTag(updatedNote)).headers(operationTime()).body(updatedNote))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException | NoteVersionConflictException exception) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
     }
 
     /**
-     * Deletes an existing note.
+     * Deletes an existing note, in a single write.
+     * With an If-Match header the note is only deleted if it is still at the version of the given ETag.
      *
-     * @param noteId The identifier of the note to delete.
-     * @return ResponseEntity with no content if the note is deleted successfully, or a 404, not found response if the note does not exist.
+     * @param noteId    The identifier of the note to delete.
+     * @param patientId Optional patient of the note, writes only to the shard of the note when the notes are sharded.
+     * @param ifMatch   Optional ETag of the version the note must have.
+     * @return ResponseEntity with no content if the note is deleted successfully, a 404, not found response if the note does not exist,
+     * or a 412, precondition failed response if it has been modified since.
      */
     @DeleteMapping("/{noteId}")
-    public ResponseEntity<Void> deleteNote(@PathVariable String noteId) {
-        LOGGER.info("[CONTROLLER API]-> call method : deleteNote [PARAM]-> noteId = " + noteId);
-        Optional<Note> existingNote = noteService.getNoteById(noteId);
-        if (existingNote.isPresent()) {
-            noteService.deleteNoteById(existingNote.get().getId());
-            return ResponseEntity.noContent().build();
-        } else {
+    public ResponseEntity<Void> deleteNote(@PathVariable String noteId, @RequestParam(required = false) Integer patientId,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        LOGGER.info("[CONTROLLER API]-> call method : deleteNote [PARAM]-> noteId = {} [PARAM]-> patientId = {} [PARAM]-> ifMatch = {}",
+                noteId, patientId, ifMatch);
+        try {
+            if (noteService.deleteNoteById(noteId, patientId, parseIfMatch(ifMatch))) {
+                return ResponseEntity.noContent().headers(operationTime()).build();
+            }
             return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException | NoteVersionConflictException exception) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    /**
+     * @return The X-Note-Operation-Time header of the last write of the request, empty on a standalone server.
+     */
+    private HttpHeaders operationTime() {
+        HttpHeaders headers = new HttpHeaders();
+        String operationTime = causalReadContext.getLastOperationTime();
+        if (operationTime != null) {
+            headers.set(CausalReadContext.OPERATION_TIME_HEADER, operationTime);
+        }
+        return headers;
+    }
+
+    /**
+     * Builds the ETag of a note from its version, a note without version being at version 0.
+     *
+     * @param note The note.
+     * @return The strong ETag, quoted.
+     */
+    static String eTag(Note note) {
+        return "\"" + (note.getVersion() == null ? 0 : note.getVersion()) + "\"";
+    }
+
+    /**
+     * Reads the expected version of a note from an If-Match header.
+     *
+     * @param ifMatch The header, null or * when any version is accepted.
+     * @return The expected version, null when any version is accepted.
+     * @throws IllegalArgumentException if the header is not an ETag of this API, it can then match no version.
+     */
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Invalid If-Match header");
         }
+        return Long.parseLong(tag.substring(1, tag.length() - 1));
+    }
+
+    /**
+     * Builds the opaque cursor pointing after the given note.
+     *
+     * @param noteId Id of the last note of a page.
+     * @return The cursor.
+     */
+    static String encodeCursor(String noteId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(noteId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the note id from an opaque cursor.
+     *
+     * @param cursor The cursor returned by a previous page.
+     * @return The note id.
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    static String decodeCursor(String cursor) {
+        String noteId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (noteId.isBlank()) {
+            throw new IllegalArgumentException("Empty cursor");
+        }
+        return noteId;
+    }
+
+    private void ingestBatch(JsonGenerator generator, List<Note> batch, List<Long> batchLines) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<NoteIngestResult> results = noteService.createNotes(batch);
+        for (int index = 0; index < results.size(); index++) {
+            NoteIngestResult result = results.get(index);
+            result.setLine(batchLines.get(index));
+            writeLine(generator, result);
+        }
+        generator.flush();
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private static void writeLine(JsonGenerator generator, Object value) throws IOException {
+        generator.writeObject(value);
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Writes the elements of a stream as an array, as they are read, in the format preferred by the client.
+     * The elements read by the async thread writing the body start after the operation time of the request.
+     *
+     * @param elements The elements to write, the stream is closed once written.
+     * @param accept   The Accept header of the request.
+     * @return The response streaming the array, a 204 no content response if the stream is empty,
+     * or a 406 not acceptable response if the client accepts none of the formats.
+     */
+    private ResponseEntity<StreamingResponseBody> writeArray(Stream<?> elements, String accept) {
+        Optional<MediaType> acceptedType = streamedMediaType(accept);
+        if (acceptedType.isEmpty()) {
+            elements.close();
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+        }
+        Iterator<?> iterator = elements.iterator();
+        if (!iterator.hasNext()) {
+            elements.close();
+            return ResponseEntity.noContent().build();
+        }
+        MediaType mediaType = acceptedType.get();
+        ObjectMapper mapper = MediaType.APPLICATION_CBOR.equals(mediaType) ? cborHttpMessageConverter.getObjectMapper()
+                : BinaryFormatConfig.APPLICATION_SMILE.equals(mediaType) ? smileHttpMessageConverter.getObjectMapper() : objectMapper;
+        StreamingResponseBody body = outputStream -> {
+            try (elements; JsonGenerator generator = mapper.createGenerator(outputStream)) {
+                generator.writeStartArray();
+                while (iterator.hasNext()) {
+                    generator.writeObject(iterator.next());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(mediaType).body(causalReadContext.bind(body));
+    }
+
+    /**
+     * Chooses the format of a streamed array. The types of the Accept header are sorted by quality, then by specificity,
+     * and the first one including JSON, CBOR or Smile gives the format, in this order. A format is not acceptable when
+     * the most specific type including it has a quality of 0. JSON when the header is missing.
+     *
+     * @param accept The Accept header of the request, null if absent.
+     * @return The media type of the response, empty if none of the formats is acceptable or the header is not valid.
+     */
+    static Optional<MediaType> streamedMediaType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return Optional.of(MediaType.APPLICATION_JSON);
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(acceptedTypes);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException exception) {
+            return Optional.empty();
+        }
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType candidate : STREAMED_MEDIA_TYPES) {
+                if (acceptedType.includes(candidate) && isAcceptable(candidate, acceptedTypes)) {
+                    return Optional.of(candidate);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return False if the most specific of the accepted types including the candidate has a quality of 0.
+     */
+    private static boolean isAcceptable(MediaType candidate, List<MediaType> acceptedTypes) {
+        return acceptedTypes.stream()
+                .filter(acceptedType -> acceptedType.includes(candidate))
+                .min(Comparator.comparingInt(NoteControllerApi::wildcards))
+                .map(acceptedType -> acceptedType.getQualityValue() > 0)
+                .orElse(false);
+    }
+
+    private static int wildcards(MediaType mediaType) {
+        return mediaType.isWildcardType() ? 2 : mediaType.isWildcardSubtype() ? 1 : 0;
+    }
+
+    /**
+     * Writes each element of a stream as one line of JSON, the elements read by the async thread writing the body
+     * start after the operation time of the request.
+     *
+     * @param elements The elements to write, the stream is closed once written.
+     * @return The response body.
+     */
+    private StreamingResponseBody writeNdjson(Stream<?> elements) {
+        return causalReadContext.bind(outputStream -> {
+            try (elements; JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                Iterator<?> iterator = elements.iterator();
+                while (iterator.hasNext()) {
+                    writeLine(generator, iterator.next());
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,467 @@
+package com.openclassroomsProject.Mediscreennotes.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.exception.NoteVersionConflictException;
+import com.openclassroomsProject.Mediscreennotes.exception.WatermarkExpiredException;
+import com.openclassroomsProject.Mediscreennotes.journal.NoteWriteBehindQueue;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerBatchRequest;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerIndexCheckpoint;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerReport;
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteSearchService;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import com.openclassroomsProject.Mediscreennotes.service.IReactiveNoteService;
+import com.openclassroomsProject.Mediscreennotes.service.ITriggerService;
+import com.openclassroomsProject.Mediscreennotes.warmup.HotPatientSample;
+import com.openclassroomsProject.Mediscreennotes.warmup.NoteWarmUp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Note API of the reactive (WebFlux) stack, enabled with spring.main.web-application-type=reactive.
+ * It exposes the same endpoints as {@link NoteControllerApi}. Note reads and writes go through the reactive
+ * Mongo driver, the trigger and bulk endpoints reuse the blocking services on the bounded elastic scheduler.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("/api/note")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveNoteControllerApi {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveNoteControllerApi.class);
+
+    @Autowired
+    private IReactiveNoteService reactiveNoteService;
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private ITriggerService triggerService;
+
+    @Autowired
+    private INoteSearchService noteSearchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private NoteWriteBehindQueue noteWriteBehindQueue;
+
+    @Autowired
+    private HotPatientSample hotPatientSample;
+
+    /**
+     * Get the list of all notes.
+     * The notes are written to the response as the Mongo cursor emits them, with backpressure.
+     *
+     * @return Contains a list of notes if they exist, otherwise returns a 204 no content response.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<Note>>> getAllNotes() {
+        LOGGER.info("[CONTROLLER API]-> call method : getAllNotes");
+        return okOrNoContent(reactiveNoteService.getAllNotes());
+    }
+
+    /**
+     * Get the summaries of all notes (view=summary), see {@link NoteControllerApi#getAllNoteSummaries()}.
+     *
+     * @return Contains a list of note summaries if notes exist, otherwise returns a 204 no content response.
+     */
+    @GetMapping(params = "view=summary", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<NoteSummary>>> getAllNoteSummaries() {
+        LOGGER.info("[CONTROLLER API]-> call method : getAllNoteSummaries");
+        return okOrNoContent(reactiveNoteService.getAllNoteSummaries());
+    }
+
+    /**
+     * Get a page of notes ordered by id (keyset pagination).
+     * The cursor of the next page is returned in the X-Next-Cursor header when more notes may exist.
+     *
+     * @param limit Maximum number of notes of the page, between 1 and 1000.
+     * @param after Opaque cursor returned by the previous page, absent for the first page.
+     * @return Contains the notes of the page, a 204 no content response if the page is empty,
+     * or a 400 bad request if the parameters are invalid.
+     */
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<List<Note>>> getNotesPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNotesPage [PARAM]-> limit = {} [PARAM]-> after = {}", limit, after);
+        if (limit < 1 || limit > NoteControllerApi.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String afterId;
+        try {
+            afterId = after == null ? null : NoteControllerApi.decodeCursor(after);
+        } catch (IllegalArgumentException exception) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return reactiveNoteService.getNotesPage(afterId, limit).collectList().map(notes -> {
+            if (notes.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (notes.size() == limit) {
+                response.header(NoteControllerApi.NEXT_CURSOR_HEADER, NoteControllerApi.encodeCursor(notes.get(notes.size() - 1).getId()));
+            }
+            return response.body(notes);
+        });
+    }
+
+    /**
+     * GET Request, get all notes for a patient.
+     * Answers 304 not modified without loading the notes when the client is current, see {@link NoteControllerApi}.
+     *
+     * @param patientId Patient identifier.
+     * @param exchange  The current exchange, to evaluate its conditional headers.
+     * @return Contains a list of all patient notes if they exist, a 304 not modified response if the client is current,
+     * otherwise returns a 204 no content response.
+     */
+    @GetMapping("/patient/{patientId}")
+    public Mono<ResponseEntity<List<Note>>> getNotesByPatientId(@PathVariable Integer patientId, ServerWebExchange exchange) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNotesByPatientId [PARAM]-> patientId = {}", patientId);
+        hotPatientSample.record(patientId, exchange.getRequest().getHeaders().getFirst(NoteWarmUp.WARM_UP_HEADER));
+        return Mono.fromCallable(() -> noteService.getPatientNoteVersion(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(version -> {
+                    if (exchange.checkNotModified(PatientNoteVersionTracker.eTag(version), version.getLastModified().toInstant())) {
+                        return Mono.empty();
+                    }
+                    return reactiveNoteService.getAllNotesByPatientId(patientId).collectList()
+                            .map(notesList -> notesList.isEmpty() ? ResponseEntity.noContent().<List<Note>>build() : ResponseEntity.ok(notesList));
+                });
+    }
+
+    /**
+     * GET Request, get the summaries of the notes of a patient (view=summary), see {@link NoteControllerApi}.
+     *
+     * @param patientId Patient identifier.
+     * @param exchange  The current exchange, to evaluate its conditional headers.
+     * @return Contains the summaries of the patient notes if they exist, a 304 not modified response if the client is current,
+     * otherwise returns a 204 no content response.
+     */
+    @GetMapping(value = "/patient/{patientId}", params = "view=summary")
+    public Mono<ResponseEntity<List<NoteSummary>>> getNoteSummariesByPatientId(@PathVariable Integer patientId, ServerWebExchange exchange) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteSummariesByPatientId [PARAM]-> patientId = {}", patientId);
+        return Mono.fromCallable(() -> noteService.getPatientNoteVersion(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(version -> {
+                    if (exchange.checkNotModified(PatientNoteVersionTracker.eTag(version), version.getLastModified().toInstant())) {
+                        return Mono.empty();
+                    }
+                    return reactiveNoteService.getNoteSummariesByPatientId(patientId).collectList()
+                            .map(summaries -> summaries.isEmpty() ? ResponseEntity.noContent().<List<NoteSummary>>build() : ResponseEntity.ok(summaries));
+                });
+    }
+
+    /**
+     * GET Request, get the ids of all notes of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @return Contains the ids of the patient notes if they exist, otherwise returns a 204 no content response.
+     */
+    @GetMapping("/patient/{patientId}/ids")
+    public Mono<ResponseEntity<List<String>>> getNoteIdsByPatientId(@PathVariable Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteIdsByPatientId [PARAM]-> patientId = {}", patientId);
+        return Mono.fromCallable(() -> noteService.getNoteIdsByPatientId(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(noteIds -> noteIds.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(noteIds));
+    }
+
+    /**
+     * GET Request, full-text search of the note comments, see {@link NoteControllerApi#searchNotes(String, Integer, int, int)}.
+     *
+     * @param q         The query.
+     * @param patientId Patient identifier to search only the notes of a patient, absent to search all notes.
+     * @param page      Index of the page, from 0.
+     * @param size      Number of hits of a page, at most 100.
+     * @return Contains the page of hits, or a 400 bad request if the query is blank or the page out of bounds.
+     */
+    @GetMapping("/search")
+    public Mono<ResponseEntity<NoteSearchResult>> searchNotes(@RequestParam String q, @RequestParam(required = false) Integer patientId,
+                                                              @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size) {
+        LOGGER.info("[CONTROLLER API]-> call method : searchNotes [PARAM]-> q = {} [PARAM]-> patientId = {}", q, patientId);
+        return Mono.fromCallable(() -> noteSearchService.searchNotes(q, patientId, page, size))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, exception -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * GET Request, get the notes created, updated or deleted since the previous call (delta sync),
+     * see {@link NoteControllerApi#getChangesSince(String, int)}.
+     *
+     * @param since Opaque watermark returned by the previous call, absent for the first call.
+     * @param limit Maximum number of notes, and of deleted notes, between 1 and 1000.
+     * @return Contains the changes, a 400 bad request if the parameters are invalid, or a 410 gone if the watermark
+     * is older than the retention of the deleted notes.
+     */
+    @GetMapping("/changes")
+    public Mono<ResponseEntity<NoteChanges>> getChangesSince(@RequestParam(required = false) String since,
+                                                             @RequestParam(defaultValue = "" + NoteControllerApi.MAX_PAGE_SIZE) int limit) {
+        LOGGER.info("[CONTROLLER API]-> call method : getChangesSince [PARAM]-> since = {} [PARAM]-> limit = {}", since, limit);
+        if (limit < 1 || limit > NoteControllerApi.MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.fromCallable(() -> noteService.getChangesSince(since, limit))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, exception -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorResume(WatermarkExpiredException.class, exception -> Mono.just(ResponseEntity.status(HttpStatus.GONE).build()));
+    }
+
+    /**
+     * GET Request, count the trigger terms found in the notes of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @return Contains the number of occurrences of each trigger term, zero if the patient has no notes.
+     */
+    @GetMapping("/patient/{patientId}/triggers")
+    public Mono<ResponseEntity<TriggerReport>> getTriggersByPatientId(@PathVariable Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggersByPatientId [PARAM]-> patientId = {}", patientId);
+        return Mono.fromCallable(() -> triggerService.countTriggersByPatientId(patientId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * POST Request, count the trigger terms of several patients in one call.
+     * The reports are streamed as newline delimited JSON, one line per patient.
+     *
+     * @param request Either a list of patient identifiers or an inclusive range of patient identifiers.
+     * @return ResponseEntity streaming the reports, or a 400 bad request if no patients are given.
+     */
+    @PostMapping(value = "/triggers/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<TriggerReport>> getTriggersByPatientIds(@RequestBody TriggerBatchRequest request) {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggersByPatientIds [PARAM]-> request = {}", request);
+        Flux<TriggerReport> reports;
+        if (request.getPatientIds() != null) {
+            reports = fromBlockingStream(() -> triggerService.countTriggersByPatientIds(request.getPatientIds()));
+        } else if (request.getFromPatientId() != null && request.getToPatientId() != null) {
+            reports = fromBlockingStream(() -> triggerService.countTriggersByPatientRange(request.getFromPatientId(), request.getToPatientId()));
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(reports);
+    }
+
+    /**
+     * POST Request, start or resume the rebuild of the trigger index of all patients.
+     *
+     * @return ResponseEntity containing the progress of the rebuild with status code 202, Accepted.
+     */
+    @PostMapping("/triggers/index/rebuild")
+    public Mono<ResponseEntity<TriggerIndexCheckpoint>> rebuildTriggerIndex() {
+        LOGGER.info("[CONTROLLER API]-> call method : rebuildTriggerIndex");
+        return Mono.fromCallable(() -> triggerService.rebuildTriggerIndex())
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(checkpoint -> ResponseEntity.status(HttpStatus.ACCEPTED).body(checkpoint));
+    }
+
+    /**
+     * GET Request, get the progress of the last rebuild of the trigger index.
+     *
+     * @return Contains the progress of the rebuild.
+     */
+    @GetMapping("/triggers/index/rebuild")
+    public Mono<ResponseEntity<TriggerIndexCheckpoint>> getTriggerIndexRebuildStatus() {
+        LOGGER.info("[CONTROLLER API]-> call method : getTriggerIndexRebuildStatus");
+        return Mono.fromCallable(() -> triggerService.getTriggerIndexRebuildStatus())
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * GET Request, get note by id.
+     *
+     * @param noteId    Identifier of the wanted note.
+     * @param patientId Optional patient of the note, reads only the shard of the note when the notes are sharded.
+     * @return Contains the note if it exists, otherwise returns a 404 not found error.
+     */
+    @GetMapping("/{noteId}")
+    public Mono<ResponseEntity<Note>> getNoteById(@PathVariable String noteId, @RequestParam(required = false) Integer patientId) {
+        LOGGER.info("[CONTROLLER API]-> call method : getNoteById [PARAM]-> noteId = {} [PARAM]-> patientId = {}", noteId, patientId);
+        return reactiveNoteService.getNoteById(noteId, patientId)
+                .map(note -> ResponseEntity.ok().eTag(NoteControllerApi.eTag(note)).body(note))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Creates a new note.
+     * With the write-behind mode, the note is journaled and inserted shortly after the response.
+     *
+     * @param note the note to create.
+     * @return ResponseEntity containing the note created with status code 201, Created,
+     * or the note with its id and status code 202, Accepted, if it is journaled.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Note>> createNote(@RequestBody Note note) {
+        LOGGER.info("[CONTROLLER API]-> call method : createNote [PARAM]-> note = {}", note);
+        Mono<ResponseEntity<Note>> insert = Mono.defer(() -> reactiveNoteService.createNote(note))
+                .map(createdNote -> ResponseEntity.status(HttpStatus.CREATED).body(createdNote));
+        if (!noteWriteBehindQueue.isRunning()) {
+            return insert;
+        }
+        // The journal forces each note to the disk, a blocking call
+        return Mono.fromCallable(() -> noteWriteBehindQueue.accept(note))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(accepted -> accepted ? Mono.just(ResponseEntity.status(HttpStatus.ACCEPTED).body(note)) : insert);
+    }
+
+    /**
+     * Creates notes from a newline delimited JSON stream, one note per line.
+     * The lines are grouped by batches of unordered bulk writes, and the result of each line is streamed back
+     * as newline delimited JSON. A batch is only requested from the client once the previous one has been written,
+     * so the upload is slowed down by backpressure instead of being buffered.
+     * A line longer than mediscreen.notes.bulk.max-line-length is skipped without being held in memory, and reported failed.
+     *
+     * @param body The chunks of the request body, one JSON note per line.
+     * @return One result per non blank line.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<NoteIngestResult> createNotes(@RequestBody Flux<DataBuffer> body) {
+        LOGGER.info("[CONTROLLER API]-> call method : createNotes");
+        int batchSize = Math.max(1, noteProperties.getBulk().getBatchSize());
+        int maxLineLength = noteProperties.getBulk().getMaxLineLength();
+        ObjectReader noteReader = objectMapper.readerFor(Note.class);
+        BoundedLineDecoder decoder = new BoundedLineDecoder(maxLineLength);
+        return body.doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .concatMapIterable(decoder::decode)
+                .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.end())))
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                .buffer(batchSize)
+                .concatMap(batch -> Mono.fromCallable(() -> ingestBatch(noteReader, maxLineLength, batch))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapIterable(results -> results));
+    }
+
+    /**
+     * Updates the comment of an existing note, in a single write.
+     * With an If-Match header the update is only applied if the note is still at the version of the given ETag.
+     *
+     * @param noteId  The ID of the note to update.
+     * @param note    The new version of the note, only its comment is used, and its patient to find the note on its shard when the notes are sharded.
+     * @param ifMatch Optional ETag of the version the note must have.
+     * @return ResponseEntity containing the updated note and its new ETag if it exists, a 404, not found response if it does not,
+     * or a 412, precondition failed response if it has been modified since.
+     */
+    @PutMapping("/{noteId}")
+    public Mono<ResponseEntity<Note>> updateNote(@PathVariable String noteId, @RequestBody Note note,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        LOGGER.info("[CONTROLLER API]-> call method : updateNote [PARAM]-> noteId = {} [PARAM]-> note= {} [PARAM]-> ifMatch = {}", noteId, note, ifMatch);
+        Note update = new Note(noteId, note.getPatientId(), note.getComment());
+        try {
+            update.setVersion(NoteControllerApi.parseIfMatch(ifMatch));
+        } catch (IllegalArgumentException exception) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return reactiveNoteService.updateNote(update)
+                .map(updatedNote -> ResponseEntity.ok().eTag(NoteControllerApi.eTag(updatedNote)).body(updatedNote))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorReturn(NoteVersionConflictException.class, ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+    }
+
+    /**
+     * Deletes an existing note, in a single write.
+     * With an If-Match header the note is only deleted if it is still at the version of the given ETag.
+     *
+     * @param noteId    The identifier of the note to delete.
+     * @param patientId Optional patient of the note, writes only to the shard of the note when the notes are sharded.
+     * @param ifMatch   Optional ETag of the version the note must have.
+     * @return ResponseEntity with no content if the note is deleted successfully, a 404, not found response if the note does not exist,
+     * or a 412, precondition failed response if it has been modified since.
+     */
+    @DeleteMapping("/{noteId}")
+    public Mono<ResponseEntity<Void>> deleteNote(@PathVariable String noteId, @RequestParam(required = false) Integer patientId,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        LOGGER.info("[CONTROLLER API]-> call method : deleteNote [PARAM]-> noteId = {} [PARAM]-> patientId = {} [PARAM]-> ifMatch = {}",
+                noteId, patientId, ifMatch);
+        Long expectedVersion;
+        try {
+            expectedVersion = NoteControllerApi.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException exception) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return reactiveNoteService.deleteNoteById(noteId, patientId, expectedVersion)
+                .map(deleted -> deleted ? ResponseEntity.noContent().<Void>build() : ResponseEntity.notFound().<Void>build())
+                .onErrorReturn(NoteVersionConflictException.class, ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+    }
+
+    private List<NoteIngestResult> ingestBatch(ObjectReader noteReader, int maxLineLength, List<Tuple2<Long, BoundedLineDecoder.Line>> batch) {
+        List<NoteIngestResult> results = new ArrayList<>(batch.size());
+        List<Note> notes = new ArrayList<>(batch.size());
+        List<Long> noteLines = new ArrayList<>(batch.size());
+        for (Tuple2<Long, BoundedLineDecoder.Line> line : batch) {
+            long lineNumber = line.getT1() + 1;
+            if (line.getT2().tooLong) {
+                NoteIngestResult result = new NoteIngestResult(null, IngestStatus.FAILED, "Line longer than " + maxLineLength + " characters");
+                result.setLine(lineNumber);
+                results.add(result);
+                continue;
+            }
+            try {
+                notes.add(noteReader.readValue(line.getT2().text));
+                noteLines.add(lineNumber);
+            } catch (JsonProcessingException exception) {
+                NoteIngestResult result = new NoteIngestResult(null, IngestStatus.FAILED, exception.getOriginalMessage());
+                result.setLine(lineNumber);
+                results.add(result);
+            }
+        }
+        if (!notes.isEmpty()) {
+            List<NoteIngestResult> created = noteService.createNotes(notes);
+            for (int index = 0; index < created.size(); index++) {
+                created.get(index).setLine(noteLines.get(index));
+            }
+            results.addAll(created);
+        }
+        return results;
+    }
+
+    /**
+     * Answers 200 with the items, or 204 if there are none, with a single subscription to the items:
+     * the first signal chooses the status, then the body writer goes on reading the same cursor.
+     * The source is not cancelled when the response entity is emitted, it is consumed by the body writer.
+     */
+    static <T> Mono<ResponseEntity<Flux<T>>> okOrNoContent(Flux<T> items) {
+        return items.<ResponseEntity<Flux<T>>>switchOnFirst((first, all) -> first.hasValue()
+                        ? Mono.just(ResponseEntity.ok(all))
+                        : all.then(Mono.just(ResponseEntity.noContent().<Flux<T>>build())), false)
+                .singleOrEmpty();
+    }
+
+    private static <T> Flux<T> fromBlockingStream(Supplier<Stream<T>> streamSupplier) {
+        return Flux.fromStream(streamSupplier).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,41 @@
+package com.openclassroomsProject.Mediscreennotes.event;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+
+/**
+ * Published after a note has been created, updated or deleted.
+ * Listeners are called synchronously, in the thread of the write.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteChangedEvent {
+
+    private final Note previous;
+    private final Note current;
+
+    /**
+     * @param previous The note before the write, null for a creation.
+     * @param current  The note after the write, null for a deletion.
+     */
+    public NoteChangedEvent(Note previous, Note current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public Note getPrevious() {
+        return previous;
+    }
+
+    public Note getCurrent() {
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteChangedEvent{" +
+                "previous=" + previous +
+                ", current=" + current +
+                '}';
+    }
+}
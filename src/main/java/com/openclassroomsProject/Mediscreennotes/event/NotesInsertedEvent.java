@@ -0,0 +1,34 @@
+package com.openclassroomsProject.Mediscreennotes.event;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import java.util.List;
+
+/**
+ * Published after a batch of notes has been inserted with one bulk write.
+ * Listeners are called synchronously, in the thread of the write.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NotesInsertedEvent {
+
+    private final List<Note> notes;
+
+    /**
+     * @param notes The notes actually inserted, failed inserts excluded.
+     */
+    public NotesInsertedEvent(List<Note> notes) {
+        this.notes = notes;
+    }
+
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    @Override
+    public String toString() {
+        return "NotesInsertedEvent{" +
+                "notes=" + notes.size() +
+                '}';
+    }
+}
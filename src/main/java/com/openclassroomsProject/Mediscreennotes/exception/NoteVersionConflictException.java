@@ -0,0 +1,14 @@
+package com.openclassroomsProject.Mediscreennotes.exception;
+
+/**
+ * Thrown when a conditional write targets a note whose version is no longer the expected one.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteVersionConflictException extends RuntimeException {
+
+    public NoteVersionConflictException(String noteId, Long expectedVersion) {
+        super("Note " + noteId + " is no longer at version " + expectedVersion);
+    }
+}
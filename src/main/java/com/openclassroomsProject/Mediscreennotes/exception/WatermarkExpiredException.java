@@ -0,0 +1,15 @@
+package com.openclassroomsProject.Mediscreennotes.exception;
+
+/**
+ * Thrown when a changes watermark is older than the tombstone retention: deletes may have been forgotten since,
+ * the consumer must synchronize all the notes again.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class WatermarkExpiredException extends RuntimeException {
+
+    public WatermarkExpiredException(String message) {
+        super(message);
+    }
+}
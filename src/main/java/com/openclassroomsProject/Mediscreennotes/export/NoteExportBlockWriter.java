@@ -0,0 +1,178 @@
+package com.openclassroomsProject.Mediscreennotes.export;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.types.ObjectId;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes notes to a channel as blocks of the {@link NoteExportFormat}.
+ * The notes are encoded into a buffer of the block size, written with its patient dictionary once full:
+ * the memory used does not depend on the number of notes. A note larger than the block size is written alone in its block.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+final class NoteExportBlockWriter implements Closeable {
+
+    private static final int MAX_VARLONG_SIZE = 10;
+    private static final int MAX_BLOCK_HEAD_SIZE = NoteExportFormat.BLOCK_HEADER_SIZE + MAX_VARLONG_SIZE * 2;
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final Map<Integer, Integer> patientIndexes = new HashMap<>();
+    private int[] patients = new int[64];
+    private byte[] notes;
+    private int notesLength;
+    private int blockNotes;
+    private long previousCreatedAt;
+    private long writtenNotes;
+
+    NoteExportBlockWriter(FileChannel channel, int blockSize) {
+        this.channel = channel;
+        this.blockSize = Math.max(blockSize, 1024);
+        this.notes = new byte[this.blockSize];
+    }
+
+    /**
+     * Adds a note to the current block, the block is written first if the note does not fit in it.
+     *
+     * @param note The note to write.
+     * @throws IOException if a block can not be written.
+     */
+    void write(Note note) throws IOException {
+        boolean objectId = note.getId() != null && ObjectId.isValid(note.getId());
+        byte[] id = objectId ? new ObjectId(note.getId()).toByteArray()
+                : note.getId() == null ? new byte[0] : note.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] comment = note.getComment() == null ? null : note.getComment().getBytes(StandardCharsets.UTF_8);
+        int maxSize = 1 + MAX_VARLONG_SIZE * 6 + id.length + (comment == null ? 0 : comment.length);
+        if (notesLength + maxSize > blockSize && blockNotes > 0) {
+            flush();
+        }
+        if (notesLength + maxSize > notes.length) {
+            notes = Arrays.copyOf(notes, notesLength + maxSize);
+        }
+        int flags = (objectId ? NoteExportFormat.OBJECT_ID : 0)
+                | (note.getVersion() != null ? NoteExportFormat.VERSION_PRESENT : 0)
+                | (note.getCreatedAt() != null ? NoteExportFormat.CREATED_AT_PRESENT : 0)
+                | (note.getUpdatedAt() != null ? NoteExportFormat.UPDATED_AT_PRESENT : 0)
+                | (comment != null ? NoteExportFormat.COMMENT_PRESENT : 0);
+        notes[notesLength++] = (byte) flags;
+        putVarLong(note.getPatientId() == null ? 0 : patientIndex(note.getPatientId()) + 1);
+        if (!objectId) {
+            putVarLong(id.length);
+        }
+        putBytes(id);
+        if (note.getVersion() != null) {
+            putVarLong(note.getVersion());
+        }
+        long createdAt = 0;
+        if (note.getCreatedAt() != null) {
+            createdAt = note.getCreatedAt().getTime();
+            putVarLong(NoteExportFormat.zigzag(createdAt - previousCreatedAt));
+            previousCreatedAt = createdAt;
+        }
+        if (note.getUpdatedAt() != null) {
+            putVarLong(NoteExportFormat.zigzag(note.getUpdatedAt().getTime() - createdAt));
+        }
+        if (comment != null) {
+            putVarLong(comment.length);
+            putBytes(comment);
+        }
+        blockNotes++;
+    }
+
+    /**
+     * @return The number of notes written, including those of the current block.
+     */
+    long getWrittenNotes() {
+        return writtenNotes + blockNotes;
+    }
+
+    /**
+     * Writes the current block, with its length, its checksum and its patient dictionary.
+     *
+     * @throws IOException if the block can not be written.
+     */
+    void flush() throws IOException {
+        if (blockNotes == 0) {
+            return;
+        }
+        int dictionarySize = patientIndexes.size();
+        ByteBuffer head = ByteBuffer.allocate(MAX_BLOCK_HEAD_SIZE + MAX_VARLONG_SIZE * dictionarySize);
+        head.position(NoteExportFormat.BLOCK_HEADER_SIZE);
+        putVarLong(head, blockNotes);
+        putVarLong(head, dictionarySize);
+        for (int index = 0; index < dictionarySize; index++) {
+            putVarLong(head, NoteExportFormat.zigzag(patients[index]));
+        }
+        int headLength = head.position() - NoteExportFormat.BLOCK_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(head.array(), NoteExportFormat.BLOCK_HEADER_SIZE, headLength);
+        crc.update(notes, 0, notesLength);
+        head.putInt(0, headLength + notesLength).putInt(Integer.BYTES, (int) crc.getValue()).flip();
+        ByteBuffer[] block = {head, ByteBuffer.wrap(notes, 0, notesLength)};
+        while (block[1].hasRemaining()) {
+            channel.write(block);
+        }
+        writtenNotes += blockNotes;
+        blockNotes = 0;
+        notesLength = 0;
+        previousCreatedAt = 0;
+        patientIndexes.clear();
+        if (notes.length > blockSize) {
+            notes = new byte[blockSize];
+        }
+    }
+
+    /**
+     * Writes the last block and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+
+    private int patientIndex(int patientId) {
+        Integer index = patientIndexes.get(patientId);
+        if (index == null) {
+            index = patientIndexes.size();
+            if (index == patients.length) {
+                patients = Arrays.copyOf(patients, index * 2);
+            }
+            patients[index] = patientId;
+            patientIndexes.put(patientId, index);
+        }
+        return index;
+    }
+
+    private void putBytes(byte[] bytes) {
+        System.arraycopy(bytes, 0, notes, notesLength, bytes.length);
+        notesLength += bytes.length;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            notes[notesLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        notes[notesLength++] = (byte) value;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
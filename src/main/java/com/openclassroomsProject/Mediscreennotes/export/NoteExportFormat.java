@@ -0,0 +1,187 @@
+package com.openclassroomsProject.Mediscreennotes.export;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.bson.types.ObjectId;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format of the note exports, big-endian:
+ * <pre>
+ * file    : magic "MNEX" (4 bytes), version (2 bytes), blocks, end marker (int 0), number of notes (8 bytes)
+ * block   : length of the payload (4 bytes), CRC32C of the payload (4 bytes), payload
+ * payload : number of notes, number of patients, patient ids (zigzag), notes
+ * note    : flags (1 byte), patient index + 1 (0 if none), id, version, creation date, update date, comment
+ * </pre>
+ * The numbers of the payload are unsigned varints. The patient ids of a block are stored once, in its dictionary,
+ * and the notes refer to them by index. An id is stored as its 12 bytes when it is an ObjectId, as UTF-8 otherwise.
+ * The creation date is the difference, in milliseconds, with the creation date of the previous note of the block,
+ * the update date the difference with the creation date of the note (zigzag varints).
+ * The flags tell which fields are present, a field absent from the note is absent from the file.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public final class NoteExportFormat {
+
+    public static final String FILE_EXTENSION = ".mnex";
+    static final int MAGIC = 0x4D4E4558;
+    static final short VERSION = 1;
+    static final int FILE_HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    static final int BLOCK_HEADER_SIZE = Integer.BYTES * 2;
+    static final int TRAILER_SIZE = Integer.BYTES + Long.BYTES;
+
+    static final int OBJECT_ID = 1;
+    static final int VERSION_PRESENT = 1 << 1;
+    static final int CREATED_AT_PRESENT = 1 << 2;
+    static final int UPDATED_AT_PRESENT = 1 << 3;
+    static final int COMMENT_PRESENT = 1 << 4;
+
+    private NoteExportFormat() {
+    }
+
+    static void writeHeader(WritableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+        writeFully(channel, header);
+    }
+
+    static void writeTrailer(WritableByteChannel channel, long notes) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putInt(0).putLong(notes).flip();
+        writeFully(channel, trailer);
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads an export, block by block.
+     *
+     * @param channel  The export, from its first byte.
+     * @param consumer Receives the notes, in the order of the file.
+     * @return The number of notes read.
+     * @throws IOException if the export can not be read, is truncated or corrupted.
+     */
+    public static long read(ReadableByteChannel channel, Consumer<Note> consumer) throws IOException {
+        ByteBuffer header = readFully(channel, ByteBuffer.allocate(FILE_HEADER_SIZE));
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IOException("Not a note export of version " + VERSION);
+        }
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        ByteBuffer payload = ByteBuffer.allocate(0);
+        long notes = 0;
+        while (true) {
+            blockHeader.clear().limit(Integer.BYTES);
+            int length = readFully(channel, blockHeader).getInt();
+            if (length == 0) {
+                break;
+            }
+            if (length < 0) {
+                throw new IOException("Invalid block length : " + length);
+            }
+            blockHeader.clear().limit(Integer.BYTES);
+            int checksum = readFully(channel, blockHeader).getInt();
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            readFully(channel, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Corrupted block after note " + notes);
+            }
+            notes += readBlock(payload, consumer);
+        }
+        long expected = readFully(channel, ByteBuffer.allocate(Long.BYTES)).getLong();
+        if (expected != notes) {
+            throw new IOException("The export holds " + notes + " notes instead of " + expected);
+        }
+        return notes;
+    }
+
+    private static int readBlock(ByteBuffer payload, Consumer<Note> consumer) {
+        int count = (int) readVarLong(payload);
+        int[] patients = new int[(int) readVarLong(payload)];
+        for (int index = 0; index < patients.length; index++) {
+            patients[index] = (int) unzigzag(readVarLong(payload));
+        }
+        long previousCreatedAt = 0;
+        for (int index = 0; index < count; index++) {
+            int flags = payload.get();
+            int patientReference = (int) readVarLong(payload);
+            Note note = new Note();
+            note.setPatientId(patientReference == 0 ? null : patients[patientReference - 1]);
+            if ((flags & OBJECT_ID) != 0) {
+                byte[] id = new byte[12];
+                payload.get(id);
+                note.setId(new ObjectId(id).toHexString());
+            } else {
+                note.setId(readString(payload));
+            }
+            if ((flags & VERSION_PRESENT) != 0) {
+                note.setVersion(readVarLong(payload));
+            }
+            long createdAt = previousCreatedAt;
+            if ((flags & CREATED_AT_PRESENT) != 0) {
+                createdAt = previousCreatedAt + unzigzag(readVarLong(payload));
+                previousCreatedAt = createdAt;
+                note.setCreatedAt(new Date(createdAt));
+            }
+            if ((flags & UPDATED_AT_PRESENT) != 0) {
+                long base = (flags & CREATED_AT_PRESENT) != 0 ? createdAt : 0;
+                note.setUpdatedAt(new Date(base + unzigzag(readVarLong(payload))));
+            }
+            if ((flags & COMMENT_PRESENT) != 0) {
+                note.setComment(readString(payload));
+            }
+            consumer.accept(note);
+        }
+        return count;
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated note export");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = (int) readVarLong(buffer);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte current = buffer.get();
+            value |= (long) (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Invalid varint");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,316 @@
+package com.openclassroomsProject.Mediscreennotes.export;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.openclassroomsProject.Mediscreennotes.config.CausalReadContext;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import org.bson.BsonTimestamp;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Exports all notes to a file of the {@link NoteExportFormat}, for the analytics jobs.
+ * The note collection is split into _id ranges, read in parallel with one cursor per range (on the secondaries,
+ * see the exportNotes read preference). Each reader writes its range to a part file, block by block, so the memory
+ * used does not depend on the number of notes. The parts are then copied in _id order into the export file with
+ * {@link FileChannel#transferTo}, without going through the heap, and the file is renamed once complete.
+ * The notes written during the export may or may not be in it, each note is exported as read. The notes written before
+ * the operation time sent with the request starting the export are in it: each range is read in a causally consistent session.
+ * The export before the previous one is deleted once the new one is complete: a download started before keeps its file.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteExportJob implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteExportJob.class);
+    static final String FILE_PREFIX = "notes-";
+    private static final int CURSOR_BATCH_SIZE = 1000;
+    private static final int KEPT_EXPORTS = 2;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private CausalReadContext causalReadContext;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "note-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong exportedNotes = new AtomicLong();
+    private volatile NoteExportStatus lastRun;
+
+    /**
+     * Starts an export in background. Does nothing if an export is already running.
+     * The export reads after the operation time of the current request, taken before leaving its thread.
+     *
+     * @return The state of the export.
+     */
+    public NoteExportStatus start() {
+        if (running.compareAndSet(false, true)) {
+            NoteExportStatus status = new NoteExportStatus();
+            status.setStartedAt(new Date());
+            exportedNotes.set(0);
+            lastRun = status;
+            BsonTimestamp readAfter = causalReadContext.getReadAfter();
+            runner.execute(() -> {
+                try {
+                    run(status, readAfter);
+                } catch (IOException | RuntimeException exception) {
+                    status.setFailure(exception.getMessage());
+                    LOGGER.error("[EXPORT]-> note export failed [PARAM]-> status = {}", status, exception);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+        return getStatus();
+    }
+
+    /**
+     * @return The state of the export in progress or of the last one since the startup, otherwise the state
+     * of the last export file.
+     */
+    public NoteExportStatus getStatus() {
+        NoteExportStatus run = lastRun;
+        NoteExportStatus status = new NoteExportStatus();
+        status.setRunning(running.get());
+        if (run != null) {
+            status.setStartedAt(run.getStartedAt());
+            status.setCompletedAt(run.getCompletedAt());
+            status.setFailure(run.getFailure());
+            status.setExportedNotes(exportedNotes.get());
+        }
+        try {
+            Optional<Path> file = getExportFile();
+            if (file.isPresent()) {
+                status.setFileName(file.get().getFileName().toString());
+                status.setSizeBytes(Files.size(file.get()));
+                if (run == null) {
+                    status.setExportedNotes(readNoteCount(file.get()));
+                }
+            }
+        } catch (IOException exception) {
+            LOGGER.warn("[EXPORT]-> unable to read the export file", exception);
+        }
+        return status;
+    }
+
+    /**
+     * @return The last complete export file, if any.
+     * @throws IOException if the export directory can not be read.
+     */
+    public Optional<Path> getExportFile() throws IOException {
+        Path directory = Path.of(noteProperties.getExport().getPath());
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // The file names hold the start time of the export, zero padded
+            return files.filter(NoteExportJob::isExportFile).max(Path::compareTo);
+        }
+    }
+
+    void run(NoteExportStatus status, BsonTimestamp readAfter) throws IOException {
+        NoteProperties.Export export = noteProperties.getExport();
+        int parallelism = Math.max(1, export.getParallelism());
+        int blockSize = (int) export.getBlockSize().toBytes();
+        Path directory = Path.of(export.getPath());
+        Files.createDirectories(directory);
+        String name = FILE_PREFIX + String.format("%019d", status.getStartedAt().getTime());
+        List<Criteria> ranges = idRanges(parallelism * Math.max(1, export.getRangesPerWorker()));
+        LOGGER.info("[EXPORT]-> note export started [PARAM]-> file = {} [PARAM]-> ranges = {}", name, ranges.size());
+        List<Path> parts = new ArrayList<>(ranges.size());
+        Path temporary = directory.resolve(name + ".tmp");
+        ExecutorService readers = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Long>> results = new ArrayList<>(ranges.size());
+            for (Criteria range : ranges) {
+                Path part = directory.resolve(name + ".part-" + parts.size());
+                parts.add(part);
+                results.add(readers.submit(() -> exportRange(range, part, blockSize, readAfter)));
+            }
+            long notes = 0;
+            for (Future<Long> result : results) {
+                notes += result.get();
+            }
+            try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                NoteExportFormat.writeHeader(target);
+                for (Path part : parts) {
+                    try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                        long size = source.size();
+                        for (long position = 0; position < size; ) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    }
+                    Files.delete(part);
+                }
+                NoteExportFormat.writeTrailer(target, notes);
+                target.force(true);
+            }
+            Path file = directory.resolve(name + NoteExportFormat.FILE_EXTENSION);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            deleteOldExports(directory);
+            status.setCompletedAt(new Date());
+            LOGGER.info("[EXPORT]-> note export completed [PARAM]-> file = {} [PARAM]-> notes = {} [PARAM]-> size = {}",
+                    file, notes, Files.size(file));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Note export interrupted", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Unable to export a range of notes", exception.getCause());
+        } finally {
+            readers.shutdownNow();
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the notes of an _id range to a part file, in _id order.
+     * With an operation time, the range is read in its own causally consistent session started after it.
+     *
+     * @return The number of notes written.
+     */
+    private long exportRange(Criteria range, Path part, int blockSize, BsonTimestamp readAfter) throws IOException {
+        Query query = Query.query(range).with(Sort.by("_id")).cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.withReadPreference(noteProperties.getReads().readPreference("exportNotes"));
+        try (ClientSession session = readAfter == null ? null : causalSession(readAfter);
+             Stream<Note> notes = (session == null ? mongoTemplate : mongoTemplate.withSession(session)).stream(query, Note.class);
+             NoteExportBlockWriter writer = new NoteExportBlockWriter(
+                     FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), blockSize)) {
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                exportedNotes.incrementAndGet();
+            }
+            return writer.getWrittenNotes();
+        }
+    }
+
+    /**
+     * @return A causally consistent session, its reads start after the given operation time.
+     */
+    private ClientSession causalSession(BsonTimestamp readAfter) {
+        ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().causallyConsistent(true).build());
+        session.advanceOperationTime(readAfter);
+        return session;
+    }
+
+    /**
+     * Splits the notes into _id ranges, in _id order. The ids supplied by the clients are strings, sorted before
+     * the ObjectIds, they form the first range. The ObjectIds are split on their timestamp, between the first and
+     * the last one. The last range has no upper bound, it also holds the notes created since.
+     *
+     * @param count Number of ObjectId ranges wanted.
+     * @return The ranges.
+     */
+    List<Criteria> idRanges(int count) {
+        List<Criteria> ranges = new ArrayList<>();
+        ranges.add(Criteria.where("_id").type(BsonType.STRING.getValue()));
+        ObjectId first = boundaryId(Sort.Direction.ASC);
+        ObjectId last = boundaryId(Sort.Direction.DESC);
+        if (first == null || last == null) {
+            ranges.add(Criteria.where("_id").type(BsonType.OBJECT_ID.getValue()));
+            return ranges;
+        }
+        long from = Integer.toUnsignedLong(first.getTimestamp());
+        long to = Integer.toUnsignedLong(last.getTimestamp()) + 1;
+        long step = Math.max(1, (to - from + count - 1) / count);
+        for (long start = from; ; start += step) {
+            Criteria range = Criteria.where("_id").gte(objectIdAt(start));
+            if (start + step >= to) {
+                ranges.add(range);
+                return ranges;
+            }
+            ranges.add(range.lt(objectIdAt(start + step)));
+        }
+    }
+
+    /**
+     * @return The smallest ObjectId of the given timestamp, in seconds.
+     */
+    static ObjectId objectIdAt(long seconds) {
+        byte[] bytes = new byte[12];
+        ByteBuffer.wrap(bytes).putInt((int) seconds);
+        return new ObjectId(bytes);
+    }
+
+    private ObjectId boundaryId(Sort.Direction direction) {
+        Query query = Query.query(Criteria.where("_id").type(BsonType.OBJECT_ID.getValue())).with(Sort.by(direction, "_id"));
+        query.fields().include("_id");
+        Document document = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Note.class));
+        return document == null ? null : document.getObjectId("_id");
+    }
+
+    private static long readNoteCount(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+            channel.read(count, channel.size() - Long.BYTES);
+            return count.flip().getLong();
+        }
+    }
+
+    private static boolean isExportFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(NoteExportFormat.FILE_EXTENSION);
+    }
+
+    /**
+     * Keeps the last two exports.
+     */
+    private static void deleteOldExports(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> exports = files.filter(NoteExportJob::isExportFile).sorted(Comparator.reverseOrder()).toList();
+            for (Path file : exports.subList(Math.min(KEPT_EXPORTS, exports.size()), exports.size())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        runner.shutdownNow();
+    }
+}
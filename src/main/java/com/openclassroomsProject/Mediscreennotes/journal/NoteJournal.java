@@ -0,0 +1,210 @@
+package com.openclassroomsProject.Mediscreennotes.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of records, stored in memory-mapped segment files of a fixed size.
+ * A record is appended as its length, its CRC32C and its bytes, and forced to the disk before the append returns.
+ * The first bytes of a segment hold its checkpoint: the offset up to which its records have been consumed.
+ * A segment is deleted once the checkpoint has moved to a later segment.
+ * A record torn by a crash is detected by its checksum, the reading of its segment stops there.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+final class NoteJournal implements Closeable {
+
+    static final int SEGMENT_HEADER_SIZE = Long.BYTES;
+    static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    private static final String SEGMENT_PREFIX = "notes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private long currentSegment;
+    private int writeOffset;
+
+    /**
+     * Position just after a record, where the checkpoint is moved once the record is consumed.
+     */
+    static final class Position {
+
+        final long segment;
+        final int offset;
+
+        Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Record read from the journal.
+     */
+    static final class Entry {
+
+        final byte[] payload;
+        final Position end;
+
+        Entry(byte[] payload, Position end) {
+            this.payload = payload;
+            this.end = end;
+        }
+    }
+
+    NoteJournal(Path directory, int segmentSize) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("The journal segment size is too small : " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Maps the existing segments and starts a new one, the next appends go to the new segment.
+     *
+     * @return The records not consumed yet, in the order they were appended.
+     * @throws IOException if a segment can not be read or created.
+     */
+    synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (long segment : existing) {
+            MappedByteBuffer buffer = map(segment, false);
+            segments.put(segment, buffer);
+            readEntries(segment, buffer, entries);
+        }
+        currentSegment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+        startSegment(currentSegment);
+        return entries;
+    }
+
+    /**
+     * @return The largest record the journal accepts.
+     */
+    int maxPayloadSize() {
+        return segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Appends a record and forces it to the disk.
+     *
+     * @param payload The record.
+     * @return The position just after the record.
+     * @throws IOException if the journal is closed or a new segment can not be created.
+     */
+    synchronized Position append(byte[] payload) throws IOException {
+        if (segments.isEmpty()) {
+            throw new IOException("The note journal is closed");
+        }
+        if (payload.length == 0 || payload.length > maxPayloadSize()) {
+            throw new IllegalArgumentException("Invalid journal record size : " + payload.length);
+        }
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (writeOffset + recordSize > segmentSize) {
+            startSegment(currentSegment + 1);
+        }
+        MappedByteBuffer buffer = segments.get(currentSegment);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buffer.put(writeOffset + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(writeOffset + Integer.BYTES, (int) crc.getValue());
+        // The length is written last, a record is only visible once complete
+        buffer.putInt(writeOffset, payload.length);
+        buffer.force(writeOffset, recordSize);
+        writeOffset += recordSize;
+        return new Position(currentSegment, writeOffset);
+    }
+
+    /**
+     * Marks the records up to a position as consumed, and deletes the segments before it.
+     *
+     * @param position Position returned by {@link #append(byte[])} or read with an entry.
+     * @throws IOException if a consumed segment can not be deleted.
+     */
+    synchronized void checkpoint(Position position) throws IOException {
+        MappedByteBuffer buffer = segments.get(position.segment);
+        if (buffer != null) {
+            buffer.putLong(0, position.offset);
+            buffer.force(0, SEGMENT_HEADER_SIZE);
+        }
+        Iterator<Map.Entry<Long, MappedByteBuffer>> iterator = segments.headMap(position.segment).entrySet().iterator();
+        while (iterator.hasNext()) {
+            long segment = iterator.next().getKey();
+            iterator.remove();
+            // The mapping is released by the garbage collector, deleting a mapped file is allowed on Linux
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.values().forEach(MappedByteBuffer::force);
+        segments.clear();
+    }
+
+    private void startSegment(long segment) throws IOException {
+        MappedByteBuffer buffer = map(segment, true);
+        buffer.putLong(0, SEGMENT_HEADER_SIZE);
+        buffer.force(0, SEGMENT_HEADER_SIZE);
+        segments.put(segment, buffer);
+        currentSegment = segment;
+        writeOffset = SEGMENT_HEADER_SIZE;
+    }
+
+    private MappedByteBuffer map(long segment, boolean create) throws IOException {
+        StandardOpenOption[] options = create
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private void readEntries(long segment, MappedByteBuffer buffer, List<Entry> entries) {
+        long checkpoint = buffer.getLong(0);
+        int offset = checkpoint < SEGMENT_HEADER_SIZE || checkpoint > segmentSize ? SEGMENT_HEADER_SIZE : (int) checkpoint;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > segmentSize - offset - RECORD_HEADER_SIZE) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + RECORD_HEADER_SIZE, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                return;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+            entries.add(new Entry(payload, new Position(segment, offset)));
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%019d", segment) + SEGMENT_SUFFIX);
+    }
+}
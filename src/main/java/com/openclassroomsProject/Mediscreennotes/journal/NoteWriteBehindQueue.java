@@ -0,0 +1,223 @@
+package com.openclassroomsProject.Mediscreennotes.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind creation of the notes (mediscreen.notes.write-behind.enabled).
+ * An accepted note is appended to a memory-mapped journal on the local disk, and acknowledged once forced to the disk.
+ * A worker inserts the pending notes with bulk writes of up to flush-size notes, or of the notes accepted
+ * during flush-interval, then moves the checkpoint of the journal past them. A failed insert is retried.
+ * At startup the notes journaled and not inserted before a stop or a crash are inserted first.
+ * A pending note is not returned by the reads until it is inserted.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteWriteBehindQueue implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteWriteBehindQueue.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    private final BlockingQueue<PendingNote> pending = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private NoteJournal journal;
+    private Thread worker;
+
+    /**
+     * Journaled note, with the position of the journal just after it.
+     */
+    private static final class PendingNote {
+
+        final Note note;
+        final NoteJournal.Position end;
+
+        PendingNote(Note note, NoteJournal.Position end) {
+            this.note = note;
+            this.end = end;
+        }
+    }
+
+    @Override
+    public void start() {
+        NoteProperties.WriteBehind writeBehind = noteProperties.getWriteBehind();
+        if (!writeBehind.isEnabled()) {
+            return;
+        }
+        journal = new NoteJournal(Path.of(writeBehind.getJournalPath()), (int) writeBehind.getSegmentSize().toBytes());
+        try {
+            for (NoteJournal.Entry entry : journal.open()) {
+                pending.add(new PendingNote(objectMapper.readValue(entry.payload, Note.class), entry.end));
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Unable to open the note journal", exception);
+        }
+        noteMetrics.monitorWriteBehindPending(pending);
+        running = true;
+        worker = new Thread(this::flushPendingNotes, "note-write-behind");
+        worker.start();
+        LOGGER.info("[WRITE BEHIND]-> note journal opened [PARAM]-> path = {} [PARAM]-> replayed = {}",
+                writeBehind.getJournalPath(), pending.size());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // Not interrupted: the worker inserts the pending notes before it stops
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        LOGGER.info("[WRITE BEHIND]-> note journal closed [PARAM]-> pending = {}", pending.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Journals a new note, to be inserted later.
+     * The note gets a new id, its version and its creation date, as it would be returned by a direct insert.
+     * A note sent with its own id is not journaled: the id may be taken, which only the insert can tell, and the client
+     * would never know that its accepted note was not inserted.
+     *
+     * @param note The note to create.
+     * @return true if the note is journaled, false if it must be inserted directly: write-behind disabled or stopped,
+     * note with an id, too many pending notes, note larger than a journal segment or journal not writable.
+     */
+    public boolean accept(Note note) {
+        if (!running || note.getId() != null || pending.size() >= noteProperties.getWriteBehind().getMaxPending()) {
+            return false;
+        }
+        note.setId(new ObjectId().toHexString());
+        Date now = new Date();
+        note.setVersion(0L);
+        note.setCreatedAt(now);
+        note.setUpdatedAt(now);
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(note);
+            if (payload.length > journal.maxPayloadSize()) {
+                return false;
+            }
+            // The notes are queued in the order of the journal, a checkpoint never skips a pending note
+            synchronized (pending) {
+                pending.add(new PendingNote(note, journal.append(payload)));
+            }
+            return true;
+        } catch (IOException exception) {
+            LOGGER.error("[WRITE BEHIND]-> unable to journal the note [PARAM]-> note = {}", note, exception);
+            return false;
+        }
+    }
+
+    private void flushPendingNotes() {
+        NoteProperties.WriteBehind writeBehind = noteProperties.getWriteBehind();
+        int flushSize = Math.max(1, writeBehind.getFlushSize());
+        List<PendingNote> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                collectBatch(batch, flushSize, writeBehind.getFlushInterval().toNanos());
+                while (!batch.isEmpty() && !flush(batch) && running) {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Stopping: the notes left are inserted once, those not inserted stay in the journal for the next start
+        pending.drainTo(batch);
+        while (!batch.isEmpty()) {
+            List<PendingNote> chunk = new ArrayList<>(batch.subList(0, Math.min(flushSize, batch.size())));
+            if (!flush(chunk)) {
+                return;
+            }
+            batch.subList(0, chunk.size()).clear();
+        }
+    }
+
+    /**
+     * Waits for a first pending note, then for the next ones until the batch is full or the flush interval is over.
+     */
+    private void collectBatch(List<PendingNote> batch, int flushSize, long flushIntervalNanos) throws InterruptedException {
+        if (batch.isEmpty()) {
+            PendingNote first = pending.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+        }
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < flushSize && running) {
+            pending.drainTo(batch, flushSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0) {
+                return;
+            }
+            PendingNote next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * @return true if the batch is inserted, it is then cleared.
+     */
+    private boolean flush(List<PendingNote> batch) {
+        List<Note> notes = batch.stream().map(pendingNote -> pendingNote.note).toList();
+        try {
+            noteService.insertJournaledNotes(notes);
+        } catch (RuntimeException exception) {
+            LOGGER.error("[WRITE BEHIND]-> unable to insert the journaled notes, retried [PARAM]-> notes = {}", notes.size(), exception);
+            return false;
+        }
+        noteMetrics.recordWriteBehindFlush(notes.size());
+        try {
+            journal.checkpoint(batch.get(batch.size() - 1).end);
+        } catch (IOException exception) {
+            // The notes are inserted, replaying them after a restart only skips them
+            LOGGER.error("[WRITE BEHIND]-> unable to move the journal checkpoint", exception);
+        }
+        batch.clear();
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package com.openclassroomsProject.Mediscreennotes.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples the "call method" INFO lines written by the controllers and services on every call.
+ * The decision is taken before the message is formatted, from the format string only, so a line that is not
+ * sampled costs neither the formatting nor the logging event. The rate of a line depends on its method name,
+ * given by the rates property ("getNotesByPatientId=0.01,getNoteById=0.1"), other lines use the default rate.
+ * Other messages (warnings, errors, lines without "call method") are never filtered.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class CallLogSamplingFilter extends TurboFilter {
+
+    static final String CALL_METHOD = "call method : ";
+
+    private final Map<String, Double> rateByFormat = new ConcurrentHashMap<>();
+    private final Map<String, Double> rateByMethod = new HashMap<>();
+    private double defaultRate = 1.0;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable throwable) {
+        if (level != Level.INFO || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+        Double rate = rateByFormat.get(format);
+        if (rate == null) {
+            rate = rateByFormat.computeIfAbsent(format, this::rateOf);
+        }
+        if (rate >= 1.0) {
+            return FilterReply.NEUTRAL;
+        }
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    /**
+     * @param defaultRate Rate, between 0 and 1, of the call lines of the methods without their own rate.
+     */
+    public void setDefaultRate(double defaultRate) {
+        this.defaultRate = defaultRate;
+        rateByFormat.clear();
+    }
+
+    /**
+     * @param rates Comma separated list of method=rate pairs.
+     */
+    public void setRates(String rates) {
+        rateByMethod.clear();
+        for (String entry : rates.split(",")) {
+            int separator = entry.indexOf('=');
+            if (separator > 0) {
+                rateByMethod.put(entry.substring(0, separator).trim(), Double.parseDouble(entry.substring(separator + 1).trim()));
+            }
+        }
+        rateByFormat.clear();
+    }
+
+    private double rateOf(String format) {
+        int start = format.indexOf(CALL_METHOD);
+        if (start < 0) {
+            return 1.0;
+        }
+        start += CALL_METHOD.length();
+        int end = format.indexOf(' ', start);
+        String method = end < 0 ? format.substring(start) : format.substring(start, end);
+        return rateByMethod.getOrDefault(method, defaultRate);
+    }
+}
@@ -0,0 +1,40 @@
+package com.openclassroomsProject.Mediscreennotes.metrics;
+
+import com.openclassroomsProject.Mediscreennotes.warmup.NoteWarmUp;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationPredicate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+
+/**
+ * Enables the @Timed annotations of the services, and leaves the warm-up requests out of the http.server.requests metrics.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Does not observe the requests sent by the warm-up (X-Warm-Up header), on the servlet and the reactive stacks.
+     */
+    @Bean
+    public ObservationPredicate warmUpRequestsPredicate() {
+        return (name, context) -> {
+            if (context instanceof ServerRequestObservationContext servletContext) {
+                return servletContext.getCarrier().getHeader(NoteWarmUp.WARM_UP_HEADER) == null;
+            }
+            if (context instanceof org.springframework.http.server.reactive.observation.ServerRequestObservationContext reactiveContext) {
+                return !reactiveContext.getCarrier().getHeaders().containsKey(NoteWarmUp.WARM_UP_HEADER);
+            }
+            return true;
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.openclassroomsProject.Mediscreennotes.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import java.util.Collection;
+
+/**
+ * Size metrics of the note results, exported with percentile histograms.
+ * mediscreen.note.patient.notes : number of notes returned for a patient.
+ * mediscreen.http.response.size : bytes written in the body of each response, tagged by endpoint, before the HTTP compression.
+ * mediscreen.note.comment.size : bytes of the written comments, as text (form=raw) and as stored (form=stored).
+ * mediscreen.note.write-behind.pending and .batch : notes waiting in the write-behind journal, and notes of each of its inserts.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary patientNotes;
+    private final Counter commentRawBytes;
+    private final Counter commentStoredBytes;
+    private final Counter compressedComments;
+    private final DistributionSummary writeBehindBatches;
+
+    public NoteMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.patientNotes = DistributionSummary.builder("mediscreen.note.patient.notes")
+                .description("Number of notes returned for a patient")
+                .baseUnit("notes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.commentRawBytes = Counter.builder("mediscreen.note.comment.size")
+                .description("Bytes of the written comments")
+                .baseUnit("bytes")
+                .tag("form", "raw")
+                .register(meterRegistry);
+        this.commentStoredBytes = Counter.builder("mediscreen.note.comment.size")
+                .description("Bytes of the written comments")
+                .baseUnit("bytes")
+                .tag("form", "stored")
+                .register(meterRegistry);
+        this.compressedComments = Counter.builder("mediscreen.note.comment.compressed")
+                .description("Number of comments written compressed")
+                .register(meterRegistry);
+        this.writeBehindBatches = DistributionSummary.builder("mediscreen.note.write-behind.batch")
+                .description("Number of notes of the inserts of the write-behind journal")
+                .baseUnit("notes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param notes Number of notes of the patient.
+     */
+    public void recordPatientNotes(int notes) {
+        patientNotes.record(notes);
+    }
+
+    /**
+     * @param rawBytes    Size of the comment as UTF-8 text.
+     * @param storedBytes Size of the comment as stored, equal to rawBytes if it is not compressed.
+     */
+    public void recordCommentWrite(int rawBytes, int storedBytes) {
+        commentRawBytes.increment(rawBytes);
+        commentStoredBytes.increment(storedBytes);
+        if (storedBytes < rawBytes) {
+            compressedComments.increment();
+        }
+    }
+
+    /**
+     * @param pending The notes waiting in the write-behind journal, its size is read on each scrape.
+     */
+    public void monitorWriteBehindPending(Collection<?> pending) {
+        Gauge.builder("mediscreen.note.write-behind.pending", pending, Collection::size)
+                .description("Number of notes journaled and not inserted yet")
+                .baseUnit("notes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param notes Number of notes inserted by a flush of the write-behind journal.
+     */
+    public void recordWriteBehindFlush(int notes) {
+        writeBehindBatches.record(notes);
+    }
+
+    /**
+     * @param method HTTP method of the request.
+     * @param uri    Route template of the endpoint, not the actual path, to keep the number of series bounded.
+     * @param status HTTP status of the response.
+     * @param bytes  Bytes written in the body of the response.
+     */
+    public void recordResponseSize(String method, String uri, int status, long bytes) {
+        DistributionSummary.builder("mediscreen.http.response.size")
+                .description("Bytes written in the body of the responses")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .tags("method", method, "uri", uri, "status", String.valueOf(status))
+                .register(meterRegistry)
+                .record(bytes);
+    }
+}
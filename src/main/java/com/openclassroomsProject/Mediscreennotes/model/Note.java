@@ -1,19 +1,28 @@
 package com.openclassroomsProject.Mediscreennotes.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
 
 /**
  * @author jonathan GOUVEIA
  * @version 1.0
  */
 @Document(collection = "note")
+@CompoundIndex(name = "patientId_id", def = "{'patientId': 1, '_id': 1}")
+@CompoundIndex(name = "updatedAt_id", def = "{'updatedAt': 1, '_id': 1}")
 public class Note {
 
     @Id
     private String id;
     private Integer patientId;
     private String comment;
+    @Version
+    private Long version;
+    private Date createdAt;
+    private Date updatedAt;
 
     public Note() {
     }
@@ -53,12 +62,51 @@ public class Note {
         this.comment = comment;
     }
 
+    /**
+     * Incremented by every update, absent from the notes written before versioning (read as 0).
+     *
+     * @return The version of the note.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Set by every write of the note, the changes endpoint reads the notes in this order.
+     *
+     * @return The date of the last write of the note.
+     */
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * The comment is left out, only its length is given, so that a note can be logged without its medical content.
+     */
     @Override
     public String toString() {
         return "Note{" +
                 "id='" + id + '\'' +
                 ", patientId=" + patientId +
-                ", comment='" + comment + '\'' +
+                ", version=" + version +
+                ", updatedAt=" + updatedAt +
+                ", commentLength=" + (comment == null ? 0 : comment.length()) +
                 '}';
     }
 }
\ No newline at end of file
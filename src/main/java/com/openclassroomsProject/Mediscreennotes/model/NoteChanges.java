@@ -0,0 +1,81 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.List;
+
+/**
+ * Notes created, updated or deleted after a watermark, returned by the changes endpoint.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteChanges {
+
+    private List<Note> notes;
+    private List<NoteTombstone> deleted;
+    private String watermark;
+    private boolean complete;
+
+    public NoteChanges() {
+    }
+
+    public NoteChanges(List<Note> notes, List<NoteTombstone> deleted, String watermark, boolean complete) {
+        this.notes = notes;
+        this.deleted = deleted;
+        this.watermark = watermark;
+        this.complete = complete;
+    }
+
+    /**
+     * @return The created or updated notes, ordered by modification date.
+     */
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+
+    /**
+     * @return The deleted notes, ordered by deletion date.
+     */
+    public List<NoteTombstone> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<NoteTombstone> deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return The opaque watermark to send with the next call.
+     */
+    public String getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(String watermark) {
+        this.watermark = watermark;
+    }
+
+    /**
+     * @return False when the limit has been reached and more changes can be read right away with the watermark.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteChanges{" +
+                "notes=" + (notes == null ? 0 : notes.size()) +
+                ", deleted=" + (deleted == null ? 0 : deleted.size()) +
+                ", watermark='" + watermark + '\'' +
+                ", complete=" + complete +
+                '}';
+    }
+}
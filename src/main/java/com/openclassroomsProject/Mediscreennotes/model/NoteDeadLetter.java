@@ -0,0 +1,85 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+/**
+ * Journaled note rejected by the database for another reason than a duplicate id, kept with the error
+ * once the journal checkpoint has moved past it, so that it can be corrected and created again.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Document(collection = "note_dead_letter")
+public class NoteDeadLetter {
+
+    @Id
+    private String id;
+    private Note note;
+    private Integer errorCode;
+    private String error;
+    private Date rejectedAt;
+
+    public NoteDeadLetter() {
+    }
+
+    public NoteDeadLetter(Note note, Integer errorCode, String error, Date rejectedAt) {
+        this.id = note.getId();
+        this.note = note;
+        this.errorCode = errorCode;
+        this.error = error;
+        this.rejectedAt = rejectedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+
+    public void setNote(Note note) {
+        this.note = note;
+    }
+
+    public Integer getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(Integer errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Date getRejectedAt() {
+        return rejectedAt;
+    }
+
+    public void setRejectedAt(Date rejectedAt) {
+        this.rejectedAt = rejectedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteDeadLetter{" +
+                "id='" + id + '\'' +
+                ", note=" + note +
+                ", errorCode=" + errorCode +
+                ", error='" + error + '\'' +
+                ", rejectedAt=" + rejectedAt +
+                '}';
+    }
+}
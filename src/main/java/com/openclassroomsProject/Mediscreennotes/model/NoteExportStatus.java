@@ -0,0 +1,89 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.Date;
+
+/**
+ * State of the snapshot export of all notes: the run in progress, or the last export file.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteExportStatus {
+
+    private boolean running;
+    private String fileName;
+    private long exportedNotes;
+    private long sizeBytes;
+    private Date startedAt;
+    private Date completedAt;
+    private String failure;
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getExportedNotes() {
+        return exportedNotes;
+    }
+
+    public void setExportedNotes(long exportedNotes) {
+        this.exportedNotes = exportedNotes;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Date startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Date completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteExportStatus{" +
+                "running=" + running +
+                ", fileName='" + fileName + '\'' +
+                ", exportedNotes=" + exportedNotes +
+                ", sizeBytes=" + sizeBytes +
+                ", startedAt=" + startedAt +
+                ", completedAt=" + completedAt +
+                ", failure='" + failure + '\'' +
+                '}';
+    }
+}
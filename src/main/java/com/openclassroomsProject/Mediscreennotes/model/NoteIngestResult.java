@@ -0,0 +1,68 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
+
+/**
+ * Result of the ingestion of one record of a bulk import.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteIngestResult {
+
+    private long line;
+    private String id;
+    private IngestStatus status;
+    private String error;
+
+    public NoteIngestResult() {
+    }
+
+    public NoteIngestResult(String id, IngestStatus status, String error) {
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public IngestStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(IngestStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteIngestResult{" +
+                "line=" + line +
+                ", id='" + id + '\'' +
+                ", status=" + status +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
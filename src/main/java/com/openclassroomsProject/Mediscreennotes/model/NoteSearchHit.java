@@ -0,0 +1,69 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+/**
+ * A note matching a full-text search.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteSearchHit {
+
+    private String noteId;
+    private Integer patientId;
+    private float score;
+    private String highlight;
+
+    public NoteSearchHit() {
+    }
+
+    public NoteSearchHit(String noteId, Integer patientId, float score, String highlight) {
+        this.noteId = noteId;
+        this.patientId = patientId;
+        this.score = score;
+        this.highlight = highlight;
+    }
+
+    public String getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(String noteId) {
+        this.noteId = noteId;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+
+    /**
+     * @return The passage of the comment that best matches the query, matched terms enclosed in &lt;b&gt; tags.
+     */
+    public String getHighlight() {
+        return highlight;
+    }
+
+    public void setHighlight(String highlight) {
+        this.highlight = highlight;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteSearchHit{" +
+                "noteId='" + noteId + '\'' +
+                ", patientId=" + patientId +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.List;
+
+/**
+ * A page of the notes matching a full-text search, best matches first.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteSearchResult {
+
+    private List<NoteSearchHit> hits;
+    private long totalHits;
+    private boolean totalHitsExact;
+    private int page;
+    private int size;
+
+    public NoteSearchResult() {
+    }
+
+    public NoteSearchResult(List<NoteSearchHit> hits, long totalHits, boolean totalHitsExact, int page, int size) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.page = page;
+        this.size = size;
+    }
+
+    public List<NoteSearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<NoteSearchHit> hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * @return The number of matching notes, a lower bound when {@link #isTotalHitsExact()} is false.
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(long totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    /**
+     * @return False when the matches have not all been counted, which keeps broad queries fast.
+     */
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    public void setTotalHitsExact(boolean totalHitsExact) {
+        this.totalHitsExact = totalHitsExact;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteSearchResult{" +
+                "hits=" + (hits == null ? 0 : hits.size()) +
+                ", totalHits=" + totalHits +
+                ", totalHitsExact=" + totalHitsExact +
+                ", page=" + page +
+                ", size=" + size +
+                '}';
+    }
+}
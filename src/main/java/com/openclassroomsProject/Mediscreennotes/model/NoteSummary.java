@@ -0,0 +1,105 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.Date;
+
+/**
+ * Summary of a note for the list views : the beginning of the comment instead of the whole comment.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteSummary {
+
+    private String id;
+    private Integer patientId;
+    private Long version;
+    private Date createdAt;
+    private Date updatedAt;
+    private String preview;
+    private boolean truncated;
+
+    public NoteSummary() {
+    }
+
+    public NoteSummary(String id, Integer patientId, Long version, Date createdAt, Date updatedAt, String preview, boolean truncated) {
+        this.id = id;
+        this.patientId = patientId;
+        this.version = version;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.preview = preview;
+        this.truncated = truncated;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @return The first characters of the comment, mediscreen.notes.summary.preview-length at most.
+     */
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    /**
+     * @return True if the comment is longer than the preview.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteSummary{" +
+                "id='" + id + '\'' +
+                ", patientId=" + patientId +
+                ", version=" + version +
+                ", truncated=" + truncated +
+                '}';
+    }
+}
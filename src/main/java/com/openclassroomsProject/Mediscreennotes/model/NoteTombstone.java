@@ -0,0 +1,62 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+/**
+ * Trace of a deleted note, kept for the tombstone retention so that the consumers of the changes endpoint learn about deletes.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Document(collection = "note_tombstone")
+public class NoteTombstone {
+
+    @Id
+    private String id;
+    private Integer patientId;
+    private Date deletedAt;
+
+    public NoteTombstone() {
+    }
+
+    public NoteTombstone(String id, Integer patientId, Date deletedAt) {
+        this.id = id;
+        this.patientId = patientId;
+        this.deletedAt = deletedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public Date getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Date deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteTombstone{" +
+                "id='" + id + '\'' +
+                ", patientId=" + patientId +
+                ", deletedAt=" + deletedAt +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+/**
+ * Version of the note list of a patient, incremented by every write touching one of its notes.
+ * The epoch is the creation time of the document, it changes if the document is lost and created again,
+ * so that a version number restarting from 0 never matches an ETag given before.
+ * A version read from a secondary keeps the operation time of its read (a BSON timestamp value), not stored:
+ * the notes sent under it are read after this time.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Document(collection = "patient_note_version")
+public class PatientNoteVersion {
+
+    @Id
+    private Integer patientId;
+    private Long version;
+    private Date lastModified;
+    private Long epoch;
+    @Transient
+    private Long readAt;
+
+    public PatientNoteVersion() {
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(Long epoch) {
+        this.epoch = epoch;
+    }
+
+    public Long getReadAt() {
+        return readAt;
+    }
+
+    public void setReadAt(Long readAt) {
+        this.readAt = readAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PatientNoteVersion{" +
+                "patientId=" + patientId +
+                ", version=" + version +
+                ", lastModified=" + lastModified +
+                ", epoch=" + epoch +
+                '}';
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigger term counts of all the notes of a patient, maintained on each write.
+ * The counts are keyed by the index of the term in the list identified by the terms fingerprint.
+ * The notes counted are listed with their version, and the sequence is incremented by every write of the entry.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Document(collection = "patient_trigger")
+public class PatientTriggers {
+
+    @Id
+    private Integer patientId;
+    private Map<String, Long> counts;
+    private String termsFingerprint;
+    private Long sequence;
+    private List<CountedNote> notes;
+
+    public PatientTriggers() {
+    }
+
+    public PatientTriggers(Integer patientId, Map<String, Long> counts, String termsFingerprint) {
+        this.patientId = patientId;
+        this.counts = counts;
+        this.termsFingerprint = termsFingerprint;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+
+    public String getTermsFingerprint() {
+        return termsFingerprint;
+    }
+
+    public void setTermsFingerprint(String termsFingerprint) {
+        this.termsFingerprint = termsFingerprint;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public List<CountedNote> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<CountedNote> notes) {
+        this.notes = notes;
+    }
+
+    @Override
+    public String toString() {
+        return "PatientTriggers{" +
+                "patientId=" + patientId +
+                ", counts=" + counts +
+                ", termsFingerprint='" + termsFingerprint + '\'' +
+                ", sequence=" + sequence +
+                '}';
+    }
+
+    /**
+     * A note included in the counts, at the version it was counted.
+     */
+    public static class CountedNote {
+
+        private String noteId;
+        private Long version;
+
+        public String getNoteId() {
+            return noteId;
+        }
+
+        public void setNoteId(String noteId) {
+            this.noteId = noteId;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+    }
+}
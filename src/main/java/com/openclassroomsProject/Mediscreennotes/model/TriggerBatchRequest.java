@@ -0,0 +1,50 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.List;
+
+/**
+ * Patients whose trigger terms are counted in one call : either a list of patient identifiers,
+ * or an inclusive range of patient identifiers.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class TriggerBatchRequest {
+
+    private List<Integer> patientIds;
+    private Integer fromPatientId;
+    private Integer toPatientId;
+
+    public List<Integer> getPatientIds() {
+        return patientIds;
+    }
+
+    public void setPatientIds(List<Integer> patientIds) {
+        this.patientIds = patientIds;
+    }
+
+    public Integer getFromPatientId() {
+        return fromPatientId;
+    }
+
+    public void setFromPatientId(Integer fromPatientId) {
+        this.fromPatientId = fromPatientId;
+    }
+
+    public Integer getToPatientId() {
+        return toPatientId;
+    }
+
+    public void setToPatientId(Integer toPatientId) {
+        this.toPatientId = toPatientId;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerBatchRequest{" +
+                "patientIds=" + (patientIds == null ? null : patientIds.size() + " ids") +
+                ", fromPatientId=" + fromPatientId +
+                ", toPatientId=" + toPatientId +
+                '}';
+    }
+}
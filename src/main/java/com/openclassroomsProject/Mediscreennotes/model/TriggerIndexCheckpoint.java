@@ -0,0 +1,91 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Progress of the trigger index rebuild job, saved after each batch so that the job can be resumed.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Document(collection = "job_checkpoint")
+public class TriggerIndexCheckpoint {
+
+    @Id
+    private String id;
+    private String termsFingerprint;
+    private Integer lastPatientId;
+    private long processedPatients;
+    private boolean completed;
+    @Transient
+    private boolean running;
+
+    public TriggerIndexCheckpoint() {
+    }
+
+    public TriggerIndexCheckpoint(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTermsFingerprint() {
+        return termsFingerprint;
+    }
+
+    public void setTermsFingerprint(String termsFingerprint) {
+        this.termsFingerprint = termsFingerprint;
+    }
+
+    public Integer getLastPatientId() {
+        return lastPatientId;
+    }
+
+    public void setLastPatientId(Integer lastPatientId) {
+        this.lastPatientId = lastPatientId;
+    }
+
+    public long getProcessedPatients() {
+        return processedPatients;
+    }
+
+    public void setProcessedPatients(long processedPatients) {
+        this.processedPatients = processedPatients;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerIndexCheckpoint{" +
+                "id='" + id + '\'' +
+                ", termsFingerprint='" + termsFingerprint + '\'' +
+                ", lastPatientId=" + lastPatientId +
+                ", processedPatients=" + processedPatients +
+                ", completed=" + completed +
+                ", running=" + running +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.Map;
+
+/**
+ * Number of occurrences of each trigger term in the notes of a patient.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class TriggerReport {
+
+    private Integer patientId;
+    private Map<String, Long> counts;
+
+    public TriggerReport() {
+    }
+
+    public TriggerReport(Integer patientId, Map<String, Long> counts) {
+        this.patientId = patientId;
+        this.counts = counts;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerReport{" +
+                "patientId=" + patientId +
+                ", counts=" + counts +
+                '}';
+    }
+}
@@ -0,0 +1,119 @@
+package com.openclassroomsProject.Mediscreennotes.model;
+
+import java.util.Date;
+
+/**
+ * Progress of the warm-up at startup, exposed by the warmup actuator endpoint.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class WarmUpStatus {
+
+    private String phase;
+    private String patientSource;
+    private int patients;
+    private int warmedPatients;
+    private int requests;
+    private int sentRequests;
+    private int failedRequests;
+    private Date startedAt;
+    private Date completedAt;
+    private boolean timedOut;
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getPatientSource() {
+        return patientSource;
+    }
+
+    public void setPatientSource(String patientSource) {
+        this.patientSource = patientSource;
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    public void setPatients(int patients) {
+        this.patients = patients;
+    }
+
+    public int getWarmedPatients() {
+        return warmedPatients;
+    }
+
+    public void setWarmedPatients(int warmedPatients) {
+        this.warmedPatients = warmedPatients;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public void setRequests(int requests) {
+        this.requests = requests;
+    }
+
+    public int getSentRequests() {
+        return sentRequests;
+    }
+
+    public void setSentRequests(int sentRequests) {
+        this.sentRequests = sentRequests;
+    }
+
+    public int getFailedRequests() {
+        return failedRequests;
+    }
+
+    public void setFailedRequests(int failedRequests) {
+        this.failedRequests = failedRequests;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Date startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Date completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpStatus{" +
+                "phase='" + phase + '\'' +
+                ", patientSource='" + patientSource + '\'' +
+                ", patients=" + patients +
+                ", warmedPatients=" + warmedPatients +
+                ", requests=" + requests +
+                ", sentRequests=" + sentRequests +
+                ", failedRequests=" + failedRequests +
+                ", startedAt=" + startedAt +
+                ", completedAt=" + completedAt +
+                ", timedOut=" + timedOut +
+                '}';
+    }
+}
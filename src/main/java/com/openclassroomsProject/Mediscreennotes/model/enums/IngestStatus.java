@@ -0,0 +1,12 @@
+package com.openclassroomsProject.Mediscreennotes.model.enums;
+
+/**
+ * Outcome of the ingestion of one record of a bulk import.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public enum IngestStatus {
+    CREATED,
+    FAILED
+}
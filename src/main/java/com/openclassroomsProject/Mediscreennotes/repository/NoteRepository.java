@@ -1,9 +1,13 @@
 package com.openclassroomsProject.Mediscreennotes.repository;
 
 import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.repository.projection.NoteCommentView;
+import com.openclassroomsProject.Mediscreennotes.repository.projection.NoteIdView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author jonathan GOUVEIA
@@ -13,4 +17,29 @@ import java.util.List;
 public interface NoteRepository extends MongoRepository <Note, String> {
 
     List<Note> findByPatientId(Integer patientId);
-}
\ No newline at end of file
+
+    /**
+     * Ids of the notes of a patient, read from the {patientId, _id} index only.
+     */
+    List<NoteIdView> findIdsByPatientId(Integer patientId);
+
+    /**
+     * Comments of the notes of a patient, without the other fields.
+     */
+    List<NoteCommentView> findCommentsByPatientId(Integer patientId);
+
+    /**
+     * First page of notes, without the count query issued by findAll(Pageable).
+     */
+    List<Note> findAllBy(Pageable pageable);
+
+    /**
+     * Keyset page : the notes whose id is strictly greater than the given one.
+     */
+    List<Note> findByIdGreaterThan(String id, Pageable pageable);
+
+    /**
+     * All notes backed by an open Mongo cursor. The stream must be closed by the caller.
+     */
+    Stream<Note> streamAllBy();
+}
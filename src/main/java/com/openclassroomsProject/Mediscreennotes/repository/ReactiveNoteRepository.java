@@ -0,0 +1,23 @@
+package com.openclassroomsProject.Mediscreennotes.repository;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking access to the notes, used by the reactive stack.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Repository
+public interface ReactiveNoteRepository extends ReactiveMongoRepository<Note, String> {
+
+    Flux<Note> findByPatientId(Integer patientId);
+
+    Flux<Note> findAllBy(Pageable pageable);
+
+    Flux<Note> findByIdGreaterThan(String id, Pageable pageable);
+}
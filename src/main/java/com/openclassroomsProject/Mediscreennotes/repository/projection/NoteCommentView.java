@@ -0,0 +1,16 @@
+package com.openclassroomsProject.Mediscreennotes.repository.projection;
+
+/**
+ * Projection of a note reduced to its comment, with the id and the version of the note it was read from.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface NoteCommentView {
+
+    String getId();
+
+    String getComment();
+
+    Long getVersion();
+}
@@ -0,0 +1,12 @@
+package com.openclassroomsProject.Mediscreennotes.repository.projection;
+
+/**
+ * Projection of a note reduced to its id.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface NoteIdView {
+
+    String getId();
+}
@@ -0,0 +1,50 @@
+package com.openclassroomsProject.Mediscreennotes.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.en.EnglishMinimalStemFilter;
+import org.apache.lucene.analysis.fr.FrenchAnalyzer;
+import org.apache.lucene.analysis.fr.FrenchMinimalStemFilter;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.util.ElisionFilter;
+
+/**
+ * Analysis of the comments, written in French or in English.
+ * Both fields remove the French elisions (l', d'...), lower case the terms and fold the accents, so that
+ * "hémoglobine", "Hemoglobine" and "l'hémoglobine" are the same term. The stemmed field also reduces the
+ * plural forms of both languages, it is searched along the plain field, which serves the phrase and prefix
+ * queries and the highlighting. No stop words are removed, the phrases are matched as written.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public class NoteAnalyzer extends Analyzer {
+
+    static final String STEMMED_SUFFIX = "_stemmed";
+
+    public NoteAnalyzer() {
+        super(PER_FIELD_REUSE_STRATEGY);
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new StandardTokenizer();
+        TokenStream stream = new ElisionFilter(tokenizer, FrenchAnalyzer.DEFAULT_ARTICLES);
+        stream = new ASCIIFoldingFilter(new LowerCaseFilter(stream));
+        if (fieldName.endsWith(STEMMED_SUFFIX)) {
+            stream = new FrenchMinimalStemFilter(new EnglishMinimalStemFilter(stream));
+        }
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    /**
+     * Applied to the prefix of the prefix queries, which are not tokenized.
+     */
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+    }
+}
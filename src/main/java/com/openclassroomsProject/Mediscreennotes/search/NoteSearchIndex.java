@@ -0,0 +1,346 @@
+package com.openclassroomsProject.Mediscreennotes.search;
+
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.exception.WatermarkExpiredException;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchHit;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TotalHits;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.store.NativeFSLockFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text index of the note comments, embedded in the application (Lucene).
+ * The writes of this instance are applied from the note events as they happen. The index also reads the note
+ * changes ({@link INoteService#getChangesSince(String, int)}) at startup and then periodically: this builds
+ * the index, applies the writes of the other instances and repairs a write whose event failed.
+ * The watermark of the changes is saved with each commit of the index, a restart only reads the changes made since.
+ * The searches never refresh the index: the writes become visible when the scheduled refresh runs.
+ * An index on disk is locked with an operating system lock (write.lock), released when the process ends even
+ * after a crash: a leftover write.lock file does not prevent a restart, only another running instance using
+ * the same directory does.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class NoteSearchIndex implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteSearchIndex.class);
+    static final String ID_FIELD = "id";
+    static final String PATIENT_ID_FIELD = "patientId";
+    static final String COMMENT_FIELD = "comment";
+    static final String STEMMED_COMMENT_FIELD = COMMENT_FIELD + NoteAnalyzer.STEMMED_SUFFIX;
+    static final String WATERMARK_KEY = "watermark";
+    private static final int SYNC_BATCH_SIZE = 1000;
+    private static final long COMMIT_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = 10;
+    private static final Map<String, Float> SEARCHED_FIELDS = Map.of(COMMENT_FIELD, 1.0f, STEMMED_COMMENT_FIELD, 0.5f);
+    private static final Set<String> HIT_FIELDS = Set.of(ID_FIELD, PATIENT_ID_FIELD);
+    private static final FieldType COMMENT_TYPE = commentType();
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    private final Analyzer analyzer = new NoteAnalyzer();
+    private volatile boolean running;
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService scheduler;
+    private String watermark;
+    private long lastCommitMillis;
+
+    @Override
+    public void start() {
+        NoteProperties.Search search = noteProperties.getSearch();
+        boolean inMemory = search.getIndexPath() == null || search.getIndexPath().isBlank();
+        try {
+            directory = inMemory ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(search.getIndexPath()), NativeFSLockFactory.INSTANCE);
+            if (DirectoryReader.indexExists(directory)) {
+                watermark = SegmentInfos.readLatestCommit(directory).getUserData().get(WATERMARK_KEY);
+            }
+            indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+            searcherManager = new SearcherManager(indexWriter, null);
+        } catch (LockObtainFailedException exception) {
+            closeDirectory();
+            throw new IllegalStateException("The search index " + search.getIndexPath()
+                    + " is used by another running instance, each instance needs its own mediscreen.notes.search.index-path", exception);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Unable to open the search index", exception);
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "note-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::synchronize, 0, search.getSyncInterval().toMillis(), TimeUnit.MILLISECONDS);
+        long refreshMillis = Math.max(MIN_REFRESH_INTERVAL_MILLIS, search.getRefreshInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("[SEARCH]-> search index opened [PARAM]-> path = {} [PARAM]-> documents = {} [PARAM]-> resume = {}",
+                inMemory ? "memory" : search.getIndexPath(), indexWriter.getDocStats().numDocs, watermark != null);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            // Not interrupted: an interrupted index write closes the index writer
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (indexWriter != null) {
+                // Commits the pending writes with the last watermark
+                indexWriter.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException exception) {
+            LOGGER.error("[SEARCH]-> unable to close the search index", exception);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Searches the comments. The query supports the simple query syntax: terms (all required by default),
+     * "quoted phrases", prefix* queries, | for or, - to exclude a term and parentheses.
+     *
+     * @param text      The query.
+     * @param patientId Patient identifier to search only the notes of a patient, null to search all notes.
+     * @param page      Index of the page, from 0.
+     * @param size      Number of hits of a page.
+     * @return The page of hits, each with the best matching passage of its comment.
+     */
+    public NoteSearchResult search(String text, Integer patientId, int page, int size) {
+        if (!running) {
+            throw new IllegalStateException("The search index is not started");
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                Query query = buildQuery(text, patientId);
+                TopDocs topDocs = searcher.search(query, (page + 1) * size);
+                ScoreDoc[] pageDocs = Arrays.copyOfRange(topDocs.scoreDocs, Math.min(page * size, topDocs.scoreDocs.length), topDocs.scoreDocs.length);
+                String[] highlights = UnifiedHighlighter.builder(searcher, analyzer).build()
+                        .highlight(COMMENT_FIELD, query, new TopDocs(topDocs.totalHits, pageDocs), 1);
+                StoredFields storedFields = searcher.storedFields();
+                List<NoteSearchHit> hits = new ArrayList<>(pageDocs.length);
+                for (int index = 0; index < pageDocs.length; index++) {
+                    Document document = storedFields.document(pageDocs[index].doc, HIT_FIELDS);
+                    Number hitPatientId = document.getField(PATIENT_ID_FIELD) == null ? null : document.getField(PATIENT_ID_FIELD).numericValue();
+                    hits.add(new NoteSearchHit(document.get(ID_FIELD), hitPatientId == null ? null : hitPatientId.intValue(),
+                            pageDocs[index].score, highlights[index]));
+                }
+                return new NoteSearchResult(hits, topDocs.totalHits.value, topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO, page, size);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Unable to search the notes", exception);
+        }
+    }
+
+    Query buildQuery(String text, Integer patientId) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, SEARCHED_FIELDS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query textQuery = parser.parse(text);
+        if (patientId == null) {
+            return textQuery;
+        }
+        return new BooleanQuery.Builder()
+                .add(textQuery, BooleanClause.Occur.MUST)
+                .add(IntPoint.newExactQuery(PATIENT_ID_FIELD, patientId), BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    /**
+     * Indexes a created or updated note, removes a deleted one.
+     * A failure is repaired by the next synchronization.
+     *
+     * @param event The write.
+     */
+    @EventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        if (!running) {
+            return;
+        }
+        try {
+            if (event.getCurrent() != null) {
+                indexWriter.updateDocument(idTerm(event.getCurrent().getId()), toDocument(event.getCurrent()));
+            } else if (event.getPrevious() != null) {
+                indexWriter.deleteDocuments(idTerm(event.getPrevious().getId()));
+            }
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.error("[SEARCH]-> unable to update the search index [PARAM]-> event = {}", event, exception);
+        }
+    }
+
+    /**
+     * Indexes a batch of inserted notes.
+     * A failure is repaired by the next synchronization.
+     *
+     * @param event The bulk insert.
+     */
+    @EventListener
+    public void onNotesInserted(NotesInsertedEvent event) {
+        if (!running) {
+            return;
+        }
+        try {
+            for (Note note : event.getNotes()) {
+                indexWriter.updateDocument(idTerm(note.getId()), toDocument(note));
+            }
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.error("[SEARCH]-> unable to update the search index [PARAM]-> event = {}", event, exception);
+        }
+    }
+
+    /**
+     * Applies the note changes made since the saved watermark, then commits the index with the new watermark.
+     * If the watermark is older than the retention of the deleted notes, the index is built again.
+     */
+    synchronized void synchronize() {
+        try {
+            boolean changed = false;
+            NoteChanges changes;
+            do {
+                try {
+                    changes = noteService.getChangesSince(watermark, SYNC_BATCH_SIZE);
+                } catch (WatermarkExpiredException exception) {
+                    LOGGER.warn("[SEARCH]-> search index too old, rebuilding it [PARAM]-> watermark = {}", watermark);
+                    indexWriter.deleteAll();
+                    changes = noteService.getChangesSince(null, SYNC_BATCH_SIZE);
+                }
+                for (Note note : changes.getNotes()) {
+                    indexWriter.updateDocument(idTerm(note.getId()), toDocument(note));
+                }
+                for (NoteTombstone tombstone : changes.getDeleted()) {
+                    indexWriter.deleteDocuments(idTerm(tombstone.getId()));
+                }
+                changed |= !changes.getNotes().isEmpty() || !changes.getDeleted().isEmpty();
+                watermark = changes.getWatermark();
+            } while (!changes.isComplete() && running);
+            if (changed || System.currentTimeMillis() - lastCommitMillis > COMMIT_INTERVAL_MILLIS) {
+                indexWriter.setLiveCommitData(Map.of(WATERMARK_KEY, watermark).entrySet());
+                indexWriter.commit();
+                lastCommitMillis = System.currentTimeMillis();
+                refresh();
+            }
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.error("[SEARCH]-> unable to synchronize the search index [PARAM]-> watermark = {}", watermark, exception);
+        }
+    }
+
+    /**
+     * Makes the writes applied so far visible to the next searches.
+     */
+    void refresh() {
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.error("[SEARCH]-> unable to refresh the search index", exception);
+        }
+    }
+
+    private void closeDirectory() {
+        try {
+            directory.close();
+        } catch (IOException exception) {
+            LOGGER.error("[SEARCH]-> unable to close the search index directory", exception);
+        }
+    }
+
+    static Term idTerm(String noteId) {
+        return new Term(ID_FIELD, noteId);
+    }
+
+    static Document toDocument(Note note) {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, note.getId(), Field.Store.YES));
+        if (note.getPatientId() != null) {
+            document.add(new IntPoint(PATIENT_ID_FIELD, note.getPatientId()));
+            document.add(new StoredField(PATIENT_ID_FIELD, note.getPatientId()));
+        }
+        String comment = note.getComment() == null ? "" : note.getComment();
+        document.add(new Field(COMMENT_FIELD, comment, COMMENT_TYPE));
+        document.add(new TextField(STEMMED_COMMENT_FIELD, comment, Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * The comment is stored, and its offsets indexed, so that the highlighter finds the passages
+     * without analyzing the comments again.
+     */
+    private static FieldType commentType() {
+        FieldType type = new FieldType(TextField.TYPE_STORED);
+        type.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        type.freeze();
+        return type;
+    }
+}
@@ -0,0 +1,19 @@
+package com.openclassroomsProject.Mediscreennotes.service;
+
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface INoteExportService {
+
+    NoteExportStatus exportNotes();
+
+    NoteExportStatus getNoteExportStatus();
+
+    Optional<Path> getNoteExportFile() throws IOException;
+}
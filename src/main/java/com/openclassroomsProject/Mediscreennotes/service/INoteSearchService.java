@@ -0,0 +1,12 @@
+package com.openclassroomsProject.Mediscreennotes.service;
+
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface INoteSearchService {
+
+    NoteSearchResult searchNotes(String query, Integer patientId, int page, int size);
+}
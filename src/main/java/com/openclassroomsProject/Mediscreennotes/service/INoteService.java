@@ -1,8 +1,13 @@
 package com.openclassroomsProject.Mediscreennotes.service;
 
 import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * @author jonathan GOUVEIA
@@ -10,15 +15,39 @@ import java.util.Optional;
  */
 public interface INoteService {
 
-    Optional<Note> getNoteById(String id);
+    Optional<Note> getNoteById(String id, Integer patientId);
 
     List<Note> getAllNotesByPatientId(Integer id);
 
+    List<Note> getAllNotesByPatientId(Integer patientId, PatientNoteVersion version);
+
+    void loadPatientNotes(Integer patientId);
+
+    List<String> getNoteIdsByPatientId(Integer patientId);
+
+    PatientNoteVersion getPatientNoteVersion(Integer patientId);
+
+    PatientNoteVersion getPatientNoteVersion(Integer patientId, String operation);
+
     List<Note> getAllNotes();
 
+    List<Note> getNotesPage(String afterId, int limit);
+
+    Stream<Note> streamAllNotes();
+
+    List<NoteSummary> getNoteSummariesByPatientId(Integer patientId, PatientNoteVersion version);
+
+    Stream<NoteSummary> streamAllNoteSummaries();
+
+    NoteChanges getChangesSince(String watermark, int limit);
+
     Note createNote(Note note);
 
-    Note updateNote(Note note);
+    List<NoteIngestResult> createNotes(List<Note> notes);
+
+    List<Note> insertJournaledNotes(List<Note> notes);
+
+    Optional<Note> updateNote(Note note);
 
-    void deleteNoteById(String id);
+    boolean deleteNoteById(String id, Integer patientId, Long expectedVersion);
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.openclassroomsProject.Mediscreennotes.service;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link INoteService}.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface IReactiveNoteService {
+
+    Mono<Note> getNoteById(String id, Integer patientId);
+
+    Flux<Note> getAllNotesByPatientId(Integer patientId);
+
+    Flux<Note> getAllNotes();
+
+    Flux<NoteSummary> getNoteSummariesByPatientId(Integer patientId);
+
+    Flux<NoteSummary> getAllNoteSummaries();
+
+    Flux<Note> getNotesPage(String afterId, int limit);
+
+    Mono<Note> createNote(Note note);
+
+    Mono<Note> updateNote(Note note);
+
+    Mono<Boolean> deleteNoteById(String id, Integer patientId, Long expectedVersion);
+}
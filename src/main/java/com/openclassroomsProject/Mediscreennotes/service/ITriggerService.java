@@ -0,0 +1,23 @@
+package com.openclassroomsProject.Mediscreennotes.service;
+
+import com.openclassroomsProject.Mediscreennotes.model.TriggerIndexCheckpoint;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerReport;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public interface ITriggerService {
+
+    TriggerReport countTriggersByPatientId(Integer patientId);
+
+    Stream<TriggerReport> countTriggersByPatientIds(List<Integer> patientIds);
+
+    Stream<TriggerReport> countTriggersByPatientRange(Integer fromPatientId, Integer toPatientId);
+
+    TriggerIndexCheckpoint rebuildTriggerIndex();
+
+    TriggerIndexCheckpoint getTriggerIndexRebuildStatus();
+}
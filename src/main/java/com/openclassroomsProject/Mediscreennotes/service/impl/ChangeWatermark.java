@@ -0,0 +1,58 @@
+package com.openclassroomsProject.Mediscreennotes.service.impl;
+
+import org.bson.Document;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of a consumer in the changes of the notes, exchanged as an opaque string.
+ * It holds the last (modification date, id) returned for the notes, the last (deletion date, id) returned
+ * for the tombstones, and the date up to which the consumer had read everything.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+final class ChangeWatermark {
+
+    static final ChangeWatermark INITIAL = new ChangeWatermark(0, "", 0, "", 0);
+
+    final long noteTime;
+    final String noteId;
+    final long tombstoneTime;
+    final String tombstoneId;
+    final long syncedAt;
+
+    ChangeWatermark(long noteTime, String noteId, long tombstoneTime, String tombstoneId, long syncedAt) {
+        this.noteTime = noteTime;
+        this.noteId = noteId;
+        this.tombstoneTime = tombstoneTime;
+        this.tombstoneId = tombstoneId;
+        this.syncedAt = syncedAt;
+    }
+
+    String encode() {
+        String json = new Document("nt", noteTime).append("ni", noteId)
+                .append("tt", tombstoneTime).append("ti", tombstoneId)
+                .append("s", syncedAt).toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param watermark The watermark returned by a previous call, null for the first call.
+     * @return The position.
+     * @throws IllegalArgumentException if the watermark is not valid.
+     */
+    static ChangeWatermark decode(String watermark) {
+        if (watermark == null || watermark.isBlank()) {
+            return INITIAL;
+        }
+        try {
+            Document document = Document.parse(new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.UTF_8));
+            return new ChangeWatermark(((Number) document.get("nt")).longValue(), Objects.requireNonNull(document.getString("ni")),
+                    ((Number) document.get("tt")).longValue(), Objects.requireNonNull(document.getString("ti")), ((Number) document.get("s")).longValue());
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid watermark", exception);
+        }
+    }
+}
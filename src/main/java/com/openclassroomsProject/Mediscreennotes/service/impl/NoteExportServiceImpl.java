@@ -0,0 +1,59 @@
+package com.openclassroomsProject.Mediscreennotes.service.impl;
+
+import com.openclassroomsProject.Mediscreennotes.export.NoteExportJob;
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Service
+public class NoteExportServiceImpl implements INoteExportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteExportServiceImpl.class);
+
+    @Autowired
+    private NoteExportJob noteExportJob;
+
+    /**
+     * Start a snapshot export of all notes, unless one is running.
+     *
+     * @return The state of the export.
+     */
+    @Override
+    public NoteExportStatus exportNotes() {
+        LOGGER.info("[SERVICE]-> call method : exportNotes");
+        return noteExportJob.start();
+    }
+
+    /**
+     * Get the state of the export in progress, or of the last export.
+     *
+     * @return The state of the export.
+     */
+    @Override
+    public NoteExportStatus getNoteExportStatus() {
+        LOGGER.info("[SERVICE]-> call method : getNoteExportStatus");
+        return noteExportJob.getStatus();
+    }
+
+    /**
+     * Get the file of the last complete export.
+     *
+     * @return The export file, empty if no export has completed.
+     * @throws IOException if the export directory can not be read.
+     */
+    @Override
+    public Optional<Path> getNoteExportFile() throws IOException {
+        LOGGER.info("[SERVICE]-> call method : getNoteExportFile");
+        return noteExportJob.getExportFile();
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassroomsProject.Mediscreennotes.service.impl;
+
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.search.NoteSearchIndex;
+import com.openclassroomsProject.Mediscreennotes.service.INoteSearchService;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Service
+@Timed(value = "mediscreen.note.search", histogram = true)
+public class NoteSearchServiceImpl implements INoteSearchService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteSearchServiceImpl.class);
+
+    @Autowired
+    private NoteSearchIndex noteSearchIndex;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    /**
+     * Search the comments of the notes with the full-text index.
+     *
+     * @param query     The query, see {@link NoteSearchIndex#search(String, Integer, int, int)} for its syntax.
+     * @param patientId Patient identifier to search only the notes of a patient, null to search all notes.
+     * @param page      Index of the page, from 0.
+     * @param size      Number of hits of a page.
+     * @return The page of hits, best matches first.
+     * @throws IllegalArgumentException if the query is blank or the page is out of the allowed bounds.
+     */
+    @Override
+    public NoteSearchResult searchNotes(String query, Integer patientId, int page, int size) {
+        LOGGER.info("[SERVICE]-> call method : searchNotes [PARAM]-> query = {} [PARAM]-> patientId = {} [PARAM]-> page = {} [PARAM]-> size = {}",
+                query, patientId, page, size);
+        NoteProperties.Search search = noteProperties.getSearch();
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Empty query");
+        }
+        if (page < 0 || size < 1 || size > search.getMaxPageSize() || (long) (page + 1) * size > search.getMaxResultWindow()) {
+            throw new IllegalArgumentException("Page out of bounds");
+        }
+        return noteSearchIndex.search(query, patientId, page, size);
+    }
+}
@@ -1,49 +1,211 @@
 package com.openclassroomsProject.Mediscreennotes.service.impl;
 
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.ClientSession;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNotesCache;
+import com.openclassroomsProject.Mediscreennotes.config.CausalReadContext;
+import com.openclassroomsProject.Mediscreennotes.config.NotePreviewCallback;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.exception.NoteVersionConflictException;
+import com.openclassroomsProject.Mediscreennotes.exception.WatermarkExpiredException;
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
 import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteDeadLetter;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
 import com.openclassroomsProject.Mediscreennotes.repository.NoteRepository;
+import com.openclassroomsProject.Mediscreennotes.repository.projection.NoteIdView;
 import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import io.micrometer.core.annotation.Timed;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 /**
+ * Every public method is timed in mediscreen.note.service, tagged by method.
+ *
  * @author jonathan GOUVEIA
  * @version 1.0
  */
 @Service
+@Timed(value = "mediscreen.note.service", description = "Duration of the note service methods", histogram = true)
 public class NoteServiceImpl implements INoteService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NoteServiceImpl.class);
+    private static final int DUPLICATE_KEY_CODE = 11000;
+    private static final String VERSION_FIELD = "version";
 
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PatientNotesCache patientNotesCache;
+
+    @Autowired
+    private PatientNoteVersionTracker patientNoteVersionTracker;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private CausalReadContext causalReadContext;
+
     /**
      * Get a note by its id.
+     * On a sharded collection the patient routes the read to the shard of the note, without it every shard is read.
      *
-     * @param id The id of the note to get.
+     * @param id        The id of the note to get.
+     * @param patientId Patient of the note, null if unknown.
      * @return The note corresponding to the id.
      */
     @Override
-    public Optional<Note> getNoteById(String id) {
-        LOGGER.info("[SERVICE]-> call method : getNoteById [PARAM]-> id = " + id);
-        return noteRepository.findById(id);
+    public Optional<Note> getNoteById(String id, Integer patientId) {
+        LOGGER.info("[SERVICE]-> call method : getNoteById [PARAM]-> id = {} [PARAM]-> patientId = {}", id, patientId);
+        if (patientId == null) {
+            return noteRepository.findById(id);
+        }
+        return Optional.ofNullable(mongoTemplate.findOne(byIdAndVersion(id, patientId, null), Note.class));
     }
 
     /**
-     * Get all notes for a given patient.
+     * Get all notes for a given patient, at the current version of its note list.
      *
      * @param patientId Patient identifier.
      * @return The list of patient notes.
      */
     @Override
     public List<Note> getAllNotesByPatientId(Integer patientId) {
-        LOGGER.info("[SERVICE]-> call method : getAllNotesByPatientId [PARAM]-> id = " + patientId);
-        return noteRepository.findByPatientId(patientId);
+        return getAllNotesByPatientId(patientId, getPatientNoteVersion(patientId, "getAllNotesByPatientId"));
+    }
+
+    /**
+     * Get all notes for a given patient.
+     * The list is served from the patient notes cache when it was loaded under the given version, otherwise it is read
+     * again: the notes returned are never older than the version, which can be sent as the ETag of the list.
+     * Only the reads of the primary fill the cache: a lagging secondary could return the notes as they were before a write,
+     * which would then be served until the cache entry expires. The reads of a secondary start after the read of the version.
+     *
+     * @param patientId Patient identifier.
+     * @param version   Version of the note list, read before the notes by {@link #getPatientNoteVersion(Integer, String)}.
+     * @return The list of patient notes.
+     */
+    @Override
+    public List<Note> getAllNotesByPatientId(Integer patientId, PatientNoteVersion version) {
+        LOGGER.info("[SERVICE]-> call method : getAllNotesByPatientId [PARAM]-> id = {}", patientId);
+        ReadPreference readPreference = noteProperties.getReads().readPreference("getAllNotesByPatientId");
+        List<Note> notes;
+        if (readPreference.equals(ReadPreference.primary())) {
+            notes = patientNotesCache.get(patientId, version, noteRepository::findByPatientId);
+        } else {
+            notes = patientNotesCache.getIfPresent(patientId, version);
+            if (notes == null) {
+                notes = routedRead(readPreference, readAfter(version), Query.query(Criteria.where("patientId").is(patientId)),
+                        (operations, query) -> operations.find(query, Note.class));
+            }
+        }
+        noteMetrics.recordPatientNotes(notes.size());
+        return notes;
+    }
+
+    /**
+     * Loads the notes of a patient into the patient notes cache, reading them on the primary whatever the read preference
+     * of {@link #getAllNotesByPatientId(Integer)}: its reads of the secondaries do not fill the cache.
+     *
+     * @param patientId Patient identifier.
+     */
+    @Override
+    public void loadPatientNotes(Integer patientId) {
+        LOGGER.info("[SERVICE]-> call method : loadPatientNotes [PARAM]-> patientId = {}", patientId);
+        patientNotesCache.get(patientId, patientNoteVersionTracker.getVersion(patientId), noteRepository::findByPatientId);
+    }
+
+    /**
+     * Get the version of the note list of a patient, without loading the notes.
+     *
+     * @param patientId Patient identifier.
+     * @return The version and the last modification date of the note list.
+     */
+    @Override
+    public PatientNoteVersion getPatientNoteVersion(Integer patientId) {
+        LOGGER.info("[SERVICE]-> call method : getPatientNoteVersion [PARAM]-> patientId = {}", patientId);
+        return patientNoteVersionTracker.getVersion(patientId);
+    }
+
+    /**
+     * Get the version of the note list of a patient, to be sent as the ETag of the notes read by an operation.
+     * The version is read with the read preference of the operation: on the primary when the notes are, otherwise
+     * in a causally consistent session, whose operation time the notes are then read after. The notes are never
+     * older than their ETag, even when the version and the notes are read from different secondaries.
+     *
+     * @param patientId Patient identifier.
+     * @param operation The operation reading the notes, its read preference is used (mediscreen.notes.reads.preferences).
+     * @return The version and the last modification date of the note list.
+     */
+    @Override
+    public PatientNoteVersion getPatientNoteVersion(Integer patientId, String operation) {
+        LOGGER.info("[SERVICE]-> call method : getPatientNoteVersion [PARAM]-> patientId = {}, operation = {}", patientId, operation);
+        ReadPreference readPreference = noteProperties.getReads().readPreference(operation);
+        if (readPreference.equals(ReadPreference.primary())) {
+            return patientNoteVersionTracker.getVersion(patientId);
+        }
+        return patientNoteVersionTracker.getVersion(patientId, readPreference, causalReadContext.getReadAfter());
+    }
+
+    /**
+     * Get the ids of the notes of a given patient, without loading the notes.
+     *
+     * @param patientId Patient identifier.
+     * @return The ids of the patient notes.
+     */
+    @Override
+    public List<String> getNoteIdsByPatientId(Integer patientId) {
+        LOGGER.info("[SERVICE]-> call method : getNoteIdsByPatientId [PARAM]-> patientId = {}", patientId);
+        return noteRepository.findIdsByPatientId(patientId).stream().map(NoteIdView::getId).toList();
     }
 
     /**
@@ -54,7 +216,118 @@ public class NoteServiceImpl implements INoteService {
     @Override
     public List<Note> getAllNotes() {
         LOGGER.info("[SERVICE]-> call method : getAllNotes");
-        return noteRepository.findAll();
+        ReadPreference readPreference = noteProperties.getReads().readPreference("getAllNotes");
+        if (readPreference.equals(ReadPreference.primary())) {
+            return noteRepository.findAll();
+        }
+        return routedRead(readPreference, new Query(), (operations, query) -> operations.find(query, Note.class));
+    }
+
+    /**
+     * Get a page of notes ordered by id, starting after the given note id.
+     *
+     * @param afterId Id of the last note of the previous page, or null for the first page.
+     * @param limit   Maximum number of notes to return.
+     * @return The notes of the page.
+     */
+    @Override
+    public List<Note> getNotesPage(String afterId, int limit) {
+        LOGGER.info("[SERVICE]-> call method : getNotesPage [PARAM]-> afterId = {} [PARAM]-> limit = {}", afterId, limit);
+        ReadPreference readPreference = noteProperties.getReads().readPreference("getNotesPage");
+        if (!readPreference.equals(ReadPreference.primary())) {
+            Criteria criteria = afterId == null ? new Criteria() : Criteria.where("_id").gt(afterId);
+            return routedRead(readPreference, Query.query(criteria).with(Sort.by("_id")).limit(limit),
+                    (operations, query) -> operations.find(query, Note.class));
+        }
+        PageRequest pageRequest = PageRequest.of(0, limit, Sort.by("id"));
+        if (afterId == null) {
+            return noteRepository.findAllBy(pageRequest);
+        }
+        return noteRepository.findByIdGreaterThan(afterId, pageRequest);
+    }
+
+    /**
+     * Get the summaries of the notes of a patient, the comment is cut to its preview by the database.
+     *
+     * @param patientId Patient identifier.
+     * @param version   Version of the note list, read before the notes by {@link #getPatientNoteVersion(Integer, String)}.
+     * @return The summaries of the patient notes, ordered by id.
+     */
+    @Override
+    public List<NoteSummary> getNoteSummariesByPatientId(Integer patientId, PatientNoteVersion version) {
+        LOGGER.info("[SERVICE]-> call method : getNoteSummariesByPatientId [PARAM]-> patientId = {}", patientId);
+        int previewLength = noteProperties.getSummary().getPreviewLength();
+        List<Document> documents = routedRead(noteProperties.getReads().readPreference("getNoteSummariesByPatientId"), readAfter(version),
+                summaryQuery(new Document("patientId", patientId)),
+                (operations, query) -> operations.find(query, Document.class, operations.getCollectionName(Note.class)));
+        List<NoteSummary> summaries = new ArrayList<>(documents.size());
+        documents.forEach(document -> summaries.add(toSummary(document, previewLength)));
+        noteMetrics.recordPatientNotes(summaries.size());
+        return summaries;
+    }
+
+    /**
+     * Stream the summaries of all notes without loading them in memory.
+     * The returned stream holds a Mongo cursor and must be closed by the caller.
+     *
+     * @return A stream of summaries, ordered by id.
+     */
+    @Override
+    public Stream<NoteSummary> streamAllNoteSummaries() {
+        LOGGER.info("[SERVICE]-> call method : streamAllNoteSummaries");
+        int previewLength = noteProperties.getSummary().getPreviewLength();
+        return routedStream(noteProperties.getReads().readPreference("streamAllNoteSummaries"), summaryQuery(new Document()),
+                (operations, query) -> operations.stream(query, Document.class, operations.getCollectionName(Note.class)))
+                .map(document -> toSummary(document, previewLength));
+    }
+
+    /**
+     * Query of the summaries : the projection only returns the summary fields, the comment is replaced by its stored
+     * plain text preview ({@link NotePreviewCallback}), one character longer than the preview to know if it is truncated.
+     * A long comment is therefore neither sent nor inflated.
+     *
+     * @param filter Filter of the notes.
+     * @return The query, ordered by id.
+     */
+    static Query summaryQuery(Document filter) {
+        Document fields = new Document("patientId", 1)
+                .append(VERSION_FIELD, 1)
+                .append("createdAt", 1)
+                .append("updatedAt", 1)
+                .append(NotePreviewCallback.PREVIEW_FIELD, 1);
+        return new BasicQuery(filter, fields).with(Sort.by("_id"));
+    }
+
+    /**
+     * @param document      A document read with {@link #summaryQuery(Document)}.
+     * @param previewLength Number of characters of the preview.
+     * @return The summary.
+     */
+    static NoteSummary toSummary(Document document, int previewLength) {
+        String preview = document.getString(NotePreviewCallback.PREVIEW_FIELD);
+        boolean truncated = preview != null && preview.codePointCount(0, preview.length()) > previewLength;
+        if (truncated) {
+            preview = preview.substring(0, preview.offsetByCodePoints(0, previewLength));
+        }
+        Number version = document.get(VERSION_FIELD, Number.class);
+        return new NoteSummary(String.valueOf(document.get("_id")), document.getInteger("patientId"),
+                version == null ? null : version.longValue(), document.getDate("createdAt"), document.getDate("updatedAt"), preview, truncated);
+    }
+
+    /**
+     * Stream all notes from database without loading them in memory.
+     * The returned stream holds a Mongo cursor and must be closed by the caller.
+     *
+     * @return A stream of notes.
+     */
+    @Override
+    public Stream<Note> streamAllNotes() {
+        LOGGER.info("[SERVICE]-> call method : streamAllNotes");
+        ReadPreference readPreference = noteProperties.getReads().readPreference("streamAllNotes");
+        if (readPreference.equals(ReadPreference.primary())) {
+            return noteRepository.streamAllBy();
+        }
+        return routedStream(readPreference, new Query(), (operations, query) -> operations.stream(query, Note.class));
     }
 
     /**
@@ -66,30 +339,441 @@ public class NoteServiceImpl implements INoteService {
      */
     @Override
     public Note createNote(Note note) {
-        LOGGER.info("[SERVICE]-> call method : addNote [PARAM]-> note = " + note);
-        return noteRepository.insert(note);
+        LOGGER.info("[SERVICE]-> call method : addNote [PARAM]-> note = {}", note);
+        note.setVersion(null);
+        stampCreation(note, new Date());
+        Note createdNote = noteRepository.insert(note);
+        eventPublisher.publishEvent(new NoteChangedEvent(null, createdNote));
+        return createdNote;
+    }
+
+    /**
+     * Add a batch of notes with one unordered bulk write.
+     * A failed record does not prevent the other records of the batch from being inserted.
+     *
+     * @param notes The notes to create, an id is assigned to those without one.
+     * @return The result of each note, in the order of the given notes.
+     */
+    @Override
+    public List<NoteIngestResult> createNotes(List<Note> notes) {
+        LOGGER.info("[SERVICE]-> call method : createNotes [PARAM]-> notes = {}", notes.size());
+        List<NoteIngestResult> results = new ArrayList<>(notes.size());
+        List<Note> validNotes = new ArrayList<>(notes.size());
+        List<NoteIngestResult> validResults = new ArrayList<>(notes.size());
+        Date now = new Date();
+        for (Note note : notes) {
+            if (note.getPatientId() == null) {
+                results.add(new NoteIngestResult(note.getId(), IngestStatus.FAILED, "patientId is required"));
+                continue;
+            }
+            if (note.getId() == null) {
+                note.setId(new ObjectId().toHexString());
+            }
+            note.setVersion(0L);
+            stampCreation(note, now);
+            NoteIngestResult result = new NoteIngestResult(note.getId(), IngestStatus.CREATED, null);
+            results.add(result);
+            validNotes.add(note);
+            validResults.add(result);
+        }
+        if (validNotes.isEmpty()) {
+            return results;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+        bulkOperations.insert(validNotes);
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException exception) {
+            for (BulkWriteError error : exception.getErrors()) {
+                NoteIngestResult result = validResults.get(error.getIndex());
+                result.setStatus(IngestStatus.FAILED);
+                result.setError(error.getMessage());
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.error("[SERVICE]-> bulk insert failed [PARAM]-> notes = {}", validNotes.size(), exception);
+            validResults.forEach(result -> {
+                result.setStatus(IngestStatus.FAILED);
+                result.setError("Bulk write failed : " + exception.getMessage());
+            });
+        }
+        List<Note> insertedNotes = new ArrayList<>(validNotes.size());
+        for (int index = 0; index < validNotes.size(); index++) {
+            if (validResults.get(index).getStatus() == IngestStatus.CREATED) {
+                insertedNotes.add(validNotes.get(index));
+            }
+        }
+        if (!insertedNotes.isEmpty()) {
+            eventPublisher.publishEvent(new NotesInsertedEvent(insertedNotes));
+        }
+        return results;
+    }
+
+    /**
+     * Inserts the notes accepted by the write-behind journal, with one unordered bulk write.
+     * Their modification date is the date of the insert, so the delta sync does not skip a note journaled
+     * before a watermark and inserted after it. A note already inserted, by a flush interrupted before its checkpoint,
+     * is skipped: its id is taken by a stored note with the same patient, comment and creation date. A note whose id is
+     * taken by another note, or rejected by the database for another reason, is kept in the dead letters
+     * ({@link NoteDeadLetter}), before the journal checkpoint moves past it.
+     *
+     * @param notes The journaled notes, with their id, version and creation date.
+     * @return The notes inserted.
+     * @throws org.springframework.dao.DataAccessException if the database can not be written, or the rejected notes can not be
+     * kept in the dead letters, the batch is then flushed again.
+     */
+    @Override
+    public List<Note> insertJournaledNotes(List<Note> notes) {
+        LOGGER.info("[SERVICE]-> call method : insertJournaledNotes [PARAM]-> notes = {}", notes.size());
+        Date now = new Date();
+        notes.forEach(note -> note.setUpdatedAt(now));
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+        bulkOperations.insert(notes);
+        Set<Integer> rejected = new HashSet<>();
+        List<NoteDeadLetter> deadLetters = new ArrayList<>();
+        List<BulkWriteError> duplicates = new ArrayList<>();
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException exception) {
+            for (BulkWriteError error : exception.getErrors()) {
+                rejected.add(error.getIndex());
+                Note note = notes.get(error.getIndex());
+                if (error.getCode() == DUPLICATE_KEY_CODE) {
+                    duplicates.add(error);
+                } else {
+                    LOGGER.error("[SERVICE]-> journaled note rejected, kept in the dead letters [PARAM]-> note = {} [PARAM]-> error = {}",
+                            note, error.getMessage());
+                    deadLetters.add(new NoteDeadLetter(note, error.getCode(), error.getMessage(), now));
+                }
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            List<String> duplicateIds = duplicates.stream().map(error -> notes.get(error.getIndex()).getId()).toList();
+            Map<String, Note> storedNotes = new HashMap<>();
+            mongoTemplate.find(Query.query(Criteria.where("_id").in(duplicateIds)), Note.class)
+                    .forEach(storedNote -> storedNotes.put(storedNote.getId(), storedNote));
+            for (BulkWriteError error : duplicates) {
+                Note note = notes.get(error.getIndex());
+                if (isSameJournaledNote(note, storedNotes.get(note.getId()))) {
+                    LOGGER.warn("[SERVICE]-> journaled note already inserted [PARAM]-> id = {}", note.getId());
+                } else {
+                    LOGGER.error("[SERVICE]-> journaled note id taken by another note, kept in the dead letters [PARAM]-> note = {}", note);
+                    deadLetters.add(new NoteDeadLetter(note, error.getCode(), error.getMessage(), now));
+                }
+            }
+        }
+        List<Note> insertedNotes = new ArrayList<>(notes.size());
+        for (int index = 0; index < notes.size(); index++) {
+            if (!rejected.contains(index)) {
+                insertedNotes.add(notes.get(index));
+            }
+        }
+        if (!insertedNotes.isEmpty()) {
+            eventPublisher.publishEvent(new NotesInsertedEvent(insertedNotes));
+        }
+        // After the event: if a dead letter can not be saved, the batch is flushed again and its inserted notes are skipped
+        deadLetters.forEach(mongoTemplate::save);
+        return insertedNotes;
+    }
+
+    /**
+     * @param note       A journaled note.
+     * @param storedNote The note stored with its id, null if none.
+     * @return true if the stored note is the journaled note, inserted by an earlier flush: the modification date is
+     * the date of that flush, the other fields are those of the journal.
+     */
+    static boolean isSameJournaledNote(Note note, Note storedNote) {
+        return storedNote != null
+                && Objects.equals(note.getPatientId(), storedNote.getPatientId())
+                && Objects.equals(note.getComment(), storedNote.getComment())
+                && Objects.equals(note.getCreatedAt(), storedNote.getCreatedAt());
+    }
+
+    /**
+     * Get the notes created, updated or deleted after a watermark, ordered by date then id.
+     * Only the changes older than the visibility lag are returned, a write in flight when the watermark is given
+     * is therefore returned by a later call instead of being skipped.
+     *
+     * @param watermark The watermark returned by the previous call, null for the first call.
+     * @param limit     Maximum number of notes, and of deleted notes, to return.
+     * @return The changes and the watermark of the next call.
+     * @throws IllegalArgumentException  if the watermark is not valid.
+     * @throws WatermarkExpiredException if the watermark is older than the tombstone retention.
+     */
+    @Override
+    public NoteChanges getChangesSince(String watermark, int limit) {
+        LOGGER.info("[SERVICE]-> call method : getChangesSince [PARAM]-> watermark = {} [PARAM]-> limit = {}", watermark, limit);
+        ChangeWatermark position = ChangeWatermark.decode(watermark);
+        long now = System.currentTimeMillis();
+        NoteProperties.Sync sync = noteProperties.getSync();
+        if (position.syncedAt > 0 && position.syncedAt < now - sync.getTombstoneRetention().toMillis()) {
+            throw new WatermarkExpiredException("Watermark older than the tombstone retention of " + sync.getTombstoneRetention());
+        }
+        Date horizon = new Date(now - sync.getVisibilityLag().toMillis());
+        List<Note> notes = mongoTemplate.find(changesAfter("updatedAt", position.noteTime, position.noteId, horizon, limit), Note.class);
+        List<NoteTombstone> deleted = mongoTemplate.find(changesAfter("deletedAt", position.tombstoneTime, position.tombstoneId, horizon, limit), NoteTombstone.class);
+        boolean complete = notes.size() <= limit && deleted.size() <= limit;
+        notes = notes.size() > limit ? notes.subList(0, limit) : notes;
+        deleted = deleted.size() > limit ? deleted.subList(0, limit) : deleted;
+        Note lastNote = notes.isEmpty() ? null : notes.get(notes.size() - 1);
+        NoteTombstone lastTombstone = deleted.isEmpty() ? null : deleted.get(deleted.size() - 1);
+        ChangeWatermark next = new ChangeWatermark(
+                lastNote == null ? position.noteTime : lastNote.getUpdatedAt().getTime(),
+                lastNote == null ? position.noteId : lastNote.getId(),
+                lastTombstone == null ? position.tombstoneTime : lastTombstone.getDeletedAt().getTime(),
+                lastTombstone == null ? position.tombstoneId : lastTombstone.getId(),
+                complete ? horizon.getTime() : position.syncedAt);
+        return new NoteChanges(notes, deleted, next.encode(), complete);
     }
 
     /**
-     * Update a note.
+     * Keyset query of the documents written after a (date, id) position and not after the horizon.
+     * One more document than the limit is read to know if the changes are complete.
+     */
+    private static Query changesAfter(String dateField, long time, String id, Date horizon, int limit) {
+        Date after = new Date(time);
+        Criteria afterPosition = id.isEmpty() ? Criteria.where(dateField).gte(after) : new Criteria().orOperator(
+                Criteria.where(dateField).gt(after),
+                Criteria.where(dateField).is(after).and("_id").gt(id));
+        return Query.query(new Criteria().andOperator(Criteria.where(dateField).lte(horizon), afterPosition))
+                .with(Sort.by(dateField, "_id"))
+                .limit(limit + 1);
+    }
+
+    /**
+     * Update the comment of a note in a single round trip.
+     * The update is applied by findAndModify ($set on the comment, $inc on the version), which returns
+     * the note as it was before the update, so the change event is published without reading the note first.
      *
-     * @param note The note to update.
-     * @return The updated note.
+     * @param note The id, the new comment and, for a conditional update, the expected version of the note.
+     *             Its patient is only used when the notes are sharded, to route the update to the shard of the note,
+     *             see {@link #shardKey(String, Integer)}.
+     * @return The updated note, empty if the note does not exist.
+     * @throws NoteVersionConflictException if the note exists but is no longer at the expected version.
      */
     @Override
-    public Note updateNote(Note note) {
-        LOGGER.info("[SERVICE]-> call method : updateNote [PARAM]-> note = " + note);
-        return noteRepository.save(note);
+    public Optional<Note> updateNote(Note note) {
+        LOGGER.info("[SERVICE]-> call method : updateNote [PARAM]-> note = {}", note);
+        Integer patientId = shardKey(note.getId(), note.getPatientId());
+        if (patientId == null && isSharded()) {
+            return Optional.empty();
+        }
+        Date now = new Date();
+        Note previousNote = mongoTemplate.findAndModify(byIdAndVersion(note.getId(), patientId, note.getVersion()),
+                commentUpdate(note.getComment(), noteProperties.getSummary().getPreviewLength(), now), FindAndModifyOptions.options().returnNew(false), Note.class);
+        if (previousNote == null) {
+            throwIfVersionConflict(note.getId(), patientId, note.getVersion());
+            return Optional.empty();
+        }
+        Note updatedNote = updatedCopy(previousNote, note.getComment(), now);
+        eventPublisher.publishEvent(new NoteChangedEvent(previousNote, updatedNote));
+        return Optional.of(updatedNote);
     }
 
     /**
-     * Delete a note from its id.
+     * Delete a note from its id in a single round trip.
+     * findAndRemove returns the deleted note, needed by the change event and the tombstone to know the patient of the note.
      *
-     * @param id The id of the note to delete.
+     * @param id              The id of the note to delete.
+     * @param patientId       Patient of the note, routes the delete to the shard of the note when the notes are sharded,
+     *                        null if unknown, see {@link #shardKey(String, Integer)}.
+     * @param expectedVersion The version the note must have to be deleted, null to delete it whatever its version.
+     * @return True if the note has been deleted, false if it does not exist.
+     * @throws NoteVersionConflictException if the note exists but is no longer at the expected version.
      */
     @Override
-    public void deleteNoteById(String id) {
-        LOGGER.info("[SERVICE]-> call method : deleteNoteById [PARAM]-> id = " + id);
-        noteRepository.deleteById(id);
+    public boolean deleteNoteById(String id, Integer patientId, Long expectedVersion) {
+        LOGGER.info("[SERVICE]-> call method : deleteNoteById [PARAM]-> id = {} [PARAM]-> patientId = {} [PARAM]-> expectedVersion = {}",
+                id, patientId, expectedVersion);
+        Integer shardKey = shardKey(id, patientId);
+        if (shardKey == null && isSharded()) {
+            return false;
+        }
+        Note previousNote = mongoTemplate.findAndRemove(byIdAndVersion(id, shardKey, expectedVersion), Note.class);
+        if (previousNote == null) {
+            throwIfVersionConflict(id, shardKey, expectedVersion);
+            return false;
+        }
+        mongoTemplate.save(new NoteTombstone(previousNote.getId(), previousNote.getPatientId(), new Date()));
+        eventPublisher.publishEvent(new NoteChangedEvent(previousNote, null));
+        return true;
+    }
+
+    /**
+     * Patient routing a write of a note to the shard of the note.
+     * MongoDB rejects a findAndModify or a findAndRemove filtered on the _id alone when the collection is sharded:
+     * when the notes are sharded and the patient is not given, it is read from the note first (a read by _id,
+     * sent to every shard). When the notes are not sharded the patient is not used, a write matches the note id only.
+     *
+     * @param id        The id of the note.
+     * @param patientId The patient given with the write, null if unknown.
+     * @return The patient filtering the write, null if the notes are not sharded, or if they are and the note does not exist.
+     */
+    private Integer shardKey(String id, Integer patientId) {
+        if (!isSharded()) {
+            return null;
+        }
+        if (patientId != null) {
+            return patientId;
+        }
+        return patientIdOf(mongoTemplate.findOne(patientQuery(id), Document.class, mongoTemplate.getCollectionName(Note.class)));
+    }
+
+    private boolean isSharded() {
+        return noteProperties.getSharding().isEnabled();
+    }
+
+    /**
+     * @param id The id of a note.
+     * @return The query reading only the patient of the note.
+     */
+    static Query patientQuery(String id) {
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("patientId");
+        return query;
+    }
+
+    /**
+     * @param note The note read by {@link #patientQuery(String)}, null if it does not exist.
+     * @return The patient of the note, null if it does not exist.
+     */
+    static Integer patientIdOf(Document note) {
+        return note == null ? null : note.getInteger("patientId");
+    }
+
+    /**
+     * Builds the query of a conditional write.
+     * Notes written before versioning have no version field and are considered at version 0.
+     * The patient is the shard key of a sharded collection: with it the query targets a single shard.
+     *
+     * @param id              The id of the note.
+     * @param patientId       The patient of the note, null if unknown.
+     * @param expectedVersion The expected version, null to match any version.
+     * @return The query.
+     */
+    static Query byIdAndVersion(String id, Integer patientId, Long expectedVersion) {
+        Criteria criteria = Criteria.where("_id").is(id);
+        if (patientId != null) {
+            criteria = criteria.and("patientId").is(patientId);
+        }
+        if (expectedVersion != null) {
+            criteria = expectedVersion == 0 ? criteria.and(VERSION_FIELD).in(0L, null) : criteria.and(VERSION_FIELD).is(expectedVersion);
+        }
+        return Query.query(criteria);
+    }
+
+    /**
+     * @param comment       The new comment.
+     * @param previewLength Number of characters of the preview of the summaries.
+     * @param now           The date of the update.
+     * @return The update of a comment and of its preview, incrementing the version.
+     */
+    static Update commentUpdate(String comment, int previewLength, Date now) {
+        return new Update().set("comment", comment).set(NotePreviewCallback.PREVIEW_FIELD, NotePreviewCallback.preview(comment, previewLength))
+                .set("updatedAt", now).inc(VERSION_FIELD, 1);
+    }
+
+    /**
+     * @param previousNote The note before the update.
+     * @param comment      The new comment.
+     * @param now          The date of the update.
+     * @return The note after the update.
+     */
+    static Note updatedCopy(Note previousNote, String comment, Date now) {
+        Note updatedNote = new Note(previousNote.getId(), previousNote.getPatientId(), comment);
+        updatedNote.setVersion(previousNote.getVersion() == null ? 1 : previousNote.getVersion() + 1);
+        updatedNote.setCreatedAt(previousNote.getCreatedAt());
+        updatedNote.setUpdatedAt(now);
+        return updatedNote;
+    }
+
+    /**
+     * Runs a read with the read preference of its operation (mediscreen.notes.reads.preferences).
+     * When the request carries the operation time of a write, the read runs in a causally consistent session
+     * started after it: a secondary waits until it has replicated the write before answering.
+     *
+     * @param readPreference The read preference of the operation.
+     * @param query          The query, the read preference is set on it.
+     * @param read           Runs the query on the given operations, bound to the session if there is one.
+     * @return The result of the read.
+     */
+    private <T> T routedRead(ReadPreference readPreference, Query query, BiFunction<MongoOperations, Query, T> read) {
+        return routedRead(readPreference, causalReadContext.getReadAfter(), query, read);
+    }
+
+    /**
+     * Runs a read with the read preference of its operation, in a causally consistent session started after the given
+     * operation time if there is one.
+     *
+     * @param readPreference The read preference of the operation.
+     * @param readAfter      The operation time the read starts after, null if none.
+     * @param query          The query, the read preference is set on it.
+     * @param read           Runs the query on the given operations, bound to the session if there is one.
+     * @return The result of the read.
+     */
+    private <T> T routedRead(ReadPreference readPreference, BsonTimestamp readAfter, Query query, BiFunction<MongoOperations, Query, T> read) {
+        query.withReadPreference(readPreference);
+        if (readAfter == null) {
+            return read.apply(mongoTemplate, query);
+        }
+        try (ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().causallyConsistent(true).build())) {
+            session.advanceOperationTime(readAfter);
+            return read.apply(mongoTemplate.withSession(session), query);
+        }
+    }
+
+    /**
+     * Opens a stream with the read preference of its operation, like {@link #routedRead}. The causally consistent
+     * session is kept open by the cursor and closed with the stream.
+     *
+     * @param readPreference The read preference of the operation.
+     * @param query          The query, the read preference is set on it.
+     * @param read           Opens the stream on the given operations, bound to the session if there is one.
+     * @return The stream, to be closed by the caller.
+     */
+    private <T> Stream<T> routedStream(ReadPreference readPreference, Query query, BiFunction<MongoOperations, Query, Stream<T>> read) {
+        query.withReadPreference(readPreference);
+        BsonTimestamp readAfter = causalReadContext.getReadAfter();
+        if (readAfter == null) {
+            return read.apply(mongoTemplate, query);
+        }
+        ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().causallyConsistent(true).build());
+        try {
+            session.advanceOperationTime(readAfter);
+            return read.apply(mongoTemplate.withSession(session), query).onClose(session::close);
+        } catch (RuntimeException exception) {
+            session.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * @param version A version of a note list, null if none.
+     * @return The later of the operation time sent by the client and the operation time of the read of the version.
+     */
+    private BsonTimestamp readAfter(PatientNoteVersion version) {
+        BsonTimestamp readAfter = causalReadContext.getReadAfter();
+        if (version == null || version.getReadAt() == null) {
+            return readAfter;
+        }
+        BsonTimestamp versionReadAt = new BsonTimestamp(version.getReadAt());
+        return readAfter == null || readAfter.compareTo(versionReadAt) < 0 ? versionReadAt : readAfter;
+    }
+
+    /**
+     * @param note The note to create.
+     * @param now  The date of the creation.
+     */
+    static void stampCreation(Note note, Date now) {
+        note.setCreatedAt(now);
+        note.setUpdatedAt(now);
+    }
+
+    /**
+     * Tells apart a missing note from a note at another version, only called when the conditional write matched nothing.
+     */
+    private void throwIfVersionConflict(String id, Integer patientId, Long expectedVersion) {
+        if (expectedVersion != null && mongoTemplate.exists(byIdAndVersion(id, patientId, null), Note.class)) {
+            throw new NoteVersionConflictException(id, expectedVersion);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,235 @@
+package com.openclassroomsProject.Mediscreennotes.service.impl;
+
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.exception.NoteVersionConflictException;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.repository.ReactiveNoteRepository;
+import com.openclassroomsProject.Mediscreennotes.service.IReactiveNoteService;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Reactive implementation of the note service.
+ * Reads are streamed from the reactive Mongo driver with backpressure. After each write, the same
+ * {@link NoteChangedEvent} as the blocking service is published, on the bounded elastic scheduler
+ * because its listeners (trigger index, caches) are blocking.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Service
+public class ReactiveNoteServiceImpl implements IReactiveNoteService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveNoteServiceImpl.class);
+
+    @Autowired
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    /**
+     * Get a note by its id.
+     *
+     * @param id        The id of the note to get.
+     * @param patientId Patient of the note, routes the read to the shard of the note, null if unknown.
+     * @return The note corresponding to the id, empty if it does not exist.
+     */
+    @Override
+    public Mono<Note> getNoteById(String id, Integer patientId) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getNoteById [PARAM]-> id = {} [PARAM]-> patientId = {}", id, patientId);
+        if (patientId == null) {
+            return reactiveNoteRepository.findById(id);
+        }
+        return reactiveMongoTemplate.findOne(NoteServiceImpl.byIdAndVersion(id, patientId, null), Note.class);
+    }
+
+    /**
+     * Get all notes for a given patient.
+     *
+     * @param patientId Patient identifier.
+     * @return The notes of the patient.
+     */
+    @Override
+    public Flux<Note> getAllNotesByPatientId(Integer patientId) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getAllNotesByPatientId [PARAM]-> id = {}", patientId);
+        return reactiveNoteRepository.findByPatientId(patientId);
+    }
+
+    /**
+     * Get all notes from database.
+     *
+     * @return The notes, read from the cursor as the subscriber requests them.
+     */
+    @Override
+    public Flux<Note> getAllNotes() {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getAllNotes");
+        return reactiveNoteRepository.findAll();
+    }
+
+    /**
+     * Get the summaries of the notes of a patient, see {@link NoteServiceImpl#getNoteSummariesByPatientId}.
+     *
+     * @param patientId Patient identifier.
+     * @return The summaries of the patient notes, ordered by id.
+     */
+    @Override
+    public Flux<NoteSummary> getNoteSummariesByPatientId(Integer patientId) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getNoteSummariesByPatientId [PARAM]-> patientId = {}", patientId);
+        return findSummaries(new Document("patientId", patientId));
+    }
+
+    /**
+     * Get the summaries of all notes.
+     *
+     * @return The summaries, read from the cursor as the subscriber requests them.
+     */
+    @Override
+    public Flux<NoteSummary> getAllNoteSummaries() {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getAllNoteSummaries");
+        return findSummaries(new Document());
+    }
+
+    private Flux<NoteSummary> findSummaries(Document filter) {
+        int previewLength = noteProperties.getSummary().getPreviewLength();
+        return reactiveMongoTemplate.find(NoteServiceImpl.summaryQuery(filter), Document.class, reactiveMongoTemplate.getCollectionName(Note.class))
+                .map(document -> NoteServiceImpl.toSummary(document, previewLength));
+    }
+
+    /**
+     * Get a page of notes ordered by id, starting after the given note id.
+     *
+     * @param afterId Id of the last note of the previous page, or null for the first page.
+     * @param limit   Maximum number of notes to return.
+     * @return The notes of the page.
+     */
+    @Override
+    public Flux<Note> getNotesPage(String afterId, int limit) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : getNotesPage [PARAM]-> afterId = {} [PARAM]-> limit = {}", afterId, limit);
+        PageRequest pageRequest = PageRequest.of(0, limit, Sort.by("id"));
+        if (afterId == null) {
+            return reactiveNoteRepository.findAllBy(pageRequest);
+        }
+        return reactiveNoteRepository.findByIdGreaterThan(afterId, pageRequest);
+    }
+
+    /**
+     * Add a new note.
+     *
+     * @param note The note to create.
+     * @return The created note.
+     */
+    @Override
+    public Mono<Note> createNote(Note note) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : addNote [PARAM]-> note = {}", note);
+        note.setVersion(null);
+        NoteServiceImpl.stampCreation(note, new Date());
+        return reactiveNoteRepository.insert(note)
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(createdNote -> eventPublisher.publishEvent(new NoteChangedEvent(null, createdNote)));
+    }
+
+    /**
+     * Update the comment of a note in a single round trip, see {@link NoteServiceImpl#updateNote(Note)}.
+     *
+     * @param note The id, the new comment and, for a conditional update, the expected version of the note.
+     *             Its patient is only used when the notes are sharded, see {@link #routed(String, Integer, Function)}.
+     * @return The updated note, empty if the note does not exist, or a {@link NoteVersionConflictException} error
+     * if the note is no longer at the expected version.
+     */
+    @Override
+    public Mono<Note> updateNote(Note note) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : updateNote [PARAM]-> note = {}", note);
+        return routed(note.getId(), note.getPatientId(), patientId -> {
+            Date now = new Date();
+            Update update = NoteServiceImpl.commentUpdate(note.getComment(), noteProperties.getSummary().getPreviewLength(), now);
+            return reactiveMongoTemplate.findAndModify(NoteServiceImpl.byIdAndVersion(note.getId(), patientId, note.getVersion()), update,
+                            FindAndModifyOptions.options().returnNew(false), Note.class)
+                    .switchIfEmpty(versionConflict(note.getId(), patientId, note.getVersion()))
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(previousNote -> {
+                        Note updatedNote = NoteServiceImpl.updatedCopy(previousNote, note.getComment(), now);
+                        eventPublisher.publishEvent(new NoteChangedEvent(previousNote, updatedNote));
+                        return updatedNote;
+                    });
+        });
+    }
+
+    /**
+     * Delete a note from its id in a single round trip.
+     *
+     * @param id              The id of the note to delete.
+     * @param patientId       Patient of the note, routes the delete to the shard of the note when the notes are sharded, null if unknown.
+     * @param expectedVersion The version the note must have to be deleted, null to delete it whatever its version.
+     * @return True if the note has been deleted, false if it does not exist, or a {@link NoteVersionConflictException} error
+     * if the note is no longer at the expected version.
+     */
+    @Override
+    public Mono<Boolean> deleteNoteById(String id, Integer patientId, Long expectedVersion) {
+        LOGGER.info("[REACTIVE SERVICE]-> call method : deleteNoteById [PARAM]-> id = {} [PARAM]-> patientId = {} [PARAM]-> expectedVersion = {}",
+                id, patientId, expectedVersion);
+        return routed(id, patientId, shardKey -> reactiveMongoTemplate.findAndRemove(NoteServiceImpl.byIdAndVersion(id, shardKey, expectedVersion), Note.class)
+                        .switchIfEmpty(versionConflict(id, shardKey, expectedVersion))
+                        .flatMap(previousNote -> reactiveMongoTemplate.save(new NoteTombstone(previousNote.getId(), previousNote.getPatientId(), new Date()))
+                                .thenReturn(previousNote))
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(previousNote -> {
+                            eventPublisher.publishEvent(new NoteChangedEvent(previousNote, null));
+                            return true;
+                        }))
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Runs a write of a note with the patient routing it, see {@link NoteServiceImpl#updateNote(Note)}:
+     * null if the notes are not sharded, else the given patient, or the patient read from the note.
+     *
+     * @return The result of the write, empty without writing if the notes are sharded and the note does not exist.
+     */
+    private <T> Mono<T> routed(String id, Integer patientId, Function<Integer, Mono<T>> write) {
+        if (!noteProperties.getSharding().isEnabled()) {
+            return write.apply(null);
+        }
+        if (patientId != null) {
+            return write.apply(patientId);
+        }
+        return reactiveMongoTemplate.findOne(NoteServiceImpl.patientQuery(id), Document.class, reactiveMongoTemplate.getCollectionName(Note.class))
+                .mapNotNull(NoteServiceImpl::patientIdOf)
+                .flatMap(write);
+    }
+
+    /**
+     * Only subscribed when a conditional write matched nothing: completes empty if the note does not exist,
+     * fails with a conflict if it exists at another version.
+     */
+    private Mono<Note> versionConflict(String id, Integer patientId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return reactiveMongoTemplate.exists(NoteServiceImpl.byIdAndVersion(id, patientId, null), Note.class)
+                .flatMap(exists -> exists ? Mono.error(new NoteVersionConflictException(id, expectedVersion)) : Mono.empty());
+    }
+}
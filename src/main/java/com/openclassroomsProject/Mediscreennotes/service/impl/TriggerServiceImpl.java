@@ -0,0 +1,145 @@
+package com.openclassroomsProject.Mediscreennotes.service.impl;
+
+import com.openclassroomsProject.Mediscreennotes.config.TriggerProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerIndexCheckpoint;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerReport;
+import com.openclassroomsProject.Mediscreennotes.service.ITriggerService;
+import com.openclassroomsProject.Mediscreennotes.trigger.PatientTriggerIndex;
+import com.openclassroomsProject.Mediscreennotes.trigger.TriggerIndexRebuildJob;
+import com.openclassroomsProject.Mediscreennotes.trigger.TriggerMatcherProvider;
+import com.openclassroomsProject.Mediscreennotes.trigger.TriggerTermMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Service
+public class TriggerServiceImpl implements ITriggerService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerServiceImpl.class);
+
+    @Autowired
+    private TriggerMatcherProvider matcherProvider;
+
+    @Autowired
+    private PatientTriggerIndex patientTriggerIndex;
+
+    @Autowired
+    private TriggerIndexRebuildJob triggerIndexRebuildJob;
+
+    @Autowired
+    private TriggerProperties triggerProperties;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Count the trigger terms found in all the notes of a patient.
+     * The counts are read from the trigger index, the notes are only scanned if the patient is not indexed yet.
+     *
+     * @param patientId Patient identifier.
+     * @return The number of occurrences of each configured trigger term, zero included.
+     */
+    @Override
+    public TriggerReport countTriggersByPatientId(Integer patientId) {
+        LOGGER.info("[SERVICE]-> call method : countTriggersByPatientId [PARAM]-> patientId = {}", patientId);
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        long[] counts = patientTriggerIndex.findCounts(patientId, matcher)
+                .orElseGet(() -> patientTriggerIndex.indexPatient(patientId, matcher));
+        return new TriggerReport(patientId, toMap(matcher.getTerms(), counts));
+    }
+
+    /**
+     * Count the trigger terms of several patients.
+     * Patients are processed by chunks : the indexed counts of a chunk are read with one query,
+     * and the notes of its patients that are not indexed yet with one more query.
+     *
+     * @param patientIds Patient identifiers.
+     * @return A lazy stream of reports, one per patient, in the order of the given identifiers.
+     */
+    @Override
+    public Stream<TriggerReport> countTriggersByPatientIds(List<Integer> patientIds) {
+        LOGGER.info("[SERVICE]-> call method : countTriggersByPatientIds [PARAM]-> patients = {}", patientIds.size());
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        List<Integer> distinctIds = patientIds.stream().filter(Objects::nonNull).distinct().toList();
+        int chunkSize = Math.max(1, triggerProperties.getBatchChunkSize());
+        return IntStream.range(0, (distinctIds.size() + chunkSize - 1) / chunkSize)
+                .mapToObj(chunk -> distinctIds.subList(chunk * chunkSize, Math.min(distinctIds.size(), (chunk + 1) * chunkSize)))
+                .flatMap(chunk -> countChunk(chunk, matcher).stream());
+    }
+
+    /**
+     * Count the trigger terms of the patients having notes, in an inclusive range of patient identifiers.
+     *
+     * @param fromPatientId First patient identifier of the range.
+     * @param toPatientId   Last patient identifier of the range.
+     * @return A lazy stream of reports, one per patient, in ascending patient identifier order.
+     */
+    @Override
+    public Stream<TriggerReport> countTriggersByPatientRange(Integer fromPatientId, Integer toPatientId) {
+        LOGGER.info("[SERVICE]-> call method : countTriggersByPatientRange [PARAM]-> fromPatientId = {} [PARAM]-> toPatientId = {}", fromPatientId, toPatientId);
+        List<Integer> patientIds = new ArrayList<>(mongoTemplate.findDistinct(
+                query(where("patientId").gte(fromPatientId).lte(toPatientId)), "patientId", Note.class, Integer.class));
+        patientIds.sort(null);
+        return countTriggersByPatientIds(patientIds);
+    }
+
+    private List<TriggerReport> countChunk(List<Integer> patientIds, TriggerTermMatcher matcher) {
+        Map<Integer, long[]> counts = new HashMap<>(patientTriggerIndex.findCounts(patientIds, matcher));
+        List<Integer> missingIds = patientIds.stream().filter(patientId -> !counts.containsKey(patientId)).toList();
+        if (!missingIds.isEmpty()) {
+            counts.putAll(patientTriggerIndex.indexPatients(missingIds, matcher));
+        }
+        List<TriggerReport> reports = new ArrayList<>(patientIds.size());
+        for (Integer patientId : patientIds) {
+            reports.add(new TriggerReport(patientId, toMap(matcher.getTerms(), counts.get(patientId))));
+        }
+        return reports;
+    }
+
+    /**
+     * Start or resume the rebuild of the trigger index of all patients.
+     *
+     * @return The progress of the rebuild.
+     */
+    @Override
+    public TriggerIndexCheckpoint rebuildTriggerIndex() {
+        LOGGER.info("[SERVICE]-> call method : rebuildTriggerIndex");
+        return triggerIndexRebuildJob.start();
+    }
+
+    /**
+     * Get the progress of the last rebuild of the trigger index.
+     *
+     * @return The progress of the rebuild.
+     */
+    @Override
+    public TriggerIndexCheckpoint getTriggerIndexRebuildStatus() {
+        LOGGER.info("[SERVICE]-> call method : getTriggerIndexRebuildStatus");
+        return triggerIndexRebuildJob.getStatus();
+    }
+
+    static Map<String, Long> toMap(List<String> terms, long[] counts) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int index = 0; index < terms.size(); index++) {
+            result.merge(terms.get(index), counts[index], Long::sum);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,526 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.openclassroomsProject.Mediscreennotes.config.TriggerProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.PatientTriggers;
+import com.openclassroomsProject.Mediscreennotes.repository.NoteRepository;
+import com.openclassroomsProject.Mediscreennotes.repository.projection.NoteCommentView;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Per-patient trigger term counts, stored in the patient_trigger collection.
+ * The counts are updated with the difference brought by each write, so reading them does not scan any comment.
+ * An entry only holds counts once they are complete (computed from all the notes of the patient),
+ * entries computed with another term list are ignored and computed again on read.
+ * <p>
+ * The counts computed from the notes must not lose a write running meanwhile, nor count it twice:
+ * <ul>
+ *     <li>every write increments the sequence of the entry, created empty if needed, and the computed counts are only
+ *     stored if the sequence has not changed since before the notes were read, otherwise they are computed again;</li>
+ *     <li>the entry lists the notes it counts with their version: the difference of a note already counted
+ *     at this version is skipped, a difference that does not follow the counted version of its note (writes applied
+ *     out of order) clears the counts, which are then computed again on read.</li>
+ * </ul>
+ * The list is bounded by mediscreen.triggers.max-counted-notes, to keep the entry far below the document size limit:
+ * the entry of a patient with more notes keeps its counts without the list, and a write to such a patient clears
+ * the counts instead of applying its difference, so they are computed again from the notes on the next read.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class PatientTriggerIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatientTriggerIndex.class);
+    static final String COLLECTION = "patient_trigger";
+    static final int MAX_INDEX_ATTEMPTS = 5;
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final String COUNTS = "counts";
+    private static final String TERMS_FINGERPRINT = "termsFingerprint";
+    private static final String SEQUENCE = "sequence";
+    private static final String NOTES = "notes";
+    private static final String NOTE_ID = "noteId";
+    private static final String VERSION = "version";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private TriggerMatcherProvider matcherProvider;
+
+    @Autowired
+    private TriggerProperties triggerProperties;
+
+    /**
+     * Reads the indexed counts of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @param matcher   The matcher of the current term list.
+     * @return The counts indexed like the matcher terms, empty if the patient is not indexed for this term list.
+     */
+    public Optional<long[]> findCounts(Integer patientId, TriggerTermMatcher matcher) {
+        PatientTriggers entry = findEntry(patientId);
+        if (entry == null || !matcher.getFingerprint().equals(entry.getTermsFingerprint())) {
+            return Optional.empty();
+        }
+        return Optional.of(fromDocument(entry.getCounts(), matcher.getTerms().size()));
+    }
+
+    /**
+     * Reads the indexed counts of several patients with one query.
+     *
+     * @param patientIds Patient identifiers.
+     * @param matcher    The matcher of the current term list.
+     * @return The counts of the patients indexed for this term list, keyed by patient identifier.
+     */
+    public Map<Integer, long[]> findCounts(Collection<Integer> patientIds, TriggerTermMatcher matcher) {
+        Map<Integer, long[]> result = new HashMap<>();
+        Query query = query(where("_id").in(patientIds).and(TERMS_FINGERPRINT).is(matcher.getFingerprint()));
+        query.fields().exclude(NOTES);
+        for (PatientTriggers entry : mongoTemplate.find(query, PatientTriggers.class)) {
+            result.put(entry.getPatientId(), fromDocument(entry.getCounts(), matcher.getTerms().size()));
+        }
+        return result;
+    }
+
+    /**
+     * Scans the notes of several patients, read with one query, and adds their missing or stale entries.
+     * The comments of each patient are matched in parallel. A patient written meanwhile is indexed again on its own.
+     *
+     * @param patientIds Patient identifiers.
+     * @param matcher    The matcher of the current term list.
+     * @return The counts of each patient, zero for patients without notes, keyed by patient identifier.
+     */
+    public Map<Integer, long[]> indexPatients(Collection<Integer> patientIds, TriggerTermMatcher matcher) {
+        // The sequences are read before the notes: a write of a note not read increments them
+        Map<Integer, Long> sequences = new HashMap<>();
+        Query entriesQuery = query(where("_id").in(patientIds));
+        entriesQuery.fields().include(SEQUENCE);
+        for (PatientTriggers entry : mongoTemplate.find(entriesQuery, PatientTriggers.class)) {
+            sequences.put(entry.getPatientId(), entry.getSequence());
+        }
+        Map<Integer, List<NoteCommentView>> notesByPatient = new HashMap<>();
+        patientIds.forEach(patientId -> notesByPatient.put(patientId, new ArrayList<>()));
+        Query notesQuery = query(where("patientId").in(patientIds)).with(Sort.by("patientId"));
+        notesQuery.fields().include("patientId", "comment", VERSION);
+        try (Stream<Note> notes = mongoTemplate.stream(notesQuery, Note.class)) {
+            notes.forEach(note -> notesByPatient.get(note.getPatientId()).add(new CountedComment(note)));
+        }
+        Map<Integer, CountedNotes> counted = new ConcurrentHashMap<>();
+        int maxCountedNotes = maxCountedNotes();
+        notesByPatient.entrySet().parallelStream()
+                .forEach(entry -> counted.put(entry.getKey(), count(entry.getValue(), matcher, maxCountedNotes)));
+        Map<Integer, long[]> result = new HashMap<>();
+        if (counted.isEmpty()) {
+            return result;
+        }
+        List<Integer> writtenIds = new ArrayList<>(counted.keySet());
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        for (Integer patientId : writtenIds) {
+            bulkOperations.upsert(atSequence(patientId, sequences.get(patientId)), countsUpdate(counted.get(patientId), matcher));
+            result.put(patientId, counted.get(patientId).counts);
+        }
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException exception) {
+            for (BulkWriteError error : exception.getErrors()) {
+                Integer patientId = writtenIds.get(error.getIndex());
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    LOGGER.warn("[TRIGGER]-> unable to index a patient [PARAM]-> patientId = {} [PARAM]-> error = {}", patientId, error.getMessage());
+                    continue;
+                }
+                // Written meanwhile: the counts read may miss the write
+                result.put(patientId, indexPatient(patientId, matcher));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scans the notes of a patient and adds its entry if it is missing or stale.
+     * An up-to-date entry written concurrently is kept.
+     *
+     * @param patientId Patient identifier.
+     * @param matcher   The matcher of the current term list.
+     * @return The counts indexed like the matcher terms.
+     */
+    public long[] indexPatient(Integer patientId, TriggerTermMatcher matcher) {
+        return index(patientId, matcher, true);
+    }
+
+    /**
+     * Scans the notes of a patient and replaces the counts of its entry.
+     *
+     * @param patientId Patient identifier.
+     * @param matcher   The matcher of the current term list.
+     */
+    public void reindexPatient(Integer patientId, TriggerTermMatcher matcher) {
+        index(patientId, matcher, false);
+    }
+
+    /**
+     * Computes the counts of a patient and stores them if the entry has not been written since the notes were read,
+     * otherwise computes them again. After {@link #MAX_INDEX_ATTEMPTS} the counts are returned without being stored.
+     *
+     * @param keepCurrent True to keep an entry up to date with the term list instead of computing it again.
+     */
+    private long[] index(Integer patientId, TriggerTermMatcher matcher, boolean keepCurrent) {
+        CountedNotes counted = null;
+        for (int attempt = 0; attempt < MAX_INDEX_ATTEMPTS; attempt++) {
+            PatientTriggers entry = findEntry(patientId);
+            if (keepCurrent && entry != null && matcher.getFingerprint().equals(entry.getTermsFingerprint())) {
+                return fromDocument(entry.getCounts(), matcher.getTerms().size());
+            }
+            counted = computeCounts(patientId, matcher);
+            try {
+                mongoTemplate.upsert(atSequence(patientId, entry == null ? null : entry.getSequence()), countsUpdate(counted, matcher), COLLECTION);
+                return counted.counts;
+            } catch (DuplicateKeyException exception) {
+                LOGGER.debug("[TRIGGER]-> patient written while indexed [PARAM]-> patientId = {}", patientId);
+            }
+        }
+        LOGGER.warn("[TRIGGER]-> patient written during each indexing attempt, counts not stored [PARAM]-> patientId = {}", patientId);
+        return counted.counts;
+    }
+
+    /**
+     * Applies the trigger counts difference of a write to the entries of the patients it touches.
+     * A failure clears the counts of the entries, which are then computed again on read.
+     *
+     * @param event The write.
+     */
+    @EventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        List<NoteDelta> deltas = new ArrayList<>(2);
+        try {
+            TriggerTermMatcher matcher = matcherProvider.getMatcher();
+            Note previous = event.getPrevious();
+            Note current = event.getCurrent();
+            if (previous != null && current != null && Objects.equals(previous.getPatientId(), current.getPatientId())) {
+                addDelta(deltas, previous, current, matcher);
+            } else {
+                addDelta(deltas, previous, null, matcher);
+                addDelta(deltas, null, current, matcher);
+            }
+            deltas.forEach(delta -> applyDelta(delta, matcher));
+        } catch (RuntimeException exception) {
+            LOGGER.error("[TRIGGER]-> unable to update the trigger index [PARAM]-> event = {}", event, exception);
+            deltas.forEach(delta -> clearCounts(delta.patientId));
+        }
+    }
+
+    /**
+     * Adds the trigger counts of a batch of inserted notes to the entries of their patients, with one bulk write.
+     * The notes that bulk write did not apply are checked one by one.
+     * A failure clears the counts of the entries, which are then computed again on read.
+     *
+     * @param event The bulk insert.
+     */
+    @EventListener
+    public void onNotesInserted(NotesInsertedEvent event) {
+        List<NoteDelta> deltas = new ArrayList<>(event.getNotes().size());
+        try {
+            TriggerTermMatcher matcher = matcherProvider.getMatcher();
+            event.getNotes().forEach(note -> addDelta(deltas, null, note, matcher));
+            if (deltas.isEmpty()) {
+                return;
+            }
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+            int maxCountedNotes = maxCountedNotes();
+            deltas.forEach(delta -> bulkOperations.updateOne(delta.entryQuery(matcher, maxCountedNotes), delta.update()));
+            if (bulkOperations.execute().getMatchedCount() < deltas.size()) {
+                deltas.forEach(this::reconcile);
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.error("[TRIGGER]-> unable to update the trigger index [PARAM]-> event = {}", event, exception);
+            deltas.forEach(delta -> clearCounts(delta.patientId));
+        }
+    }
+
+    /**
+     * Reads the notes of a patient and computes its counts.
+     *
+     * @return The counts and the notes counted.
+     */
+    CountedNotes computeCounts(Integer patientId, TriggerTermMatcher matcher) {
+        return count(noteRepository.findCommentsByPatientId(patientId), matcher, maxCountedNotes());
+    }
+
+    /**
+     * @param maxCountedNotes Maximum number of notes listed by the entry, none are listed if the patient has more.
+     */
+    private static CountedNotes count(List<? extends NoteCommentView> notes, TriggerTermMatcher matcher, int maxCountedNotes) {
+        long[] counts = new long[matcher.getTerms().size()];
+        List<Document> countedNotes = notes.size() > maxCountedNotes ? null : new ArrayList<>(notes.size());
+        for (NoteCommentView note : notes) {
+            matcher.accumulate(note.getComment(), counts);
+            if (countedNotes != null) {
+                countedNotes.add(countedNote(note.getId(), versionOf(note.getVersion())));
+            }
+        }
+        return new CountedNotes(counts, countedNotes);
+    }
+
+    /**
+     * @param sequence The sequence of the entry when the notes were read, null if it had none.
+     * @return The query of the entry, if it is still at this sequence.
+     */
+    private static Query atSequence(Integer patientId, Long sequence) {
+        Criteria criteria = where("_id").is(patientId);
+        return query(sequence == null ? criteria.and(SEQUENCE).exists(false) : criteria.and(SEQUENCE).is(sequence));
+    }
+
+    private static Update countsUpdate(CountedNotes counted, TriggerTermMatcher matcher) {
+        Update update = new Update()
+                .set(COUNTS, toDocument(counted.counts))
+                .set(TERMS_FINGERPRINT, matcher.getFingerprint())
+                .inc(SEQUENCE, 1);
+        return counted.notes == null ? update.unset(NOTES) : update.set(NOTES, counted.notes);
+    }
+
+    /**
+     * @return The maximum number of notes listed by an entry, at least one.
+     */
+    private int maxCountedNotes() {
+        return Math.max(1, triggerProperties.getMaxCountedNotes());
+    }
+
+    private PatientTriggers findEntry(Integer patientId) {
+        Query query = query(where("_id").is(patientId));
+        query.fields().exclude(NOTES);
+        return mongoTemplate.findOne(query, PatientTriggers.class);
+    }
+
+    private void addDelta(List<NoteDelta> deltas, Note previous, Note current, TriggerTermMatcher matcher) {
+        Note note = current != null ? current : previous;
+        if (note == null || note.getPatientId() == null) {
+            return;
+        }
+        long[] delta = current == null ? new long[matcher.getTerms().size()] : matcher.count(current.getComment());
+        if (previous != null) {
+            long[] previousCounts = matcher.count(previous.getComment());
+            for (int index = 0; index < delta.length; index++) {
+                delta[index] -= previousCounts[index];
+            }
+        }
+        deltas.add(new NoteDelta(note.getPatientId(), note.getId(),
+                previous == null ? null : versionOf(previous.getVersion()),
+                current == null ? null : versionOf(current.getVersion()), delta));
+    }
+
+    private void applyDelta(NoteDelta delta, TriggerTermMatcher matcher) {
+        if (mongoTemplate.updateFirst(delta.entryQuery(matcher, maxCountedNotes()), delta.update(), COLLECTION).getMatchedCount() == 0) {
+            reconcile(delta);
+        }
+    }
+
+    /**
+     * Called when a difference did not apply: increments the sequence of the entry, so that counts being computed
+     * from notes read before the write are not stored, and clears the counts if they do not include the write
+     * or if the entry does not list its notes (more notes than the bound, or the list is full).
+     */
+    private void reconcile(NoteDelta delta) {
+        Document entry = mongoTemplate.findAndModify(query(where("_id").is(delta.patientId)), new Update().inc(SEQUENCE, 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, COLLECTION);
+        if (entry == null || !matcherProvider.getMatcher().getFingerprint().equals(entry.getString(TERMS_FINGERPRINT))) {
+            return;
+        }
+        List<Document> countedNotes = entry.getList(NOTES, Document.class);
+        if (countedNotes == null) {
+            LOGGER.debug("[TRIGGER]-> notes not listed, counts cleared [PARAM]-> patientId = {}", delta.patientId);
+            clearCounts(delta.patientId);
+        } else if (!delta.isCountedIn(countedNotes)) {
+            if (delta.previousVersion == null && countedNotes.size() >= maxCountedNotes()) {
+                LOGGER.debug("[TRIGGER]-> counted notes list full, counts cleared [PARAM]-> patientId = {}", delta.patientId);
+            } else {
+                LOGGER.warn("[TRIGGER]-> write applied out of order, counts cleared [PARAM]-> patientId = {} [PARAM]-> noteId = {}",
+                        delta.patientId, delta.noteId);
+            }
+            clearCounts(delta.patientId);
+        }
+    }
+
+    /**
+     * Clears the counts of a patient, which are then computed again on read. The entry is kept, with its sequence.
+     */
+    private void clearCounts(Integer patientId) {
+        try {
+            mongoTemplate.updateFirst(query(where("_id").is(patientId)),
+                    new Update().unset(COUNTS).unset(TERMS_FINGERPRINT).unset(NOTES).inc(SEQUENCE, 1), COLLECTION);
+        } catch (RuntimeException exception) {
+            LOGGER.error("[TRIGGER]-> unable to clear the trigger index entry [PARAM]-> patientId = {}", patientId, exception);
+        }
+    }
+
+    private static Document countedNote(String noteId, long version) {
+        return new Document(NOTE_ID, noteId).append(VERSION, version);
+    }
+
+    /**
+     * Notes written before versioning have no version and are considered at version 0.
+     */
+    private static long versionOf(Long version) {
+        return version == null ? 0 : version;
+    }
+
+    static Map<String, Long> toDocument(long[] counts) {
+        Map<String, Long> document = new HashMap<>();
+        for (int index = 0; index < counts.length; index++) {
+            document.put(String.valueOf(index), counts[index]);
+        }
+        return document;
+    }
+
+    static long[] fromDocument(Map<String, Long> document, int size) {
+        long[] counts = new long[size];
+        if (document != null) {
+            for (int index = 0; index < size; index++) {
+                Number count = document.get(String.valueOf(index));
+                counts[index] = count == null ? 0 : count.longValue();
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts computed from the notes of a patient, with the notes counted.
+     */
+    static final class CountedNotes {
+
+        final long[] counts;
+        /**
+         * Null if the patient has more notes than the entry lists.
+         */
+        final List<Document> notes;
+
+        CountedNotes(long[] counts, List<Document> notes) {
+            this.counts = counts;
+            this.notes = notes;
+        }
+    }
+
+    /**
+     * Comment of a note read by the batch query.
+     */
+    private static final class CountedComment implements NoteCommentView {
+
+        private final Note note;
+
+        CountedComment(Note note) {
+            this.note = note;
+        }
+
+        @Override
+        public String getId() {
+            return note.getId();
+        }
+
+        @Override
+        public String getComment() {
+            return note.getComment();
+        }
+
+        @Override
+        public Long getVersion() {
+            return note.getVersion();
+        }
+    }
+
+    /**
+     * Counts difference brought by the write of a note, from its previous version (null if created)
+     * to its current version (null if deleted).
+     */
+    private static final class NoteDelta {
+
+        final Integer patientId;
+        final String noteId;
+        final Long previousVersion;
+        final Long currentVersion;
+        final long[] counts;
+
+        NoteDelta(Integer patientId, String noteId, Long previousVersion, Long currentVersion, long[] counts) {
+            this.patientId = patientId;
+            this.noteId = noteId;
+            this.previousVersion = previousVersion;
+            this.currentVersion = currentVersion;
+            this.counts = counts;
+        }
+
+        /**
+         * @param maxCountedNotes Maximum number of notes listed by an entry.
+         * @return The query of the entry, if it is up to date with the term list and counts the note at its previous version,
+         * or does not count a created note and has room to list it.
+         */
+        Query entryQuery(TriggerTermMatcher matcher, int maxCountedNotes) {
+            Criteria criteria = where("_id").is(patientId).and(TERMS_FINGERPRINT).is(matcher.getFingerprint());
+            if (previousVersion == null) {
+                criteria = criteria.and(NOTES).exists(true).and(NOTES + "." + NOTE_ID).ne(noteId)
+                        .and(NOTES + "." + (maxCountedNotes - 1)).exists(false);
+            } else {
+                criteria = criteria.and(NOTES).elemMatch(where(NOTE_ID).is(noteId).and(VERSION).is(previousVersion));
+            }
+            return query(criteria);
+        }
+
+        Update update() {
+            Update update = new Update().inc(SEQUENCE, 1);
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] != 0) {
+                    update.inc(COUNTS + "." + index, counts[index]);
+                }
+            }
+            if (previousVersion == null) {
+                update.push(NOTES, countedNote(noteId, currentVersion));
+            } else if (currentVersion == null) {
+                update.pull(NOTES, new Document(NOTE_ID, noteId));
+            } else {
+                update.set(NOTES + ".$." + VERSION, currentVersion);
+            }
+            return update;
+        }
+
+        /**
+         * @param notes The notes counted by the entry.
+         * @return True if the entry already counts the note at its current version or a later one, or no longer counts it if deleted.
+         */
+        boolean isCountedIn(List<Document> notes) {
+            for (Document note : notes) {
+                if (noteId.equals(note.getString(NOTE_ID))) {
+                    return currentVersion != null && ((Number) note.get(VERSION)).longValue() >= currentVersion;
+                }
+            }
+            return currentVersion == null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import com.openclassroomsProject.Mediscreennotes.config.TriggerProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerIndexCheckpoint;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds the trigger index of all patients, by batches of patients processed in parallel.
+ * The last indexed patient is saved after each batch : a stopped job resumes where it stopped,
+ * at startup or when it is started again, unless the term list has changed in between.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class TriggerIndexRebuildJob implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerIndexRebuildJob.class);
+    static final String CHECKPOINT_ID = "patient_trigger_rebuild";
+    private static final String PATIENT_INDEX = "patientId_id";
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PatientTriggerIndex patientTriggerIndex;
+
+    @Autowired
+    private TriggerMatcherProvider matcherProvider;
+
+    @Autowired
+    private TriggerProperties triggerProperties;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trigger-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Starts the job in background, or resumes it if a previous run did not complete.
+     * Does nothing if the job is already running.
+     *
+     * @return The progress of the job.
+     */
+    public TriggerIndexCheckpoint start() {
+        if (running.compareAndSet(false, true)) {
+            runner.execute(() -> {
+                try {
+                    run();
+                } catch (RuntimeException exception) {
+                    LOGGER.error("[TRIGGER]-> trigger index rebuild stopped", exception);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+        return getStatus();
+    }
+
+    /**
+     * @return The progress of the last run of the job.
+     */
+    public TriggerIndexCheckpoint getStatus() {
+        TriggerIndexCheckpoint checkpoint = loadCheckpoint();
+        checkpoint.setRunning(running.get());
+        return checkpoint;
+    }
+
+    /**
+     * Resumes at startup a run that was stopped before its end.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRun() {
+        TriggerIndexCheckpoint checkpoint = mongoTemplate.findById(CHECKPOINT_ID, TriggerIndexCheckpoint.class);
+        if (checkpoint != null && !checkpoint.isCompleted()) {
+            LOGGER.info("[TRIGGER]-> resume trigger index rebuild [PARAM]-> checkpoint = {}", checkpoint);
+            start();
+        }
+    }
+
+    void run() {
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        TriggerIndexCheckpoint checkpoint = loadCheckpoint();
+        if (!matcher.getFingerprint().equals(checkpoint.getTermsFingerprint())) {
+            checkpoint = new TriggerIndexCheckpoint(CHECKPOINT_ID);
+            checkpoint.setTermsFingerprint(matcher.getFingerprint());
+        } else if (checkpoint.isCompleted()) {
+            checkpoint.setLastPatientId(null);
+            checkpoint.setProcessedPatients(0);
+            checkpoint.setCompleted(false);
+        }
+        LOGGER.info("[TRIGGER]-> trigger index rebuild started [PARAM]-> checkpoint = {}", checkpoint);
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, triggerProperties.getRebuildParallelism()));
+        try {
+            List<Integer> batch = nextBatch(checkpoint.getLastPatientId());
+            while (!batch.isEmpty()) {
+                List<Callable<Void>> tasks = new ArrayList<>(batch.size());
+                for (Integer patientId : batch) {
+                    tasks.add(() -> {
+                        patientTriggerIndex.reindexPatient(patientId, matcher);
+                        return null;
+                    });
+                }
+                for (Future<Void> result : workers.invokeAll(tasks)) {
+                    result.get();
+                }
+                checkpoint.setLastPatientId(batch.get(batch.size() - 1));
+                checkpoint.setProcessedPatients(checkpoint.getProcessedPatients() + batch.size());
+                mongoTemplate.save(checkpoint);
+                batch = nextBatch(checkpoint.getLastPatientId());
+            }
+            checkpoint.setCompleted(true);
+            mongoTemplate.save(checkpoint);
+            LOGGER.info("[TRIGGER]-> trigger index rebuild completed [PARAM]-> checkpoint = {}", checkpoint);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("[TRIGGER]-> trigger index rebuild interrupted [PARAM]-> checkpoint = {}", checkpoint);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Unable to index a batch after patient " + checkpoint.getLastPatientId(), exception.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the next patient identifiers having notes, in ascending order.
+     * The patient ids are read from the {patientId, _id} index only, from the last indexed patient on,
+     * until the batch is full: a batch only reads the index keys of its own patients.
+     *
+     * @param lastPatientId The last indexed patient, null to start from the first one.
+     * @return The patient identifiers of the batch.
+     */
+    private List<Integer> nextBatch(Integer lastPatientId) {
+        Criteria criteria = lastPatientId == null ? Criteria.where("patientId").gte(Integer.MIN_VALUE) : Criteria.where("patientId").gt(lastPatientId);
+        Query query = Query.query(criteria).with(Sort.by("patientId")).withHint(PATIENT_INDEX).cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.fields().include("patientId").exclude("_id");
+        int batchSize = Math.max(1, triggerProperties.getRebuildBatchSize());
+        List<Integer> batch = new ArrayList<>(batchSize);
+        try (Stream<Document> keys = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(Note.class))) {
+            Iterator<Document> iterator = keys.iterator();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                Integer patientId = iterator.next().getInteger("patientId");
+                if (batch.isEmpty() || !batch.get(batch.size() - 1).equals(patientId)) {
+                    batch.add(patientId);
+                }
+            }
+        }
+        return batch;
+    }
+
+    private TriggerIndexCheckpoint loadCheckpoint() {
+        TriggerIndexCheckpoint checkpoint = mongoTemplate.findById(CHECKPOINT_ID, TriggerIndexCheckpoint.class);
+        return checkpoint == null ? new TriggerIndexCheckpoint(CHECKPOINT_ID) : checkpoint;
+    }
+
+    @Override
+    public void destroy() {
+        runner.shutdownNow();
+    }
+}
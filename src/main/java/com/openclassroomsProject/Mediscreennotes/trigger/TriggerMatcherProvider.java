@@ -0,0 +1,47 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import com.openclassroomsProject.Mediscreennotes.config.TriggerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * Holds the matcher of the configured trigger terms.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class TriggerMatcherProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerMatcherProvider.class);
+
+    @Autowired
+    private TriggerProperties triggerProperties;
+
+    private volatile TriggerTermMatcher matcher;
+
+    /**
+     * Returns the matcher of the configured terms.
+     * The automaton is only compiled again when the configured term list changes.
+     *
+     * @return The matcher of the current term list.
+     */
+    public TriggerTermMatcher getMatcher() {
+        List<String> terms = triggerProperties.getTerms();
+        TriggerTermMatcher currentMatcher = matcher;
+        if (currentMatcher == null || !currentMatcher.getTerms().equals(terms)) {
+            synchronized (this) {
+                currentMatcher = matcher;
+                if (currentMatcher == null || !currentMatcher.getTerms().equals(terms)) {
+                    LOGGER.info("[TRIGGER]-> compile trigger terms matcher [PARAM]-> terms = {}", terms);
+                    currentMatcher = TriggerTermMatcher.compile(terms);
+                    matcher = currentMatcher;
+                }
+            }
+        }
+        return currentMatcher;
+    }
+}
@@ -0,0 +1,223 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Multi-pattern matcher (Aho-Corasick automaton) counting the trigger terms found in a text.
+ * Terms and texts are folded (case, accents and whitespace insensitive) and a term only matches whole words.
+ * An instance is immutable and can be shared between threads.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+public final class TriggerTermMatcher {
+
+    private final List<String> terms;
+    private final String fingerprint;
+    private final int[] termLengths;
+    private final int[] charIndex;
+    private final int[][] transitions;
+    private final int[][] outputs;
+
+    private TriggerTermMatcher(List<String> terms, int[] termLengths, int[] charIndex, int[][] transitions, int[][] outputs) {
+        this.terms = terms;
+        this.fingerprint = fingerprint(terms);
+        this.termLengths = termLengths;
+        this.charIndex = charIndex;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Builds the automaton of the given terms.
+     *
+     * @param terms The trigger terms, blank terms are never matched.
+     * @return The compiled matcher.
+     */
+    public static TriggerTermMatcher compile(List<String> terms) {
+        List<String> termList = List.copyOf(terms);
+        int[] termLengths = new int[termList.size()];
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> terminals = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminals.add(new ArrayList<>());
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (int termIndex = 0; termIndex < termList.size(); termIndex++) {
+            String folded = fold(termList.get(termIndex)).trim();
+            termLengths[termIndex] = folded.length();
+            if (folded.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int position = 0; position < folded.length(); position++) {
+                char character = folded.charAt(position);
+                alphabet.add(character);
+                Integer next = children.get(state).get(character);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(character, next);
+                    children.add(new HashMap<>());
+                    terminals.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            terminals.get(state).add(termIndex);
+        }
+
+        int[] charIndex = new int[alphabet.isEmpty() ? 0 : alphabet.last() + 1];
+        Arrays.fill(charIndex, -1);
+        char[] symbols = new char[alphabet.size()];
+        int symbolIndex = 0;
+        for (Character character : alphabet) {
+            charIndex[character] = symbolIndex;
+            symbols[symbolIndex++] = character;
+        }
+
+        int stateCount = children.size();
+        int[][] transitions = new int[stateCount][symbols.length];
+        int[] failures = new int[stateCount];
+        int[][] outputs = new int[stateCount][];
+        outputs[0] = new int[0];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < symbols.length; symbol++) {
+            Integer child = children.get(0).get(symbols[symbol]);
+            if (child != null) {
+                transitions[0][symbol] = child;
+                failures[child] = 0;
+                outputs[child] = toArray(terminals.get(child), outputs[0]);
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int symbol = 0; symbol < symbols.length; symbol++) {
+                Integer child = children.get(state).get(symbols[symbol]);
+                if (child != null) {
+                    int failure = transitions[failures[state]][symbol];
+                    failures[child] = failure;
+                    outputs[child] = toArray(terminals.get(child), outputs[failure]);
+                    transitions[state][symbol] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state][symbol] = transitions[failures[state]][symbol];
+                }
+            }
+        }
+        return new TriggerTermMatcher(termList, termLengths, charIndex, transitions, outputs);
+    }
+
+    /**
+     * @return The terms this matcher was compiled from, in their configured order.
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * @return A digest of the term list, identifying data computed with this matcher.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Counts the occurrences of each term in a text.
+     *
+     * @param text The text to scan, may be null.
+     * @return The number of occurrences, indexed like {@link #getTerms()}.
+     */
+    public long[] count(String text) {
+        long[] counts = new long[terms.size()];
+        accumulate(text, counts);
+        return counts;
+    }
+
+    /**
+     * Adds the occurrences of each term in a text to the given counters.
+     *
+     * @param text   The text to scan, may be null.
+     * @param counts The counters, indexed like {@link #getTerms()}.
+     */
+    public void accumulate(String text, long[] counts) {
+        if (text == null || text.isEmpty() || transitions.length == 1) {
+            return;
+        }
+        String folded = fold(text);
+        int state = 0;
+        for (int position = 0; position < folded.length(); position++) {
+            char character = folded.charAt(position);
+            int symbol = character < charIndex.length ? charIndex[character] : -1;
+            state = symbol < 0 ? 0 : transitions[state][symbol];
+            for (int termIndex : outputs[state]) {
+                int start = position - termLengths[termIndex] + 1;
+                if (isBoundary(folded, start - 1) && isBoundary(folded, position + 1)) {
+                    counts[termIndex]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Folds a text for matching : accents removed, lower case and whitespace runs collapsed to one space.
+     *
+     * @param text The text to fold.
+     * @return The folded text.
+     */
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean previousIsSpace = false;
+        for (int position = 0; position < decomposed.length(); position++) {
+            char character = decomposed.charAt(position);
+            if (Character.getType(character) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(character)) {
+                if (!previousIsSpace) {
+                    folded.append(' ');
+                }
+                previousIsSpace = true;
+            } else {
+                folded.append(Character.toLowerCase(character));
+                previousIsSpace = false;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static String fingerprint(List<String> terms) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String term : terms) {
+                digest.update(term.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static boolean isBoundary(String text, int position) {
+        return position < 0 || position >= text.length() || !Character.isLetterOrDigit(text.charAt(position));
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int index = 0; index < own.size(); index++) {
+            merged[inherited.length + index] = own.get(index);
+        }
+        return merged;
+    }
+}
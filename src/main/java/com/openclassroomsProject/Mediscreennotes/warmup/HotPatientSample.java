@@ -0,0 +1,55 @@
+package com.openclassroomsProject.Mediscreennotes.warmup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import org.springframework.stereotype.Component;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the reads of the patient lists sent by the clients, to record the patients read the most for the warm-up
+ * of the next start. The reads of the warm-up itself are not counted: the patients it warms up would otherwise
+ * be recorded again whatever the clients read. The counters are bounded to ten times the patients warmed up,
+ * the patients read the least being dropped first.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+public class HotPatientSample {
+
+    private final Cache<Integer, LongAdder> reads;
+
+    public HotPatientSample(NoteProperties noteProperties) {
+        this.reads = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, 10L * noteProperties.getWarmUp().getPatients()))
+                .build();
+    }
+
+    /**
+     * Counts a read of the notes of a patient.
+     *
+     * @param patientId Patient identifier.
+     * @param warmUp    The value of the X-Warm-Up header of the request, null for the requests of the clients.
+     */
+    public void record(Integer patientId, String warmUp) {
+        if (patientId != null && warmUp == null) {
+            reads.get(patientId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @param limit Maximum number of patients.
+     * @return The patients read the most by the clients, the most read first.
+     */
+    public List<Integer> getHottestPatients(int limit) {
+        return reads.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Integer, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(Math.max(0, limit))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,269 @@
+package com.openclassroomsProject.Mediscreennotes.warmup;
+
+import com.mongodb.client.model.ReplaceOptions;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.WarmUpStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Warms the application up at startup, before it is reported ready (mediscreen.notes.warm-up).
+ * Boot reports the readiness once the application runners are done, this one runs last:
+ * <ul>
+ *     <li>the notes of the patients read the most before the last stop, or else of the patients having the most notes,
+ *     are loaded from the primary into the patient notes cache, also when the patient lists are read from the secondaries,
+ *     filling the cache and the working set of the primary;</li>
+ *     <li>requests are then sent to the patient endpoints of the application, so that the request handling
+ *     and the serialization of the notes are compiled by the JIT before the first clients arrive.</li>
+ * </ul>
+ * The warm-up requests carry the X-Warm-Up header, they are left out of the HTTP metrics.
+ * The warm-up stops at max-duration, where it is. Its progress is exposed by the warmup actuator endpoint.
+ * The patients read the most by the clients are recorded when the application stops, see {@link HotPatientSample}.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class NoteWarmUp implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoteWarmUp.class);
+    public static final String WARM_UP_HEADER = "X-Warm-Up";
+    static final String SAMPLE_COLLECTION = "warmup_sample";
+    static final String SAMPLE_ID = "patient_notes";
+    static final String PATIENT_IDS = "patientIds";
+    static final String RECORDED = "RECORDED";
+    static final String MOST_ACTIVE = "MOST_ACTIVE";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private HotPatientSample hotPatientSample;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private Environment environment;
+
+    private final AtomicInteger warmedPatients = new AtomicInteger();
+    private final AtomicInteger sentRequests = new AtomicInteger();
+    private final AtomicInteger failedRequests = new AtomicInteger();
+    private volatile String phase = "PENDING";
+    private volatile String patientSource;
+    private volatile int patients;
+    private volatile int requests;
+    private volatile Date startedAt;
+    private volatile Date completedAt;
+    private volatile boolean timedOut;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        NoteProperties.WarmUp warmUp = noteProperties.getWarmUp();
+        if (!warmUp.isEnabled()) {
+            phase = "DISABLED";
+            return;
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        warmedPatients.set(0);
+        sentRequests.set(0);
+        failedRequests.set(0);
+        startedAt = new Date();
+        completedAt = null;
+        long deadline = System.nanoTime() + warmUp.getMaxDuration().toNanos();
+        LOGGER.info("[STARTUP]-> warm-up started [PARAM]-> maxDuration = {}", warmUp.getMaxDuration());
+
+        phase = "PATIENTS";
+        List<Integer> patientIds = samplePatients(warmUp.getPatients(), deadline);
+        patients = patientIds.size();
+        boolean completed = runUntil(deadline, warmUp.getParallelism(), patientIds.size(), index -> {
+            noteService.loadPatientNotes(patientIds.get(index));
+            warmedPatients.incrementAndGet();
+        });
+
+        Integer port = environment.getProperty("local.server.port", Integer.class);
+        requests = port == null || patientIds.isEmpty() ? 0 : Math.max(0, warmUp.getRequests());
+        if (completed && requests > 0) {
+            phase = "REQUESTS";
+            completed = sendRequests(patientIds, port, warmUp.getParallelism(), deadline);
+        }
+        timedOut = !completed;
+        completedAt = new Date();
+        phase = "COMPLETED";
+        LOGGER.info("[STARTUP]-> warm-up completed [PARAM]-> status = {}", getStatus());
+    }
+
+    /**
+     * @return The progress of the warm-up.
+     */
+    public WarmUpStatus getStatus() {
+        WarmUpStatus status = new WarmUpStatus();
+        status.setPhase(phase);
+        status.setPatientSource(patientSource);
+        status.setPatients(patients);
+        status.setWarmedPatients(warmedPatients.get());
+        status.setRequests(requests);
+        status.setSentRequests(sentRequests.get());
+        status.setFailedRequests(failedRequests.get());
+        status.setStartedAt(startedAt);
+        status.setCompletedAt(completedAt);
+        status.setTimedOut(timedOut);
+        return status;
+    }
+
+    /**
+     * Records the patients read the most by the clients, for the warm-up of the next start.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void recordSample() {
+        List<Integer> hottest = hotPatientSample.getHottestPatients(noteProperties.getWarmUp().getPatients());
+        if (hottest.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.getCollection(SAMPLE_COLLECTION).replaceOne(new Document("_id", SAMPLE_ID),
+                    new Document("_id", SAMPLE_ID).append(PATIENT_IDS, hottest).append("savedAt", new Date()),
+                    new ReplaceOptions().upsert(true));
+            LOGGER.info("[STARTUP]-> warm-up sample recorded [PARAM]-> patients = {}", hottest.size());
+        } catch (RuntimeException exception) {
+            LOGGER.warn("[STARTUP]-> unable to record the warm-up sample", exception);
+        }
+    }
+
+    /**
+     * @return The patients recorded at the last stop, or else the patients having the most notes.
+     */
+    private List<Integer> samplePatients(int limit, long deadline) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        try {
+            Document sample = mongoTemplate.getCollection(SAMPLE_COLLECTION).find(new Document("_id", SAMPLE_ID)).first();
+            List<Integer> recorded = sample == null ? List.of() : sample.getList(PATIENT_IDS, Integer.class, List.of());
+            if (!recorded.isEmpty()) {
+                patientSource = RECORDED;
+                return recorded.subList(0, Math.min(limit, recorded.size()));
+            }
+            patientSource = MOST_ACTIVE;
+            Aggregation aggregation = Aggregation.newAggregation(
+                            Aggregation.match(Criteria.where("patientId").ne(null)),
+                            Aggregation.group("patientId").count().as("notes"),
+                            Aggregation.sort(Sort.Direction.DESC, "notes"),
+                            Aggregation.limit(limit))
+                    .withOptions(AggregationOptions.builder().allowDiskUse(true)
+                            .maxTime(Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadline - System.nanoTime()))).build());
+            List<Integer> mostActive = new ArrayList<>();
+            for (Document document : mongoTemplate.aggregate(aggregation, Note.class, Document.class).getMappedResults()) {
+                mostActive.add(document.getInteger("_id"));
+            }
+            return mostActive;
+        } catch (RuntimeException exception) {
+            LOGGER.warn("[STARTUP]-> unable to read the patients to warm up", exception);
+            return List.of();
+        }
+    }
+
+    /**
+     * Sends requests to the patient endpoints, the full list and the summaries alternately.
+     */
+    private boolean sendRequests(List<Integer> patientIds, int port, int parallelism, long deadline) {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        String baseUrl = "http://localhost:" + port + "/api/note/patient/";
+        return runUntil(deadline, parallelism, requests, index -> {
+            Integer patientId = patientIds.get(index % patientIds.size());
+            URI uri = URI.create(baseUrl + patientId + (index % 2 == 0 ? "" : "?view=summary"));
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).header(WARM_UP_HEADER, "true").GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 400) {
+                    failedRequests.incrementAndGet();
+                }
+            } catch (IOException exception) {
+                failedRequests.incrementAndGet();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            sentRequests.incrementAndGet();
+        });
+    }
+
+    /**
+     * Runs the tasks 0 to count - 1 on parallel workers, until they are done or the deadline is reached.
+     *
+     * @return true if every task was run before the deadline.
+     */
+    private static boolean runUntil(long deadline, int parallelism, int count, IntConsumer task) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean expired = new AtomicBoolean();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            for (int worker = 0; worker < Math.max(1, parallelism); worker++) {
+                workers.execute(() -> {
+                    for (int index = next.getAndIncrement(); index < count; index = next.getAndIncrement()) {
+                        if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                            expired.set(true);
+                            return;
+                        }
+                        try {
+                            task.accept(index);
+                        } catch (RuntimeException exception) {
+                            LOGGER.warn("[STARTUP]-> warm-up call failed", exception);
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) && !expired.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            // The calls in progress at the deadline end in background
+            workers.shutdownNow();
+        }
+    }
+}
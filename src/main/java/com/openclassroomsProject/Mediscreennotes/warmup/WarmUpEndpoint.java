@@ -0,0 +1,29 @@
+package com.openclassroomsProject.Mediscreennotes.warmup;
+
+import com.openclassroomsProject.Mediscreennotes.model.WarmUpStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint exposing the progress of the warm-up at startup (/actuator/warmup).
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+@Component
+@Endpoint(id = "warmup")
+public class WarmUpEndpoint {
+
+    @Autowired
+    private NoteWarmUp noteWarmUp;
+
+    /**
+     * @return The progress of the warm-up.
+     */
+    @ReadOperation
+    public WarmUpStatus warmUp() {
+        return noteWarmUp.getStatus();
+    }
+}
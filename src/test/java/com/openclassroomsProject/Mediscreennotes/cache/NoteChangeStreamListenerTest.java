@@ -0,0 +1,70 @@
+package com.openclassroomsProject.Mediscreennotes.cache;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.util.function.BooleanSupplier;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the change stream listener, against a single node replica set.
+ * Writes made directly in the database stand for the writes of another instance.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest(properties = "mediscreen.notes.change-stream.enabled=true")
+@Testcontainers
+class NoteChangeStreamListenerTest {
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @Test
+    @DisplayName("A note inserted by another instance evicts the cached patient")
+    void insert_whenNoteIsWrittenByAnotherInstance_thenCachedListIsRefreshed() throws InterruptedException {
+        noteService.createNote(new Note("1", 1, "test"));
+        assertEquals(1, noteService.getAllNotesByPatientId(1).size());
+        mongoTemplate.insert(new Note("2", 1, "test"));
+        assertTrue(waitUntil(() -> noteService.getAllNotesByPatientId(1).size() == 2));
+    }
+
+    @Test
+    @DisplayName("A note deleted by another instance evicts the cached patient")
+    void delete_whenNoteIsDeletedByAnotherInstance_thenCachedListIsRefreshed() throws InterruptedException {
+        noteService.createNote(new Note("3", 2, "test"));
+        noteService.createNote(new Note("4", 2, "test"));
+        assertEquals(2, noteService.getAllNotesByPatientId(2).size());
+        mongoTemplate.remove(mongoTemplate.findById("4", Note.class));
+        assertTrue(waitUntil(() -> noteService.getAllNotesByPatientId(2).size() == 1));
+    }
+
+    private static boolean waitUntil(BooleanSupplier condition) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
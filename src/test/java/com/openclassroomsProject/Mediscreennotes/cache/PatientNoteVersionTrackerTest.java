@@ -0,0 +1,82 @@
+package com.openclassroomsProject.Mediscreennotes.cache;
+
+import com.mongodb.ReadPreference;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the versions of the patient note lists.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest
+@Testcontainers
+class PatientNoteVersionTrackerTest {
+
+    @Autowired
+    private PatientNoteVersionTracker patientNoteVersionTracker;
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @BeforeEach
+    public void clearDatabase() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    @DisplayName("Reading the version of a patient without writes stores nothing and never matches")
+    void getVersion_whenPatientHasNoWrites_thenTheVersionIsNotStored() {
+        PatientNoteVersion first = patientNoteVersionTracker.getVersion(1);
+        PatientNoteVersion second = patientNoteVersionTracker.getVersion(1);
+        assertEquals(0L, first.getVersion());
+        assertNotEquals(PatientNoteVersionTracker.eTag(first), PatientNoteVersionTracker.eTag(second));
+        assertNull(mongoTemplate.findById(1, PatientNoteVersion.class));
+    }
+
+    @Test
+    @DisplayName("The first write of a patient creates its version, the next reads return it")
+    void getVersion_whenPatientIsWritten_thenTheVersionIsStoredByTheWrite() {
+        noteService.createNote(new Note("1", 2, "test"));
+        PatientNoteVersion stored = mongoTemplate.findById(2, PatientNoteVersion.class);
+        assertNotNull(stored);
+        assertEquals(1L, stored.getVersion());
+        String eTag = PatientNoteVersionTracker.eTag(patientNoteVersionTracker.getVersion(2));
+        assertEquals(eTag, PatientNoteVersionTracker.eTag(patientNoteVersionTracker.getVersion(2)));
+        noteService.createNote(new Note("2", 2, "test"));
+        assertNotEquals(eTag, PatientNoteVersionTracker.eTag(patientNoteVersionTracker.getVersion(2)));
+    }
+
+    @Test
+    @DisplayName("The version read like the notes of a secondary is the stored one and keeps the operation time of its read")
+    void getVersion_whenReadWithTheReadPreferenceOfTheNotes_thenTheOperationTimeIsKept() {
+        noteService.createNote(new Note("1", 3, "test"));
+        PatientNoteVersion version = patientNoteVersionTracker.getVersion(3, ReadPreference.secondaryPreferred(), null);
+        assertEquals(PatientNoteVersionTracker.eTag(patientNoteVersionTracker.getVersion(3)), PatientNoteVersionTracker.eTag(version));
+        assertNotNull(version.getReadAt());
+        assertNull(patientNoteVersionTracker.getVersion(3).getReadAt());
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CommentCompressionConverterTest {
+
+    @Spy
+    private NoteProperties noteProperties = new NoteProperties();
+
+    @Mock
+    private NoteMetrics noteMetrics;
+
+    @InjectMocks
+    private CommentCompressionConverter converter;
+
+    @Test
+    @DisplayName("A comment shorter than the threshold is stored as text")
+    void write_whenCommentIsShort_thenItIsStoredAsText() {
+        Object stored = converter.write("Patient states that they are feeling terrific", null);
+        assertEquals("Patient states that they are feeling terrific", stored);
+        assertEquals("Patient states that they are feeling terrific", converter.read(stored, null));
+        verify(noteMetrics).recordCommentWrite(45, 45);
+    }
+
+    @Test
+    @DisplayName("A long comment is stored compressed and read back unchanged")
+    void write_whenCommentIsLong_thenItIsStoredCompressedAndReadBack() {
+        String comment = "Lab report : Hémoglobine A1C 7,2 %, Microalbumin 35 mg/L, Cholesterol LDL 1,6 g/L\n".repeat(100);
+        Object stored = converter.write(comment, null);
+        Binary binary = assertInstanceOf(Binary.class, stored);
+        assertEquals(CommentCompressionConverter.DEFLATE_SUBTYPE, binary.getType());
+        assertTrue(binary.getData().length < comment.length() / 10);
+        assertEquals(comment, converter.read(stored, null));
+    }
+
+    @Test
+    @DisplayName("A long comment that does not shrink is stored as text")
+    void write_whenCommentDoesNotShrink_thenItIsStoredAsText() {
+        noteProperties.getCompression().setThreshold(4);
+        assertEquals("abcd", converter.write("abcd", null));
+    }
+
+    @Test
+    @DisplayName("A truncated compressed comment is rejected")
+    void read_whenBinaryIsTruncated_thenThrowAnException() {
+        byte[] compressed = CommentCompressionConverter.deflate("abcdefgh".repeat(200).getBytes(StandardCharsets.UTF_8), 6);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IllegalStateException.class, () -> converter.read(new Binary(CommentCompressionConverter.DEFLATE_SUBTYPE, truncated), null));
+    }
+}
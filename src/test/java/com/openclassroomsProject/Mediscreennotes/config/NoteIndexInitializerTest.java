@@ -0,0 +1,143 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.time.Duration;
+import java.util.Date;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the index creation and of the migrations run at startup.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest
+@Testcontainers
+class NoteIndexInitializerTest {
+
+    @Autowired
+    private NoteIndexInitializer noteIndexInitializer;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @Test
+    @DisplayName("The backfill of the modification dates runs once, then is recorded")
+    void run_whenBackfillIsRecorded_thenItDoesNotRunAgain() {
+        assertNotNull(migrations().find(new Document("_id", NoteIndexInitializer.UPDATED_AT_MIGRATION)).first());
+        ObjectId id = new ObjectId();
+        notes().insertOne(new Document("_id", id).append("patientId", 40).append("comment", "Written before the delta sync"));
+
+        noteIndexInitializer.run(null);
+        assertNull(notes().find(new Document("_id", id)).first().get("updatedAt"));
+
+        migrations().deleteOne(new Document("_id", NoteIndexInitializer.UPDATED_AT_MIGRATION));
+        noteIndexInitializer.run(null);
+        assertEquals(id.getDate(), notes().find(new Document("_id", id)).first().getDate("updatedAt"));
+        assertNotNull(migrations().find(new Document("_id", NoteIndexInitializer.UPDATED_AT_MIGRATION)).first());
+    }
+
+    @Test
+    @DisplayName("The patients written before the note list versions get a version once, the existing versions are kept")
+    void run_whenPatientHasNoVersion_thenItIsCreated() {
+        notes().insertOne(new Document("_id", new ObjectId()).append("patientId", 41).append("comment", "Written before the versions"));
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(PatientNoteVersion.class))
+                .insertOne(new Document("_id", 42).append("version", 5L).append("lastModified", new Date()).append("epoch", 1L));
+        notes().insertOne(new Document("_id", new ObjectId()).append("patientId", 42).append("comment", "Already versioned"));
+        migrations().deleteOne(new Document("_id", NoteIndexInitializer.PATIENT_NOTE_VERSION_MIGRATION));
+        noteIndexInitializer.run(null);
+        PatientNoteVersion created = mongoTemplate.findById(41, PatientNoteVersion.class);
+        assertNotNull(created);
+        assertEquals(0L, created.getVersion().longValue());
+        assertTrue(PatientNoteVersionTracker.isTracked(created));
+        assertEquals(5L, mongoTemplate.findById(42, PatientNoteVersion.class).getVersion().longValue());
+    }
+
+    @Test
+    @DisplayName("The notes written before the previews get the preview of their comment once per preview length")
+    void run_whenNoteHasNoPreview_thenItIsWritten() {
+        int previewLength = noteProperties.getSummary().getPreviewLength();
+        ObjectId id = new ObjectId();
+        notes().insertOne(new Document("_id", id).append("patientId", 43).append("comment", "x".repeat(previewLength + 10)));
+        migrations().deleteOne(new Document("_id", NoteIndexInitializer.PREVIEW_MIGRATION + previewLength));
+        noteIndexInitializer.run(null);
+        assertEquals("x".repeat(previewLength + 1), notes().find(new Document("_id", id)).first().getString("preview"));
+        assertNotNull(migrations().find(new Document("_id", NoteIndexInitializer.PREVIEW_MIGRATION + previewLength)).first());
+    }
+
+    @Test
+    @DisplayName("The startup fails if an index can not be created")
+    void run_whenAnIndexCanNotBeCreated_thenTheStartupFails() {
+        String collection = mongoTemplate.getCollectionName(Note.class);
+        mongoTemplate.getCollection(collection).dropIndex(NoteIndexInitializer.UPDATED_AT_INDEX);
+        // An index of the same name on other keys conflicts with the expected one
+        mongoTemplate.getCollection(collection).createIndex(new Document("updatedAt", -1),
+                new IndexOptions().name(NoteIndexInitializer.UPDATED_AT_INDEX));
+        try {
+            assertThrows(RuntimeException.class, () -> noteIndexInitializer.run(null));
+        } finally {
+            mongoTemplate.getCollection(collection).dropIndex(NoteIndexInitializer.UPDATED_AT_INDEX);
+            noteIndexInitializer.run(null);
+        }
+    }
+
+    @Test
+    @DisplayName("A changed tombstone retention is applied to the existing TTL index")
+    void run_whenTombstoneRetentionChanges_thenTheTtlIndexIsUpdated() {
+        Duration retention = noteProperties.getSync().getTombstoneRetention();
+        try {
+            noteProperties.getSync().setTombstoneRetention(Duration.ofDays(7));
+            noteIndexInitializer.run(null);
+            assertEquals(Duration.ofDays(7).toSeconds(), tombstoneTtl());
+        } finally {
+            noteProperties.getSync().setTombstoneRetention(retention);
+            noteIndexInitializer.run(null);
+        }
+        assertEquals(retention.toSeconds(), tombstoneTtl());
+    }
+
+    private long tombstoneTtl() {
+        for (Document index : mongoTemplate.getCollection(mongoTemplate.getCollectionName(NoteTombstone.class)).listIndexes()) {
+            if (NoteIndexInitializer.TOMBSTONE_TTL_INDEX.equals(index.getString("name"))) {
+                return index.get("expireAfterSeconds", Number.class).longValue();
+            }
+        }
+        throw new AssertionError("TTL index missing");
+    }
+
+    private MongoCollection<Document> notes() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class));
+    }
+
+    private MongoCollection<Document> migrations() {
+        return mongoTemplate.getCollection(NoteIndexInitializer.MIGRATION_COLLECTION);
+    }
+}
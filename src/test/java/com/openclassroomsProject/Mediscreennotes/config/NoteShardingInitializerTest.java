@@ -0,0 +1,90 @@
+package com.openclassroomsProject.Mediscreennotes.config;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import com.openclassroomsProject.Mediscreennotes.service.IReactiveNoteService;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.util.Objects;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the sharding of the notes, against a sharded cluster (mongos, config server and shard).
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest(properties = "mediscreen.notes.sharding.enabled=true")
+@Testcontainers
+class NoteShardingInitializerTest {
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private IReactiveNoteService reactiveNoteService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:7.0")).withSharding();
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @Test
+    @DisplayName("The note collection is sharded on the hashed patient id at startup")
+    void run_whenShardingIsEnabled_thenTheNoteCollectionIsSharded() {
+        String namespace = mongoTemplate.getDb().getName() + "." + mongoTemplate.getCollectionName(Note.class);
+        Document sharded = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("config").getCollection("collections")
+                .find(new Document("_id", namespace)).first();
+        assertNotNull(sharded);
+        assertEquals(NoteShardingInitializer.SHARD_KEY, sharded.get("key"));
+    }
+
+    @Test
+    @DisplayName("The writes of a note are routed by its patient")
+    void updateAndDelete_whenPatientIsGiven_thenTheNoteIsWritten() {
+        Note note = noteService.createNote(new Note(null, 7, "test"));
+        assertEquals("test", noteService.getNoteById(note.getId(), 7).orElseThrow().getComment());
+        assertTrue(noteService.getNoteById(note.getId(), 8).isEmpty());
+        assertEquals("updated", noteService.updateNote(new Note(note.getId(), 7, "updated")).orElseThrow().getComment());
+        assertEquals(1, noteService.getAllNotesByPatientId(7).size());
+        assertFalse(noteService.deleteNoteById(note.getId(), 8, null));
+        assertTrue(noteService.deleteNoteById(note.getId(), 7, null));
+        assertTrue(noteService.getNoteById(note.getId(), null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("The writes of a note without its patient read the patient of the note first")
+    void updateAndDelete_whenPatientIsNotGiven_thenTheNoteIsWritten() {
+        Note note = noteService.createNote(new Note(null, 9, "test"));
+        assertEquals("updated", noteService.updateNote(new Note(note.getId(), null, "updated")).orElseThrow().getComment());
+        assertEquals("updated", noteService.getNoteById(note.getId(), 9).orElseThrow().getComment());
+        assertTrue(noteService.updateNote(new Note("missing", null, "updated")).isEmpty());
+        assertTrue(noteService.deleteNoteById(note.getId(), null, null));
+        assertFalse(noteService.deleteNoteById(note.getId(), null, null));
+    }
+
+    @Test
+    @DisplayName("The reactive writes of a note without its patient read the patient of the note first")
+    void reactiveUpdateAndDelete_whenPatientIsNotGiven_thenTheNoteIsWritten() {
+        Note note = noteService.createNote(new Note(null, 10, "test"));
+        assertEquals("updated", Objects.requireNonNull(reactiveNoteService.updateNote(new Note(note.getId(), null, "updated")).block()).getComment());
+        assertNull(reactiveNoteService.updateNote(new Note("missing", null, "updated")).block());
+        assertEquals(Boolean.TRUE, reactiveNoteService.deleteNoteById(note.getId(), null, null).block());
+        assertEquals(Boolean.FALSE, reactiveNoteService.deleteNoteById(note.getId(), null, null).block());
+    }
+}
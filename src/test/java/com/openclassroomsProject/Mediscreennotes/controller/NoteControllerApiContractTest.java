@@ -0,0 +1,505 @@
+package com.openclassroomsProject.Mediscreennotes.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchHit;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerBatchRequest;
+import com.openclassroomsProject.Mediscreennotes.model.TriggerReport;
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.util.List;
+import java.util.Objects;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Contract of the note API, run against both web stacks : {@link NoteControllerApiTest} for the servlet stack
+ * and {@link ReactiveNoteControllerApiTest} for the reactive stack.
+ * The tests only go through HTTP, with a WebTestClient bound to the running server.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+abstract class NoteControllerApiContractTest {
+    protected static final String URI = "/api/note";
+
+    @Autowired
+    protected INoteService noteService;
+
+    @Autowired
+    protected WebTestClient webTestClient;
+
+    @Autowired
+    protected MongoTemplate mongoTemplate;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Container
+    protected static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    /**
+     * Allows to sets dynamic properties for MongoDB data source.
+     *
+     * @param registry The dynamic property registry.
+     */
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+        registry.add("mediscreen.notes.sync.visibility-lag", () -> "0s");
+        registry.add("mediscreen.notes.search.refresh-interval", () -> "0s");
+        registry.add("mediscreen.notes.export.path", () -> "build/test-note-export-api");
+        registry.add("mediscreen.notes.bulk.max-line-length", () -> "200");
+    }
+
+    /**
+     * Method executed before each test.
+     * Clean database.
+     */
+    @BeforeEach
+    public void clearDatabase() {
+        mongoTemplate.getDb().drop();
+    }
+
+    /**
+     * Tests if the MongoDB container is running.
+     */
+    @Test
+    @DisplayName("Container is running")
+    @Order(1)
+    void test() {
+        assertThat(MONGODB_CONTAINER.isRunning()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Get all notes when note exist")
+    @Order(2)
+    void getAllNotes_whenThereAreNotes_thenReturnTheCorrectList() {
+        noteService.createNote(new Note("1", 1, "test"));
+        noteService.createNote(new Note("2", 2, "test"));
+        webTestClient.get().uri(URI).accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Note.class).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Get all notes when notes does not exist")
+    @Order(3)
+    void getAllNotes_whenThereIsNoNotes_thenReturnNoContent() {
+        webTestClient.get().uri(URI).exchange()
+                .expectStatus().isNoContent()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Get all notes page by page")
+    @Order(3)
+    void getNotesPage_whenThereAreNotes_thenReturnEachPageWithItsCursor() {
+        noteService.createNote(new Note("1", 1, "test"));
+        noteService.createNote(new Note("2", 1, "test"));
+        noteService.createNote(new Note("3", 2, "test"));
+        String cursor = webTestClient.get().uri(URI + "?limit=2").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(NoteControllerApi.NEXT_CURSOR_HEADER)
+                .expectBodyList(Note.class).hasSize(2)
+                .returnResult().getResponseHeaders().getFirst(NoteControllerApi.NEXT_CURSOR_HEADER);
+        webTestClient.get().uri(URI + "?limit=2&after=" + cursor).exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(NoteControllerApi.NEXT_CURSOR_HEADER)
+                .expectBodyList(Note.class).value(notes -> assertThat(notes).extracting(Note::getId).containsExactly("3"));
+    }
+
+    @Test
+    @DisplayName("Get a page of notes with an invalid limit")
+    @Order(3)
+    void getNotesPage_whenLimitIsInvalid_thenReturnBadRequest() {
+        webTestClient.get().uri(URI + "?limit=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Get notes by patient id when notes exist")
+    @Order(4)
+    void getNotesByPatientId_whenNotesExist_thenReturnCorrectList() {
+        noteService.createNote(new Note("3", 3, "test"));
+        noteService.createNote(new Note("4", 3, "test"));
+        noteService.createNote(new Note("5", 3, "test"));
+        webTestClient.get().uri(URI + "/patient/3").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Note.class).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Get notes by patient id when notes does not exist")
+    @Order(5)
+    void getNotesByPatientId_whenThereIsNoNotes_thenReturnNoContent() {
+        webTestClient.get().uri(URI + "/patient/4").exchange()
+                .expectStatus().isNoContent()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Get notes by patient id with If-None-Match")
+    @Order(4)
+    void getNotesByPatientId_whenClientIsCurrent_thenReturnNotModifiedUntilTheNextWrite() {
+        noteService.createNote(new Note("1", 30, "test"));
+        HttpHeaders first = webTestClient.get().uri(URI + "/patient/30").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .expectBody().returnResult().getResponseHeaders();
+        String eTag = first.getETag();
+        assertNotNull(eTag);
+        webTestClient.get().uri(URI + "/patient/30").header(HttpHeaders.IF_NONE_MATCH, eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        noteService.createNote(new Note("2", 30, "test"));
+        HttpHeaders modified = webTestClient.get().uri(URI + "/patient/30").header(HttpHeaders.IF_NONE_MATCH, eTag).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseHeaders();
+        assertNotEquals(eTag, modified.getETag());
+    }
+
+    @Test
+    @DisplayName("Get the note ids of a patient")
+    @Order(4)
+    void getNoteIdsByPatientId_whenNotesExist_thenReturnTheirIds() {
+        noteService.createNote(new Note("21", 15, "test"));
+        noteService.createNote(new Note("22", 15, "test"));
+        webTestClient.get().uri(URI + "/patient/15/ids").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(String.class).isEqualTo(List.of("21", "22"));
+    }
+
+    @Test
+    @DisplayName("Count the trigger terms of a patient")
+    @Order(5)
+    void getTriggersByPatientId_whenNotesExist_thenReturnTheTermCounts() {
+        noteService.createNote(new Note("12", 9, "Patient states that they are a short term Smoker"));
+        noteService.createNote(new Note("13", 9, "Abnormal breathing spells, Cholesterol LDL high, former smoker"));
+        TriggerReport report = webTestClient.get().uri(URI + "/patient/9/triggers").exchange()
+                .expectStatus().isOk()
+                .expectBody(TriggerReport.class).returnResult().getResponseBody();
+        assertNotNull(report);
+        assertEquals(9, report.getPatientId());
+        assertEquals(2L, report.getCounts().get("Smoker"));
+        assertEquals(1L, report.getCounts().get("Abnormal"));
+        assertEquals(1L, report.getCounts().get("Cholesterol"));
+        assertEquals(0L, report.getCounts().get("Dizziness"));
+    }
+
+    @Test
+    @DisplayName("The trigger terms count follows the writes of the patient notes")
+    @Order(5)
+    void getTriggersByPatientId_whenNotesAreWritten_thenTheIndexedCountsAreUpdated() {
+        noteService.createNote(new Note("14", 10, "Smoker"));
+        TriggerReport before = webTestClient.get().uri(URI + "/patient/10/triggers").exchange()
+                .expectBody(TriggerReport.class).returnResult().getResponseBody();
+        assertEquals(1L, Objects.requireNonNull(before).getCounts().get("Smoker"));
+        noteService.createNote(new Note("15", 10, "Smoker, Dizziness"));
+        noteService.deleteNoteById("14", null, null);
+        TriggerReport after = webTestClient.get().uri(URI + "/patient/10/triggers").exchange()
+                .expectBody(TriggerReport.class).returnResult().getResponseBody();
+        assertEquals(1L, Objects.requireNonNull(after).getCounts().get("Smoker"));
+        assertEquals(1L, after.getCounts().get("Dizziness"));
+    }
+
+    @Test
+    @DisplayName("Count the trigger terms of several patients in one call")
+    @Order(5)
+    void getTriggersByPatientIds_whenPatientsAreGiven_thenReturnOneLinePerPatient() throws Exception {
+        noteService.createNote(new Note("16", 11, "Smoker"));
+        noteService.createNote(new Note("17", 12, "Abnormal, Abnormal"));
+        TriggerBatchRequest request = new TriggerBatchRequest();
+        request.setPatientIds(List.of(11, 12, 13));
+        String[] lines = postTriggerBatch(request);
+        assertEquals(3, lines.length);
+        TriggerReport first = objectMapper.readValue(lines[0], TriggerReport.class);
+        TriggerReport second = objectMapper.readValue(lines[1], TriggerReport.class);
+        TriggerReport third = objectMapper.readValue(lines[2], TriggerReport.class);
+        assertEquals(1L, first.getCounts().get("Smoker"));
+        assertEquals(2L, second.getCounts().get("Abnormal"));
+        assertEquals(13, third.getPatientId());
+        assertEquals(0L, third.getCounts().get("Smoker"));
+    }
+
+    @Test
+    @DisplayName("Count the trigger terms of a range of patients")
+    @Order(5)
+    void getTriggersByPatientIds_whenRangeIsGiven_thenReturnThePatientsHavingNotes() {
+        noteService.createNote(new Note("18", 20, "Smoker"));
+        noteService.createNote(new Note("19", 22, "Smoker"));
+        noteService.createNote(new Note("20", 30, "Smoker"));
+        TriggerBatchRequest request = new TriggerBatchRequest();
+        request.setFromPatientId(20);
+        request.setToPatientId(25);
+        assertEquals(2, postTriggerBatch(request).length);
+        webTestClient.post().uri(URI + "/triggers/batch").bodyValue(new TriggerBatchRequest()).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Get note by id when note exist")
+    @Order(6)
+    void getNoteById_whenNoteExist_thenReturnTheCorrectNote() {
+        noteService.createNote(new Note("6", 4, "test"));
+        webTestClient.get().uri(URI + "/{noteId}", "6").exchange()
+                .expectStatus().isOk()
+                .expectBody(Note.class).value(note -> assertEquals("6", note.getId()));
+    }
+
+    @Test
+    @DisplayName("Get note by id when note does not exist")
+    @Order(7)
+    void getNoteById_whenNoteDoesNotExist_thenReturnNotFound() {
+        webTestClient.get().uri(URI + "/{noteId}", "11").exchange()
+                .expectStatus().isNotFound()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Create a new note")
+    @Order(8)
+    void createNote_thenReturnTheCreatedNote() {
+        Note createdNote = webTestClient.post().uri(URI).bodyValue(new Note("7", 5, "test")).exchange()
+                .expectStatus().isCreated()
+                .expectBody(Note.class).returnResult().getResponseBody();
+        assertNotNull(createdNote);
+        assertEquals("7", createdNote.getId());
+        assertEquals(5, createdNote.getPatientId());
+        assertEquals("test", createdNote.getComment());
+    }
+
+    @Test
+    @DisplayName("The version sent with a new note is ignored")
+    @Order(8)
+    void createNote_whenVersionIsSent_thenTheNoteIsCreatedAtTheFirstVersion() {
+        Note note = new Note("7", 5, "test");
+        note.setVersion(42L);
+        webTestClient.post().uri(URI).bodyValue(note).exchange()
+                .expectStatus().isCreated();
+        assertEquals(0L, noteService.getNoteById("7", null).orElseThrow().getVersion());
+    }
+
+    @Test
+    @DisplayName("Create notes from a newline delimited JSON stream")
+    @Order(8)
+    void createNotes_whenStreamHasValidAndInvalidLines_thenReturnOneResultPerLine() {
+        String body = "{\"patientId\": 14, \"comment\": \"first\"}\n"
+                + "not json\n"
+                + "\n"
+                + "{\"patientId\": 14, \"comment\": \"second\"}\n";
+        List<NoteIngestResult> results = webTestClient.post().uri(URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON).accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NoteIngestResult.class).returnResult().getResponseBody();
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        for (NoteIngestResult result : results) {
+            assertEquals(result.getLine() == 2 ? IngestStatus.FAILED : IngestStatus.CREATED, result.getStatus());
+        }
+        assertEquals(2, noteService.getAllNotesByPatientId(14).size());
+    }
+
+    @Test
+    @DisplayName("A line longer than the maximum length is rejected, the other lines are created")
+    @Order(8)
+    void createNotes_whenLineIsTooLong_thenTheLineIsRejected() {
+        // Longer than the in-memory limit of the codecs too
+        String body = "{\"patientId\": 115, \"comment\": \"" + "x".repeat(300 * 1024) + "\"}\n"
+                + "{\"patientId\": 115, \"comment\": \"short\"}\n";
+        List<NoteIngestResult> results = webTestClient.post().uri(URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON).accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NoteIngestResult.class).returnResult().getResponseBody();
+        assertNotNull(results);
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).getLine());
+        assertEquals(IngestStatus.FAILED, results.get(0).getStatus());
+        assertEquals(IngestStatus.CREATED, results.get(1).getStatus());
+        assertEquals(1, noteService.getAllNotesByPatientId(115).size());
+    }
+
+    @Test
+    @DisplayName("Update an existing note")
+    @Order(9)
+    void updateNote_whenNoteExist_thenReturnTheUpdatedNote() {
+        noteService.createNote(new Note("8", 6, "test"));
+        webTestClient.put().uri(URI + "/8").bodyValue(new Note("8", 6, "Test Modified")).exchange()
+                .expectStatus().isOk()
+                .expectBody(Note.class).value(note -> assertEquals("Test Modified", note.getComment()));
+        assertEquals("Test Modified", noteService.getNoteById("8", null).orElseThrow().getComment());
+    }
+
+    @Test
+    @DisplayName("The patient of an update body does not select the note, the note keeps its patient")
+    @Order(9)
+    void updateNote_whenBodyHasAnotherPatient_thenTheNoteIsUpdated() {
+        noteService.createNote(new Note("8", 6, "test"));
+        webTestClient.put().uri(URI + "/8").bodyValue(new Note("8", 7, "Test Modified")).exchange()
+                .expectStatus().isOk()
+                .expectBody(Note.class).value(note -> assertEquals(6, note.getPatientId()));
+        assertEquals(6, noteService.getNoteById("8", null).orElseThrow().getPatientId());
+    }
+
+    @Test
+    @DisplayName("Trying to update a note that does not exist ")
+    @Order(10)
+    void updateNote_whenNoteDoesNotExist_thenReturnNotFound() {
+        webTestClient.put().uri(URI + "/11").bodyValue(new Note("9", 7, "test")).exchange()
+                .expectStatus().isNotFound()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Conditional update and delete with If-Match")
+    @Order(10)
+    void updateAndDeleteNote_whenIfMatchIsGiven_thenOnlyTheCurrentVersionIsWritten() {
+        noteService.createNote(new Note("12", 9, "test"));
+        webTestClient.get().uri(URI + "/12").exchange()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"");
+        webTestClient.put().uri(URI + "/12").header(HttpHeaders.IF_MATCH, "\"0\"").bodyValue(new Note(null, 9, "first")).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+        webTestClient.put().uri(URI + "/12").header(HttpHeaders.IF_MATCH, "\"0\"").bodyValue(new Note(null, 9, "second")).exchange()
+                .expectStatus().isEqualTo(412);
+        assertEquals("first", noteService.getNoteById("12", null).orElseThrow().getComment());
+        webTestClient.delete().uri(URI + "/12").header(HttpHeaders.IF_MATCH, "\"0\"").exchange()
+                .expectStatus().isEqualTo(412);
+        webTestClient.delete().uri(URI + "/12").header(HttpHeaders.IF_MATCH, "\"1\"").exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    @DisplayName("Trying to delete an existing note")
+    @Order(11)
+    void deleteNote_whenNoteExist_thenReturnNoContent() {
+        noteService.createNote(new Note("10", 8, "test"));
+        webTestClient.delete().uri(URI + "/10").exchange()
+                .expectStatus().isNoContent()
+                .expectBody().isEmpty();
+        webTestClient.get().uri(URI + "/10").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Trying to delete a note that does not exist ")
+    @Order(12)
+    void deleteNote_whenNoteDoesNotExist_thenReturnNotFound() {
+        webTestClient.delete().uri(URI + "/11").exchange()
+                .expectStatus().isNotFound()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("Get the notes changed since the previous sync")
+    @Order(12)
+    void getChangesSince_whenNotesAreWritten_thenReturnOnlyTheChangesSinceTheWatermark() {
+        noteService.createNote(new Note("20", 10, "first"));
+        noteService.createNote(new Note("21", 10, "second"));
+        NoteChanges firstSync = getChanges(URI + "/changes");
+        assertTrue(firstSync.isComplete());
+        assertThat(firstSync.getNotes()).extracting(Note::getId).containsExactlyInAnyOrder("20", "21");
+        assertThat(firstSync.getDeleted()).isEmpty();
+        webTestClient.put().uri(URI + "/20").bodyValue(new Note(null, 10, "updated")).exchange()
+                .expectStatus().isOk();
+        webTestClient.delete().uri(URI + "/21").exchange()
+                .expectStatus().isNoContent();
+        NoteChanges secondSync = getChanges(URI + "/changes?since=" + firstSync.getWatermark());
+        assertThat(secondSync.getNotes()).extracting(Note::getComment).containsExactly("updated");
+        assertThat(secondSync.getDeleted()).extracting(NoteTombstone::getId).containsExactly("21");
+        NoteChanges thirdSync = getChanges(URI + "/changes?since=" + secondSync.getWatermark());
+        assertThat(thirdSync.getNotes()).isEmpty();
+        assertThat(thirdSync.getDeleted()).isEmpty();
+        webTestClient.get().uri(URI + "/changes?since=invalid").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri(URI + "/changes?limit=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Search the comments of the notes")
+    @Order(12)
+    void searchNotes_whenNotesMatch_thenReturnTheHitsWithTheirPassage() throws InterruptedException {
+        noteService.createNote(new Note("30", 11, "Taux d'hémoglobine glyquée élevé"));
+        noteService.createNote(new Note("31", 12, "Hémoglobine normale"));
+        NoteSearchResult result = null;
+        // The writes are visible to the searches after the next refresh of the index
+        for (int attempt = 0; attempt < 50 && (result == null || result.getHits().isEmpty()); attempt++) {
+            Thread.sleep(100);
+            result = webTestClient.get().uri(builder -> builder.path(URI + "/search").queryParam("q", "hemoglobine glyquee").build())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(NoteSearchResult.class).returnResult().getResponseBody();
+        }
+        assertThat(Objects.requireNonNull(result).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("30");
+        assertThat(result.getHits().get(0).getHighlight()).contains("<b>glyquée</b>");
+        NoteSearchResult patientResult = webTestClient.get().uri(URI + "/search?q=hemoglobine&patientId=12").exchange()
+                .expectStatus().isOk()
+                .expectBody(NoteSearchResult.class).returnResult().getResponseBody();
+        assertThat(Objects.requireNonNull(patientResult).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("31");
+        webTestClient.get().uri(builder -> builder.path(URI + "/search").queryParam("q", " ").build()).exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri(URI + "/search?q=hemoglobine&size=1000").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Get the note summaries of a patient")
+    @Order(12)
+    void getNoteSummariesByPatientId_whenNotesExist_thenReturnTheirPreview() {
+        String longComment = "Lab report : Hémoglobine A1C 7,2 %, Microalbumin 35 mg/L\n".repeat(100);
+        noteService.createNote(new Note("50", 14, "Short comment"));
+        noteService.createNote(new Note("51", 14, longComment));
+        List<NoteSummary> summaries = webTestClient.get().uri(URI + "/patient/14?view=summary").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NoteSummary.class).returnResult().getResponseBody();
+        assertThat(Objects.requireNonNull(summaries)).extracting(NoteSummary::getId).containsExactly("50", "51");
+        assertEquals("Short comment", summaries.get(0).getPreview());
+        assertFalse(summaries.get(0).isTruncated());
+        assertEquals(longComment.substring(0, 100), summaries.get(1).getPreview());
+        assertTrue(summaries.get(1).isTruncated());
+        assertNotNull(summaries.get(1).getUpdatedAt());
+        noteService.updateNote(new Note("50", 14, "Updated comment"));
+        webTestClient.get().uri(URI + "/patient/14?view=summary").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NoteSummary.class).value(updated -> assertEquals("Updated comment", updated.get(0).getPreview()));
+        webTestClient.get().uri(URI + "?view=summary").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(NoteSummary.class).value(allSummaries -> assertThat(allSummaries).extracting(NoteSummary::getId).contains("50", "51"));
+    }
+
+    private String[] postTriggerBatch(TriggerBatchRequest request) {
+        String body = webTestClient.post().uri(URI + "/triggers/batch").bodyValue(request).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+        return Objects.requireNonNull(body).split("\n");
+    }
+
+    private NoteChanges getChanges(String uri) {
+        NoteChanges changes = webTestClient.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .expectBody(NoteChanges.class).returnResult().getResponseBody();
+        return Objects.requireNonNull(changes);
+    }
+}
@@ -1,95 +1,69 @@
 package com.openclassroomsProject.Mediscreennotes.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.openclassroomsProject.Mediscreennotes.config.BinaryFormatConfig;
+import com.openclassroomsProject.Mediscreennotes.config.CausalReadContext;
+import com.openclassroomsProject.Mediscreennotes.export.NoteExportFormat;
 import com.openclassroomsProject.Mediscreennotes.model.Note;
-import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.junit.jupiter.api.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.test.context.DynamicPropertyRegistry;
-import org.springframework.test.context.DynamicPropertySource;
-import org.testcontainers.containers.MongoDBContainer;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.junit.jupiter.Testcontainers;
-import org.testcontainers.utility.DockerImageName;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Integration test class for the NoteControllerApi controller.
+ * Runs the contract of {@link NoteControllerApiContractTest} against the servlet stack,
+ * and the tests of the features only the servlet stack has.
  * * @author jonathan GOUVEIA
  * * @version 1.0
  */
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
-@Testcontainers
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
-class NoteControllerApiTest {
+class NoteControllerApiTest extends NoteControllerApiContractTest {
     private static final String LOCALHOST = "http://localhost:";
-    private static final String URI = "/api/note";
-    private static final Logger LOGGER = LoggerFactory.getLogger(NoteControllerApiTest.class);
-
-    @Autowired
-    private INoteService noteService;
 
     @Autowired
     private TestRestTemplate restTemplate;
 
-    @LocalServerPort
-    private int serverPort;
-
     @Autowired
-    private MongoTemplate mongoTemplate;
-
-    @Container
-    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+    private CausalReadContext causalReadContext;
 
-    /**
-     * Allows to sets dynamic properties for MongoDB data source.
-     *
-     * @param registry The dynamic property registry.
-     */
-    @DynamicPropertySource
-    static void setProperties(DynamicPropertyRegistry registry) {
-        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
-    }
-
-    /**
-     * Method executed before all tests.
-     * Starts the MongoDB container.
-     */
-    @BeforeAll
-    static void setup() {
-        MONGODB_CONTAINER.start();
-    }
-
-    /**
-     * Method executed after all tests.
-     * Stop the MongoDB container.
-     */
-    @AfterAll
-    static void tearDown() {
-        MONGODB_CONTAINER.stop();
-    }
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    /**
-     * Method executed before each test.
-     * Clean database.
-     */
-    @BeforeEach
-    public void clearDatabase() {
-        mongoTemplate.getDb().drop();
-    }
+    @LocalServerPort
+    private int serverPort;
 
     /**
      * Returns the base URL for requests.
@@ -100,161 +74,188 @@ class NoteControllerApiTest {
         return LOCALHOST + serverPort + URI;
     }
 
-    /**
-     * Tests if the MongoDB container is running.
-     */
     @Test
-    @DisplayName("Container is running")
-    @Order(1)
-    void test() {
-        assertThat(MONGODB_CONTAINER.isRunning()).isTrue();
+    @DisplayName("Long comments are stored compressed and list responses are compressed")
+    @Order(12)
+    void createNote_whenCommentIsLong_thenItIsStoredCompressedAndReadUnchanged() {
+        String comment = "Lab report : Hemoglobin A1C 7.2 %, Microalbumin 35 mg/L, Cholesterol LDL 1.6 g/L\n".repeat(100);
+        noteService.createNote(new Note("40", 13, comment));
+        Document stored = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class)).find(new Document("_id", "40")).first();
+        assertInstanceOf(Binary.class, Objects.requireNonNull(stored).get("comment"));
+        assertEquals(comment, noteService.getNoteById("40", null).orElseThrow().getComment());
+        restTemplate.exchange(getBaseUrl() + "/40", HttpMethod.PUT, new HttpEntity<>(new Note(null, 13, comment + "Smoker")), Note.class);
+        assertEquals(comment + "Smoker", noteService.getNoteById("40", null).orElseThrow().getComment());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> list = restTemplate.exchange(getBaseUrl() + "/patient/13", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertEquals(HttpStatus.OK, list.getStatusCode());
+        assertEquals("gzip", list.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(Objects.requireNonNull(list.getBody()).length < comment.length() / 5);
     }
 
     @Test
-    @DisplayName("Get all notes when note exist")
-    @Order(2)
-    void getAllNotes_whenThereAreNotes_thenReturnTheCorrectList() {
-        Note note1 = new Note("1", 1, "test");
-        noteService.createNote(note1);
-        Note note2 = new Note("2", 2, "test");
-        noteService.createNote(note2);
-        ResponseEntity<List<Note>> responseEntity =
-                restTemplate.exchange(
-                        getBaseUrl(),
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<Note>>() {
-                        }
-                );
+    @DisplayName("A read sent with the operation time of a write returns the write")
+    @Order(12)
+    void getNoteSummariesByPatientId_whenOperationTimeIsSent_thenTheWriteIsRead() {
+        ResponseEntity<Note> created = restTemplate.postForEntity(getBaseUrl(), new Note(null, 15, "Causal comment"), Note.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        String operationTime = created.getHeaders().getFirst(CausalReadContext.OPERATION_TIME_HEADER);
+        assertNotNull(operationTime);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CausalReadContext.OPERATION_TIME_HEADER, operationTime);
+        ResponseEntity<List<NoteSummary>> responseEntity = restTemplate.exchange(getBaseUrl() + "/patient/15?view=summary", HttpMethod.GET,
+                new HttpEntity<>(headers), new ParameterizedTypeReference<>() {
+                });
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        assertEquals(2, Objects.requireNonNull(responseEntity.getBody()).size());
-    }
-
-    @Test
-    @DisplayName("Get all notes when notes does not exist")
-    @Order(3)
-    void getAllNotes_whenThereIsNoNotes_thenReturnNoContent() {
-        ResponseEntity<List<Note>> responseEntity =
-                restTemplate.exchange(
-                        getBaseUrl(),
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<Note>>() {
-                        }
-                );
-        assertEquals(HttpStatus.NO_CONTENT, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
+        assertThat(Objects.requireNonNull(responseEntity.getBody())).extracting(NoteSummary::getPreview).containsExactly("Causal comment");
+        headers.set(CausalReadContext.OPERATION_TIME_HEADER, "not a time");
+        ResponseEntity<String> invalid = restTemplate.exchange(getBaseUrl() + "/patient/15?view=summary", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
     }
 
     @Test
-    @DisplayName("Get notes by patient id when notes exist")
-    @Order(4)
-    void getNotesByPatientId_whenNotesExist_thenReturnCorrectList() {
-        Note note1 = new Note("3", 3, "test");
-        noteService.createNote(note1);
-        Note note2 = new Note("4", 3, "test");
-        noteService.createNote(note2);
-        Note note3 = new Note("5", 3, "test");
-        noteService.createNote(note3);
-        ResponseEntity<List<Note>> responseEntity =
-                restTemplate.exchange(
-                        getBaseUrl() + "/patient/3",
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<Note>>() {
-                        }
-                );
+    @DisplayName("A streamed list sent with the operation time of a write reads after it on the thread writing the body")
+    @Order(12)
+    void getAllNotes_whenOperationTimeIsSent_thenTheBodyReadsAfterIt() throws Exception {
+        ResponseEntity<Note> created = restTemplate.postForEntity(getBaseUrl(), new Note(null, 17, "Streamed causal comment"), Note.class);
+        String operationTime = created.getHeaders().getFirst(CausalReadContext.OPERATION_TIME_HEADER);
+        assertNotNull(operationTime);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CausalReadContext.OPERATION_TIME_HEADER, operationTime);
+        ResponseEntity<List<Note>> responseEntity = restTemplate.exchange(getBaseUrl(), HttpMethod.GET, new HttpEntity<>(headers),
+                new ParameterizedTypeReference<>() {
+                });
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        assertEquals(3, Objects.requireNonNull(responseEntity.getBody()).size());
-    }
+        assertThat(Objects.requireNonNull(responseEntity.getBody())).extracting(Note::getComment).contains("Streamed causal comment");
 
-    @Test
-    @DisplayName("Get notes by patient id when notes does not exist")
-    @Order(5)
-    void getNotesByPatientId_whenThereIsNoNotes_thenReturnNoContent() {
-        ResponseEntity<List<Note>> responseEntity =
-                restTemplate.exchange(
-                        getBaseUrl(),
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<Note>>() {
-                        }
-                );
-        assertEquals(HttpStatus.NO_CONTENT, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
+        causalReadContext.start(operationTime);
+        try {
+            BsonTimestamp expected = causalReadContext.getReadAfter();
+            assertNotNull(expected);
+            List<BsonTimestamp> readAfter = new ArrayList<>();
+            StreamingResponseBody body = causalReadContext.bind(outputStream -> readAfter.add(causalReadContext.getReadAfter()));
+            Thread writer = new Thread(() -> {
+                try {
+                    body.writeTo(OutputStream.nullOutputStream());
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+                readAfter.add(causalReadContext.getReadAfter());
+            });
+            writer.start();
+            writer.join();
+            assertEquals(Arrays.asList(expected, null), readAfter);
+        } finally {
+            causalReadContext.clear();
+        }
     }
 
     @Test
-    @DisplayName("Get note by id when note exist")
-    @Order(6)
-    void getNoteById_whenNoteExist_thenReturnTheCorrectNote() {
-        Note note = new Note("6", 4, "test");
-        noteService.createNote(note);
-        ResponseEntity<Note> responseEntity = restTemplate.getForEntity(getBaseUrl() + "/{noteId}", Note.class, note.getId());
-        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        assertEquals(Objects.requireNonNull(responseEntity.getBody()).getId(), "6");
+    @DisplayName("Export all notes, download the export and record its size")
+    @Order(12)
+    void exportNotes_whenExportIsComplete_thenTheFileCanBeDownloaded() throws IOException, InterruptedException {
+        noteService.createNote(new Note("60", 16, "Exported comment"));
+        ResponseEntity<NoteExportStatus> started = restTemplate.postForEntity(getBaseUrl() + "/export", null, NoteExportStatus.class);
+        assertEquals(HttpStatus.ACCEPTED, started.getStatusCode());
+        NoteExportStatus status = Objects.requireNonNull(started.getBody());
+        for (int attempt = 0; attempt < 100 && (status.isRunning() || status.getCompletedAt() == null); attempt++) {
+            Thread.sleep(100);
+            status = Objects.requireNonNull(restTemplate.getForEntity(getBaseUrl() + "/export", NoteExportStatus.class).getBody());
+        }
+        assertNull(status.getFailure());
+        assertNotNull(status.getCompletedAt());
+        ResponseEntity<byte[]> file = restTemplate.getForEntity(getBaseUrl() + "/export/file", byte[].class);
+        assertEquals(HttpStatus.OK, file.getStatusCode());
+        byte[] body = Objects.requireNonNull(file.getBody());
+        assertEquals(status.getSizeBytes(), body.length);
+        DistributionSummary responseSize = meterRegistry.get("mediscreen.http.response.size").tag("uri", URI + "/export/file").summary();
+        assertEquals((double) body.length, responseSize.totalAmount());
+        List<Note> notes = new ArrayList<>();
+        assertEquals(status.getExportedNotes(), NoteExportFormat.read(Channels.newChannel(new ByteArrayInputStream(body)), notes::add));
+        assertThat(notes).anySatisfy(note -> {
+            assertEquals("60", note.getId());
+            assertEquals("Exported comment", note.getComment());
+        });
     }
 
     @Test
-    @DisplayName("Get note by id when note does not exist")
-    @Order(7)
-    void getNoteById_whenNoteDoesNotExist_thenReturnNotFound() {
-        ResponseEntity<Note> responseEntity = restTemplate.getForEntity(getBaseUrl() + "/{noteId}", Note.class, "11");
-        assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
-    }
+    @DisplayName("Notes are exchanged in CBOR or Smile when asked, in JSON by default")
+    @Order(12)
+    void getNotesByPatientId_whenBinaryFormatIsAccepted_thenTheNotesAreEncodedInIt() throws IOException {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        HttpHeaders smileHeaders = new HttpHeaders();
+        smileHeaders.setContentType(BinaryFormatConfig.APPLICATION_SMILE);
+        smileHeaders.setAccept(List.of(BinaryFormatConfig.APPLICATION_SMILE));
+        ResponseEntity<byte[]> created = restTemplate.exchange(getBaseUrl(), HttpMethod.POST,
+                new HttpEntity<>(smileMapper.writeValueAsBytes(new Note("70", 17, "Binary comment")), smileHeaders), byte[].class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        assertEquals(BinaryFormatConfig.APPLICATION_SMILE, created.getHeaders().getContentType());
+        assertEquals("Binary comment", smileMapper.readValue(created.getBody(), Note.class).getComment());
 
-    @Test
-    @DisplayName("Create a new note")
-    @Order(8)
-    void createNote_thenReturnTheCreatedNote() {
-        Note note = new Note("7", 5, "test");
-        ResponseEntity<Note> responseEntity = restTemplate.postForEntity(getBaseUrl(), note, Note.class);
-        assertEquals(HttpStatus.CREATED, responseEntity.getStatusCode());
-        assertEquals(Objects.requireNonNull(responseEntity.getBody()).getId(), "7");
-        assertEquals(responseEntity.getBody().getPatientId(), 5);
-        assertEquals(responseEntity.getBody().getComment(), "test");
-    }
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        HttpHeaders cborHeaders = new HttpHeaders();
+        cborHeaders.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        ResponseEntity<byte[]> patientNotes = restTemplate.exchange(getBaseUrl() + "/patient/17", HttpMethod.GET,
+                new HttpEntity<>(cborHeaders), byte[].class);
+        assertEquals(MediaType.APPLICATION_CBOR, patientNotes.getHeaders().getContentType());
+        List<Note> notes = cborMapper.readValue(patientNotes.getBody(), new TypeReference<>() {
+        });
+        assertThat(notes).extracting(Note::getComment).containsExactly("Binary comment");
+        ResponseEntity<byte[]> allNotes = restTemplate.exchange(getBaseUrl(), HttpMethod.GET, new HttpEntity<>(cborHeaders), byte[].class);
+        assertEquals(MediaType.APPLICATION_CBOR, allNotes.getHeaders().getContentType());
+        List<Note> streamedNotes = cborMapper.readValue(allNotes.getBody(), new TypeReference<>() {
+        });
+        assertThat(streamedNotes).extracting(Note::getId).contains("70");
 
-    @Test
-    @DisplayName("Update an existing note")
-    @Order(9)
-    void updateNote_whenNoteExist_thenReturnTheUpdatedNote() {
-        Note note = new Note("8", 6, "test");
-        noteService.createNote(note);
-        Note noteUpdated = new Note("8", 6, "Test Modified");
-        ResponseEntity<Note> responseEntity = restTemplate.exchange(getBaseUrl() + "/8", HttpMethod.PUT, new HttpEntity<>(noteUpdated), Note.class);
-        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        assertEquals("Test Modified", Objects.requireNonNull(responseEntity.getBody()).getComment());
+        ResponseEntity<String> json = restTemplate.getForEntity(getBaseUrl() + "/patient/17", String.class);
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(json.getHeaders().getContentType()));
     }
 
     @Test
-    @DisplayName("Trying to update a note that does not exist ")
-    @Order(10)
-    void updateNote_whenNoteDoesNotExist_thenReturnNotFound() {
-        Note note = new Note("9", 7, "test");
-        ResponseEntity<Void> responseEntity = restTemplate.exchange(getBaseUrl() + "/11", HttpMethod.PUT, new HttpEntity<>(note), Void.class);
-        assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
+    @DisplayName("The streamed lists are written in the preferred format of the Accept header")
+    @Order(12)
+    void streamedMediaType_whenFormatsAreAccepted_thenThePreferredOneIsChosen() {
+        assertEquals(Optional.of(MediaType.APPLICATION_JSON), NoteControllerApi.streamedMediaType(null));
+        assertEquals(Optional.of(MediaType.APPLICATION_JSON), NoteControllerApi.streamedMediaType("*/*"));
+        assertEquals(Optional.of(MediaType.APPLICATION_CBOR), NoteControllerApi.streamedMediaType("*/*, application/cbor"));
+        assertEquals(Optional.of(BinaryFormatConfig.APPLICATION_SMILE),
+                NoteControllerApi.streamedMediaType("application/cbor;q=0.5, application/x-jackson-smile"));
+        assertEquals(Optional.of(MediaType.APPLICATION_CBOR), NoteControllerApi.streamedMediaType("application/json;q=0, */*;q=0.8"));
+        assertEquals(Optional.of(MediaType.APPLICATION_JSON), NoteControllerApi.streamedMediaType("text/html, application/*;q=0.1"));
+        assertEquals(Optional.empty(), NoteControllerApi.streamedMediaType("application/cbor;q=0"));
+        assertEquals(Optional.empty(), NoteControllerApi.streamedMediaType("application/xml, text/*"));
+        assertEquals(Optional.empty(), NoteControllerApi.streamedMediaType("not a media type"));
     }
 
     @Test
-    @DisplayName("Trying to delete an existing note")
-    @Order(11)
-    void deleteNote_whenNoteExist_thenReturnNoContent() {
-        Note note = new Note("10", 8, "test");
-        noteService.createNote(note);
-        ResponseEntity<Void> responseEntity = restTemplate.exchange(getBaseUrl() + "/10", HttpMethod.DELETE, null, Void.class);
-        assertEquals(HttpStatus.NO_CONTENT, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
+    @DisplayName("A streamed list is not acceptable when the client accepts none of its formats")
+    @Order(12)
+    void getAllNotes_whenNoFormatIsAccepted_thenNotAcceptable() {
+        noteService.createNote(new Note("70", 18, "test"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, MediaType.APPLICATION_XML_VALUE);
+        ResponseEntity<byte[]> responseEntity = restTemplate.exchange(getBaseUrl(), HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, responseEntity.getStatusCode());
+        headers.set(HttpHeaders.ACCEPT, "application/cbor;q=0, application/json;q=0");
+        responseEntity = restTemplate.exchange(getBaseUrl() + "?view=summary", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, responseEntity.getStatusCode());
     }
 
     @Test
-    @DisplayName("Trying to delete a note that does not exist ")
-    @Order(12)
-    void deleteNote_whenNoteDoesNotExist_thenReturnNotFound() {
-        ResponseEntity<Void> responseEntity = restTemplate.exchange(getBaseUrl() + "/11", HttpMethod.DELETE, null, Void.class);
-        assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
-        assertNull(responseEntity.getBody());
+    @DisplayName("Note metrics are exposed to Prometheus")
+    @Order(13)
+    void prometheus_whenNotesAreRead_thenExposeTheNoteMetrics() {
+        noteService.createNote(new Note("1", 20, "test"));
+        restTemplate.getForEntity(getBaseUrl() + "/patient/20", String.class);
+        ResponseEntity<String> responseEntity = restTemplate.getForEntity(LOCALHOST + serverPort + "/actuator/prometheus", String.class);
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        String metrics = Objects.requireNonNull(responseEntity.getBody());
+        assertTrue(metrics.contains("mediscreen_note_service_seconds_bucket"));
+        assertTrue(metrics.contains("mediscreen_note_patient_notes_bucket"));
+        assertTrue(metrics.contains("mediscreen_http_response_size_bytes_bucket"));
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket"));
+        assertTrue(metrics.contains("mongodb_driver_commands_seconds"));
+        assertTrue(metrics.contains("mongodb_driver_pool_size"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.openclassroomsProject.Mediscreennotes.controller;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import org.junit.jupiter.api.*;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test class for the ReactiveNoteControllerApi controller.
+ * Runs the contract of {@link NoteControllerApiContractTest} against the reactive stack.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.main.web-application-type=reactive")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReactiveNoteControllerApiTest extends NoteControllerApiContractTest {
+
+    @Test
+    @DisplayName("The streamed lists subscribe once to the notes to choose the status and to write them")
+    @Order(13)
+    void okOrNoContent_whenTheResponseIsWritten_thenTheNotesAreReadOnce() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<Note> notes = Flux.just(new Note("1", 1, "test"), new Note("2", 1, "test"))
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+        ResponseEntity<Flux<Note>> response = ReactiveNoteControllerApi.okOrNoContent(notes).block();
+        assertEquals(HttpStatus.OK, Objects.requireNonNull(response).getStatusCode());
+        List<Note> written = Objects.requireNonNull(response.getBody()).collectList().block();
+        assertEquals(2, Objects.requireNonNull(written).size());
+        assertEquals(1, subscriptions.get());
+
+        AtomicInteger emptySubscriptions = new AtomicInteger();
+        ResponseEntity<Flux<Note>> noContent = ReactiveNoteControllerApi.okOrNoContent(Flux.<Note>empty()
+                .doOnSubscribe(subscription -> emptySubscriptions.incrementAndGet())).block();
+        assertEquals(HttpStatus.NO_CONTENT, Objects.requireNonNull(noContent).getStatusCode());
+        assertNull(noContent.getBody());
+        assertEquals(1, emptySubscriptions.get());
+        assertThrows(IllegalStateException.class, () -> ReactiveNoteControllerApi.okOrNoContent(Flux.<Note>error(new IllegalStateException())).block());
+    }
+}
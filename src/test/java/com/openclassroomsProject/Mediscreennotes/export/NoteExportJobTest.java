@@ -0,0 +1,115 @@
+package com.openclassroomsProject.Mediscreennotes.export;
+
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteExportStatus;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the snapshot export of the notes.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest(properties = {"mediscreen.notes.export.path=build/test-note-export", "mediscreen.notes.export.parallelism=2",
+        "mediscreen.notes.export.block-size=1KB"})
+@Testcontainers
+class NoteExportJobTest {
+
+    @Autowired
+    private NoteExportJob noteExportJob;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @BeforeEach
+    void insertNotes() {
+        mongoTemplate.remove(new Query(), Note.class);
+        List<Note> notes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        // ObjectIds spread over a day, so that they are split into several ranges
+        for (int index = 0; index < 300; index++) {
+            Note note = new Note(new ObjectId(new Date(now - index * 300_000L)).toHexString(), index % 20, "Comment " + index);
+            note.setVersion(0L);
+            note.setCreatedAt(new Date(now - index * 300_000L));
+            notes.add(note);
+        }
+        notes.add(new Note("client-1", 1, "Supplied id"));
+        notes.add(new Note("client-2", null, null));
+        mongoTemplate.insertAll(notes);
+    }
+
+    @Test
+    @DisplayName("The export holds all notes, in _id order")
+    void run_whenNotesExist_thenTheFileHoldsAllNotesInIdOrder() throws IOException {
+        assertThat(noteExportJob.idRanges(8)).hasSizeGreaterThan(2);
+        run();
+        Path file = noteExportJob.getExportFile().orElseThrow();
+        List<Note> exported = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(302, NoteExportFormat.read(channel, exported::add));
+        }
+        assertThat(exported.subList(0, 2)).extracting(Note::getId).containsExactly("client-1", "client-2");
+        assertEquals("Supplied id", exported.get(0).getComment());
+        assertNull(exported.get(1).getPatientId());
+        List<String> objectIds = exported.subList(2, exported.size()).stream().map(Note::getId).toList();
+        assertThat(objectIds).isSorted().doesNotHaveDuplicates();
+        Note stored = mongoTemplate.findById(objectIds.get(0), Note.class);
+        assertNotNull(stored);
+        assertEquals(stored.getComment(), exported.get(2).getComment());
+        assertEquals(stored.getPatientId(), exported.get(2).getPatientId());
+        assertEquals(stored.getCreatedAt(), exported.get(2).getCreatedAt());
+        assertEquals(302, noteExportJob.getStatus().getExportedNotes());
+    }
+
+    @Test
+    @DisplayName("Only the last two exports are kept")
+    void run_whenExportedThreeTimes_thenTheOldestExportIsDeleted() throws IOException, InterruptedException {
+        mongoTemplate.remove(Query.query(Criteria.where("patientId").ne(1)), Note.class);
+        for (int run = 0; run < 3; run++) {
+            run();
+            Thread.sleep(2);
+        }
+        try (Stream<Path> files = Files.list(Path.of("build/test-note-export"))) {
+            assertThat(files.map(path -> path.getFileName().toString()).toList())
+                    .hasSize(2).allMatch(name -> name.startsWith(NoteExportJob.FILE_PREFIX) && name.endsWith(NoteExportFormat.FILE_EXTENSION));
+        }
+    }
+
+    private void run() throws IOException {
+        NoteExportStatus status = new NoteExportStatus();
+        status.setStartedAt(new Date());
+        noteExportJob.run(status, null);
+        assertNotNull(status.getCompletedAt());
+    }
+}
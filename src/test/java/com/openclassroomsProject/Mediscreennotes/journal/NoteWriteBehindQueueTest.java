@@ -0,0 +1,129 @@
+package com.openclassroomsProject.Mediscreennotes.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteWriteBehindQueueTest {
+
+    @Mock
+    private INoteService noteService;
+
+    @Mock
+    private NoteMetrics noteMetrics;
+
+    @Spy
+    private NoteProperties noteProperties = new NoteProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private NoteWriteBehindQueue noteWriteBehindQueue;
+
+    @TempDir
+    Path journalPath;
+
+    @BeforeEach
+    void startQueue() {
+        NoteProperties.WriteBehind writeBehind = noteProperties.getWriteBehind();
+        writeBehind.setEnabled(true);
+        writeBehind.setJournalPath(journalPath.toString());
+        writeBehind.setFlushSize(2);
+        writeBehind.setFlushInterval(Duration.ofMillis(100));
+        noteWriteBehindQueue.start();
+    }
+
+    @AfterEach
+    void stopQueue() {
+        noteWriteBehindQueue.stop();
+    }
+
+    @Test
+    @DisplayName("Accepted notes are inserted by batches of the flush size")
+    void accept_whenNotesAreJournaled_thenTheyAreInsertedByBatches() {
+        List<Note> notes = List.of(new Note(null, 1, "first"), new Note(null, 1, "second"), new Note(null, 2, "third"));
+        for (Note note : notes) {
+            assertTrue(noteWriteBehindQueue.accept(note));
+            assertNotNull(note.getId());
+            assertEquals(0L, note.getVersion());
+            assertNotNull(note.getCreatedAt());
+        }
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Note>> batches = ArgumentCaptor.forClass(List.class);
+        verify(noteService, timeout(5000).times(2)).insertJournaledNotes(batches.capture());
+        assertThat(batches.getAllValues()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(batches.getAllValues().stream().flatMap(List::stream).map(Note::getId))
+                .containsExactly(notes.get(0).getId(), notes.get(1).getId(), notes.get(2).getId());
+    }
+
+    @Test
+    @DisplayName("Notes not inserted before a stop are inserted at the next start")
+    void start_whenJournalHasPendingNotes_thenTheyAreReplayed() {
+        when(noteService.insertJournaledNotes(anyList())).thenThrow(new DataAccessResourceFailureException("Database down"));
+        Note note1 = new Note(null, 1, "first");
+        Note note2 = new Note(null, 1, "second");
+        assertTrue(noteWriteBehindQueue.accept(note1));
+        assertTrue(noteWriteBehindQueue.accept(note2));
+        verify(noteService, timeout(5000)).insertJournaledNotes(anyList());
+        noteWriteBehindQueue.stop();
+
+        reset(noteService);
+        noteWriteBehindQueue.start();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Note>> batch = ArgumentCaptor.forClass(List.class);
+        verify(noteService, timeout(5000)).insertJournaledNotes(batch.capture());
+        assertThat(batch.getValue()).extracting(Note::getId).containsExactly(note1.getId(), note2.getId());
+        assertThat(batch.getValue()).extracting(Note::getComment).containsExactly("first", "second");
+    }
+
+    @Test
+    @DisplayName("Inserted notes are not replayed")
+    void start_whenNotesWereInserted_thenTheyAreNotReplayed() {
+        assertTrue(noteWriteBehindQueue.accept(new Note(null, 1, "first")));
+        verify(noteService, timeout(5000)).insertJournaledNotes(anyList());
+        noteWriteBehindQueue.stop();
+
+        noteWriteBehindQueue.start();
+        verify(noteService, after(500).times(1)).insertJournaledNotes(anyList());
+    }
+
+    @Test
+    @DisplayName("Notes are inserted directly when too many are pending")
+    void accept_whenTooManyNotesArePending_thenTheNoteIsRefused() {
+        noteProperties.getWriteBehind().setMaxPending(0);
+        assertFalse(noteWriteBehindQueue.accept(new Note(null, 1, "first")));
+    }
+
+    @Test
+    @DisplayName("A note sent with its own id is inserted directly, the insert tells whether the id is taken")
+    void accept_whenNoteHasAnId_thenTheNoteIsRefused() {
+        assertFalse(noteWriteBehindQueue.accept(new Note("1", 1, "first")));
+    }
+}
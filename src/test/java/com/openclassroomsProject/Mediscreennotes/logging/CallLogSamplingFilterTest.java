@@ -0,0 +1,51 @@
+package com.openclassroomsProject.Mediscreennotes.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit test class for the CallLogSamplingFilter.
+ *
+ * @author jonathan GOUVEIA
+ * @version 1.0
+ */
+class CallLogSamplingFilterTest {
+
+    private CallLogSamplingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new CallLogSamplingFilter();
+        filter.setDefaultRate(1.0);
+        filter.setRates("getNotesByPatientId=0, getNoteById = 1");
+        filter.start();
+    }
+
+    @Test
+    @DisplayName("Call lines of a method with a zero rate are dropped")
+    void decide_whenMethodRateIsZero_thenDeny() {
+        FilterReply reply = filter.decide(null, null, Level.INFO, "[CONTROLLER API]-> call method : getNotesByPatientId [PARAM]-> patientId = {}", null, null);
+        assertEquals(FilterReply.DENY, reply);
+    }
+
+    @Test
+    @DisplayName("Call lines of other methods use the default rate")
+    void decide_whenMethodHasNoRate_thenUseDefaultRate() {
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, null, Level.INFO, "[SERVICE]-> call method : getAllNotes", null, null));
+        filter.setDefaultRate(0);
+        assertEquals(FilterReply.DENY, filter.decide(null, null, Level.INFO, "[SERVICE]-> call method : getAllNotes", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, null, Level.INFO, "[SERVICE]-> call method : getNoteById [PARAM]-> id = {}", null, null));
+    }
+
+    @Test
+    @DisplayName("Warnings and lines without call method are never sampled")
+    void decide_whenNotACallLine_thenNeutral() {
+        filter.setDefaultRate(0);
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, null, Level.WARN, "[CONTROLLER API]-> call method : getNotesByPatientId", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, null, Level.INFO, "[TRIGGER]-> trigger index rebuild started [PARAM]-> checkpoint = {}", null, null));
+    }
+}
@@ -0,0 +1,162 @@
+package com.openclassroomsProject.Mediscreennotes.search;
+
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchHit;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSearchResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteSearchIndexTest {
+
+    @Mock
+    private INoteService noteService;
+
+    @Spy
+    private NoteProperties noteProperties = new NoteProperties();
+
+    @InjectMocks
+    private NoteSearchIndex noteSearchIndex;
+
+    @BeforeEach
+    void startIndex() {
+        noteProperties.getSearch().setRefreshInterval(Duration.ofHours(1));
+        noteProperties.getSearch().setSyncInterval(Duration.ofHours(1));
+        lenient().when(noteService.getChangesSince(any(), anyInt())).thenReturn(new NoteChanges(List.of(), List.of(), "watermark", true));
+        noteSearchIndex.start();
+        // Initial synchronization, run in background by start
+        verify(noteService, timeout(5000)).getChangesSince(any(), anyInt());
+        noteSearchIndex.onNotesInserted(new NotesInsertedEvent(List.of(
+                new Note("1", 1, "Le patient déclare que l'hémoglobine A1C est élevée"),
+                new Note("2", 2, "Patient reports Microalbumin above normal, smoker since 2010"),
+                new Note("3", 2, "Hemoglobin A1C within range, no reaction to the treatment"),
+                new Note("4", 3, "Antibodies detected, reactions observed"))));
+        noteSearchIndex.refresh();
+    }
+
+    @AfterEach
+    void stopIndex() {
+        noteSearchIndex.stop();
+    }
+
+    @Test
+    @DisplayName("Accents, case and elisions are ignored")
+    void search_whenQueryHasNoAccents_thenAccentuatedCommentsMatch() {
+        NoteSearchResult result = noteSearchIndex.search("HEMOGLOBINE elevee", null, 0, 10);
+        assertThat(result.getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("1");
+        assertEquals(1, result.getHits().get(0).getPatientId());
+        assertThat(result.getHits().get(0).getHighlight()).contains("hémoglobine</b>", "<b>élevée</b>");
+    }
+
+    @Test
+    @DisplayName("Phrase and prefix queries")
+    void search_whenQueryHasPhraseOrPrefix_thenOnlyMatchingNotesAreReturned() {
+        assertThat(noteSearchIndex.search("\"A1C within\"", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("3");
+        assertThat(noteSearchIndex.search("microalb*", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("2");
+    }
+
+    @Test
+    @DisplayName("Plural forms match the singular")
+    void search_whenQueryIsSingular_thenPluralFormsMatch() {
+        assertThat(noteSearchIndex.search("reaction", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactlyInAnyOrder("3", "4");
+        assertThat(noteSearchIndex.search("antibody", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("4");
+    }
+
+    @Test
+    @DisplayName("Search the notes of one patient, page by page")
+    void search_whenPatientAndPageAreGiven_thenReturnThePageOfThePatientNotes() {
+        NoteSearchResult firstPage = noteSearchIndex.search("patient | a1c", 2, 0, 1);
+        NoteSearchResult secondPage = noteSearchIndex.search("patient | a1c", 2, 1, 1);
+        assertEquals(2, firstPage.getTotalHits());
+        assertTrue(firstPage.isTotalHitsExact());
+        assertEquals(1, firstPage.getHits().size());
+        assertEquals(1, secondPage.getHits().size());
+        assertThat(List.of(firstPage.getHits().get(0).getNoteId(), secondPage.getHits().get(0).getNoteId())).containsExactlyInAnyOrder("2", "3");
+        assertThat(noteSearchIndex.search("patient | a1c", 2, 2, 1).getHits()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Updated and deleted notes are applied from the events")
+    void onNoteChanged_whenNoteIsUpdatedThenDeleted_thenTheIndexFollows() {
+        Note previous = new Note("2", 2, "Patient reports Microalbumin above normal, smoker since 2010");
+        Note current = new Note("2", 2, "Patient stopped smoking");
+        noteSearchIndex.onNoteChanged(new NoteChangedEvent(previous, current));
+        noteSearchIndex.refresh();
+        assertThat(noteSearchIndex.search("microalbumin", null, 0, 10).getHits()).isEmpty();
+        assertThat(noteSearchIndex.search("stopped", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("2");
+        noteSearchIndex.onNoteChanged(new NoteChangedEvent(current, null));
+        noteSearchIndex.refresh();
+        assertThat(noteSearchIndex.search("stopped", null, 0, 10).getHits()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("The changes read from the database are applied")
+    void synchronize_whenChangesAreRead_thenNotesAreIndexedAndTombstonesRemoved() {
+        when(noteService.getChangesSince("watermark", 1000)).thenReturn(new NoteChanges(
+                List.of(new Note("5", 4, "Dizziness reported")), List.of(new NoteTombstone("4", 3, new Date())), "next", true));
+        noteSearchIndex.synchronize();
+        assertThat(noteSearchIndex.search("dizziness", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("5");
+        assertThat(noteSearchIndex.search("antibodies", null, 0, 10).getHits()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A search does not see the writes before the index is refreshed")
+    void search_whenIndexIsNotRefreshed_thenTheLastWritesAreNotSeen() {
+        noteSearchIndex.onNoteChanged(new NoteChangedEvent(null, new Note("6", 5, "Vertigo reported")));
+        assertThat(noteSearchIndex.search("vertigo", null, 0, 10).getHits()).isEmpty();
+        noteSearchIndex.refresh();
+        assertThat(noteSearchIndex.search("vertigo", null, 0, 10).getHits()).extracting(NoteSearchHit::getNoteId).containsExactly("6");
+    }
+
+    @Test
+    @DisplayName("A write.lock left by a crash does not prevent a restart, a running instance does")
+    void start_whenIndexPathIsLocked_thenOnlyARunningInstanceIsRejected(@TempDir Path indexPath) throws IOException {
+        Files.createFile(indexPath.resolve("write.lock"));
+        NoteSearchIndex runningIndex = onDisk(indexPath);
+        runningIndex.start();
+        try {
+            assertThrows(IllegalStateException.class, () -> onDisk(indexPath).start());
+        } finally {
+            runningIndex.stop();
+        }
+    }
+
+    private NoteSearchIndex onDisk(Path indexPath) {
+        NoteProperties properties = new NoteProperties();
+        properties.getSearch().setIndexPath(indexPath.toString());
+        properties.getSearch().setSyncInterval(Duration.ofHours(1));
+        NoteSearchIndex index = new NoteSearchIndex();
+        ReflectionTestUtils.setField(index, "noteService", noteService);
+        ReflectionTestUtils.setField(index, "noteProperties", properties);
+        return index;
+    }
+}
@@ -1,18 +1,57 @@
 package com.openclassroomsProject.Mediscreennotes.service.impl;
 
+import com.mongodb.ReadPreference;
+import com.mongodb.bulk.BulkWriteError;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNotesCache;
+import com.openclassroomsProject.Mediscreennotes.config.CausalReadContext;
+import com.openclassroomsProject.Mediscreennotes.config.NotePreviewCallback;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.event.NotesInsertedEvent;
+import com.openclassroomsProject.Mediscreennotes.exception.NoteVersionConflictException;
+import com.openclassroomsProject.Mediscreennotes.exception.WatermarkExpiredException;
+import com.openclassroomsProject.Mediscreennotes.metrics.NoteMetrics;
 import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.NoteChanges;
+import com.openclassroomsProject.Mediscreennotes.model.NoteDeadLetter;
+import com.openclassroomsProject.Mediscreennotes.model.NoteIngestResult;
+import com.openclassroomsProject.Mediscreennotes.model.NoteSummary;
+import com.openclassroomsProject.Mediscreennotes.model.NoteTombstone;
+import com.openclassroomsProject.Mediscreennotes.model.PatientNoteVersion;
+import com.openclassroomsProject.Mediscreennotes.model.enums.IngestStatus;
 import com.openclassroomsProject.Mediscreennotes.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -22,9 +61,41 @@ class NoteServiceImplTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private NoteMetrics noteMetrics;
+
+    @Mock
+    private CausalReadContext causalReadContext;
+
+    @Spy
+    private NoteProperties noteProperties = new NoteProperties();
+
+    @Mock
+    private PatientNoteVersionTracker patientNoteVersionTracker;
+
+    @Spy
+    private PatientNotesCache patientNotesCache = new PatientNotesCache(new NoteProperties(), new SimpleMeterRegistry());
+
     @InjectMocks
     private NoteServiceImpl noteService;
 
+    private static final PatientNoteVersion VERSION = version(1L);
+
+    private static PatientNoteVersion version(long number) {
+        PatientNoteVersion version = new PatientNoteVersion();
+        version.setPatientId(1);
+        version.setVersion(number);
+        version.setLastModified(new Date());
+        version.setEpoch(1L);
+        return version;
+    }
+
     @Test
     @DisplayName("The resource exist")
     void getNoteById_whenNoteExist_thenReturnTheNote() {
@@ -33,7 +104,7 @@ class NoteServiceImplTest {
         String comment = "Test comment";
         Note note = new Note("1", patientId, comment);
         when(noteRepository.findById(noteId)).thenReturn(Optional.of(note));
-        Optional<Note> result = noteService.getNoteById(noteId);
+        Optional<Note> result = noteService.getNoteById(noteId, null);
         assertTrue(result.isPresent());
         assertEquals(noteId, result.get().getId());
         assertEquals(comment, result.get().getComment());
@@ -46,11 +117,23 @@ class NoteServiceImplTest {
     void getNoteById_whenNoteDoesNotExist_thenReturnAnEmptyOptional() {
         String noteId = "1";
         when(noteRepository.findById(noteId)).thenReturn(Optional.empty());
-        Optional<Note> result = noteService.getNoteById(noteId);
+        Optional<Note> result = noteService.getNoteById(noteId, null);
         assertTrue(result.isEmpty());
         verify(noteRepository, times(1)).findById(noteId);
     }
 
+    @Test
+    @DisplayName("The patient routes the read of a note")
+    void getNoteById_whenPatientIsGiven_thenQueryByIdAndPatient() {
+        Note note = new Note("1", 2, "Test comment");
+        when(mongoTemplate.findOne(any(Query.class), eq(Note.class))).thenReturn(note);
+        assertEquals(Optional.of(note), noteService.getNoteById("1", 2));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(query.capture(), eq(Note.class));
+        assertEquals("{\"_id\": \"1\", \"patientId\": 2}", query.getValue().getQueryObject().toJson());
+        verify(noteRepository, never()).findById(any());
+    }
+
     @Test
     @DisplayName("Resource list exist for this patient")
     void getAllNotesByPatientId_whenNotesExist_thenReturnTheCorrectList() {
@@ -63,6 +146,7 @@ class NoteServiceImplTest {
         Note note2 = new Note(note2Id, patientId, comment2);
         List<Note> notes = Arrays.asList(note1, note2);
         when(noteRepository.findByPatientId(patientId)).thenReturn(notes);
+        when(patientNoteVersionTracker.getVersion(patientId)).thenReturn(VERSION);
         List<Note> result = noteService.getAllNotesByPatientId(patientId);
         assertEquals(notes.size(), result.size());
         assertEquals(notes.get(0).getId(), result.get(0).getId());
@@ -72,6 +156,7 @@ class NoteServiceImplTest {
         assertEquals(notes.get(0).getComment(), result.get(0).getComment());
         assertEquals(notes.get(1).getComment(), result.get(1).getComment());
         verify(noteRepository, times(1)).findByPatientId(patientId);
+        verify(noteMetrics, times(1)).recordPatientNotes(2);
     }
 
     @Test
@@ -79,11 +164,101 @@ class NoteServiceImplTest {
     void getAllNotesByPatientId_whenNotesDoesNotExist_thenReturnAnEmptyList() {
         Integer patientId = 1;
         when(noteRepository.findByPatientId(patientId)).thenReturn(new ArrayList<>());
-        List<Note> result = noteService.getAllNotesByPatientId(patientId);
+        List<Note> result = noteService.getAllNotesByPatientId(patientId, VERSION);
         assertTrue(result.isEmpty());
         verify(noteRepository, times(1)).findByPatientId(patientId);
     }
 
+    @Test
+    @DisplayName("Resource list is read from the cache once loaded")
+    void getAllNotesByPatientId_whenCalledTwice_thenTheRepositoryIsCalledOnce() {
+        Integer patientId = 1;
+        List<Note> notes = List.of(new Note("1", patientId, "Comment number 1"));
+        when(noteRepository.findByPatientId(patientId)).thenReturn(notes);
+        noteService.getAllNotesByPatientId(patientId, VERSION);
+        List<Note> result = noteService.getAllNotesByPatientId(patientId, VERSION);
+        assertEquals(notes, result);
+        verify(noteRepository, times(1)).findByPatientId(patientId);
+    }
+
+    @Test
+    @DisplayName("Resource list is read again after a write on the patient")
+    void getAllNotesByPatientId_whenPatientNoteIsWritten_thenTheCacheIsInvalidated() {
+        Integer patientId = 1;
+        Note note = new Note("1", patientId, "Comment number 1");
+        when(noteRepository.findByPatientId(patientId)).thenReturn(List.of(note));
+        noteService.getAllNotesByPatientId(patientId, VERSION);
+        patientNotesCache.onNoteChanged(new NoteChangedEvent(null, note));
+        noteService.getAllNotesByPatientId(patientId, VERSION);
+        verify(noteRepository, times(2)).findByPatientId(patientId);
+    }
+
+    @Test
+    @DisplayName("Resource list cached under an older version is read again")
+    void getAllNotesByPatientId_whenVersionHasChanged_thenTheListIsReadAgain() {
+        Integer patientId = 1;
+        List<Note> notes = List.of(new Note("1", patientId, "Comment number 1"));
+        List<Note> written = List.of(new Note("1", patientId, "Comment number 1"), new Note("2", patientId, "Comment number 2"));
+        when(noteRepository.findByPatientId(patientId)).thenReturn(notes, written);
+        assertEquals(notes, noteService.getAllNotesByPatientId(patientId, VERSION));
+        PatientNoteVersion next = version(2L);
+        assertEquals(written, noteService.getAllNotesByPatientId(patientId, next));
+        assertEquals(written, noteService.getAllNotesByPatientId(patientId, next));
+        verify(noteRepository, times(2)).findByPatientId(patientId);
+        noteProperties.getReads().setPreferences("getAllNotesByPatientId=secondaryPreferred");
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(written);
+        noteService.getAllNotesByPatientId(patientId, version(3L));
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Note.class));
+    }
+
+    @Test
+    @DisplayName("Resource list read from a secondary does not fill the cache")
+    void getAllNotesByPatientId_whenSecondaryIsPreferred_thenTheListIsNotCached() {
+        noteProperties.getReads().setPreferences("getAllNotesByPatientId=secondaryPreferred");
+        Integer patientId = 1;
+        List<Note> notes = List.of(new Note("1", patientId, "Comment number 1"));
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(notes);
+        assertEquals(notes, noteService.getAllNotesByPatientId(patientId, VERSION));
+        noteService.getAllNotesByPatientId(patientId, VERSION);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(Note.class));
+        assertEquals(ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), query.getValue().getReadPreference());
+        assertEquals("{\"patientId\": 1}", query.getValue().getQueryObject().toJson());
+        verify(noteRepository, never()).findByPatientId(any());
+    }
+
+    @Test
+    @DisplayName("Resource list cached by a read of the primary is served to the reads of the secondaries")
+    void getAllNotesByPatientId_whenListIsCached_thenTheSecondaryIsNotRead() {
+        Integer patientId = 1;
+        List<Note> notes = List.of(new Note("1", patientId, "Comment number 1"));
+        when(noteRepository.findByPatientId(patientId)).thenReturn(notes);
+        noteService.getAllNotesByPatientId(patientId, VERSION);
+        noteProperties.getReads().setPreferences("getAllNotesByPatientId=secondaryPreferred");
+        assertEquals(notes, noteService.getAllNotesByPatientId(patientId, VERSION));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Note.class));
+    }
+
+    @Test
+    @DisplayName("The version of a list read from the secondaries is read with the same read preference, after the sent operation time")
+    void getPatientNoteVersion_whenSecondaryIsPreferred_thenTheVersionIsReadLikeTheNotes() {
+        BsonTimestamp readAfter = new BsonTimestamp(1700000000, 1);
+        when(causalReadContext.getReadAfter()).thenReturn(readAfter);
+        when(patientNoteVersionTracker.getVersion(1)).thenReturn(VERSION);
+        assertEquals(VERSION, noteService.getPatientNoteVersion(1, "getAllNotesByPatientId"));
+        noteProperties.getReads().setPreferences("getAllNotesByPatientId=secondaryPreferred");
+        PatientNoteVersion secondary = version(1L);
+        when(patientNoteVersionTracker.getVersion(1, ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), readAfter)).thenReturn(secondary);
+        assertEquals(secondary, noteService.getPatientNoteVersion(1, "getAllNotesByPatientId"));
+        verify(patientNoteVersionTracker, times(1)).getVersion(1);
+    }
+
+    @Test
+    @DisplayName("An unknown read preference is refused")
+    void setPreferences_whenModeIsUnknown_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> noteProperties.getReads().setPreferences("getAllNotes=anywhere"));
+    }
+
     @Test
     @DisplayName("Get a list with random number of resources")
     void getAllNotes_whenNumberOfNotesIsRandom_thenReturnTheCorrectList() {
@@ -105,6 +280,41 @@ class NoteServiceImplTest {
         verify(noteRepository, times(1)).findAll();
     }
 
+    @Test
+    @DisplayName("Get the first page of resources")
+    void getNotesPage_whenNoCursor_thenReturnTheFirstPage() {
+        List<Note> notes = Arrays.asList(new Note("1", 1, "comment1"), new Note("2", 1, "comment2"));
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("id"));
+        when(noteRepository.findAllBy(pageRequest)).thenReturn(notes);
+        List<Note> result = noteService.getNotesPage(null, 2);
+        assertEquals(notes, result);
+        verify(noteRepository, times(1)).findAllBy(pageRequest);
+        verify(noteRepository, never()).findByIdGreaterThan(any(), any());
+    }
+
+    @Test
+    @DisplayName("Get the page of resources following a cursor")
+    void getNotesPage_whenCursorIsGiven_thenReturnTheNotesAfterIt() {
+        List<Note> notes = List.of(new Note("3", 2, "comment3"));
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("id"));
+        when(noteRepository.findByIdGreaterThan("2", pageRequest)).thenReturn(notes);
+        List<Note> result = noteService.getNotesPage("2", 2);
+        assertEquals(notes, result);
+        verify(noteRepository, times(1)).findByIdGreaterThan("2", pageRequest);
+    }
+
+    @Test
+    @DisplayName("Stream all resources")
+    void streamAllNotes_thenReturnTheRepositoryStream() {
+        List<Note> notes = Arrays.asList(new Note("1", 1, "comment1"), new Note("2", 2, "comment2"));
+        when(noteRepository.streamAllBy()).thenReturn(notes.stream());
+        try (Stream<Note> result = noteService.streamAllNotes()) {
+            assertEquals(notes, result.collect(Collectors.toList()));
+        }
+        verify(noteRepository, times(1)).streamAllBy();
+        verify(noteRepository, never()).findAll();
+    }
+
     @Test
     @DisplayName("Create a new resource")
     void createNote_whenNoteExist_thenReturnTheCreatedNote() {
@@ -115,23 +325,223 @@ class NoteServiceImplTest {
         Note result = noteService.createNote(note);
         assertEquals(note, result);
         verify(noteRepository, times(1)).insert(note);
+        ArgumentCaptor<NoteChangedEvent> event = ArgumentCaptor.forClass(NoteChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertNull(event.getValue().getPrevious());
+        assertEquals(note, event.getValue().getCurrent());
+    }
+
+    @Test
+    @DisplayName("Create a batch of resources")
+    void createNotes_whenSomeNotesAreInvalid_thenOnlyTheValidNotesAreInserted() {
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        Note validNote = new Note(1, "Comment test");
+        Note invalidNote = new Note(null, "Comment test");
+        List<NoteIngestResult> results = noteService.createNotes(Arrays.asList(validNote, invalidNote));
+        assertEquals(2, results.size());
+        assertEquals(IngestStatus.CREATED, results.get(0).getStatus());
+        assertNotNull(results.get(0).getId());
+        assertEquals(validNote.getId(), results.get(0).getId());
+        assertEquals(IngestStatus.FAILED, results.get(1).getStatus());
+        verify(bulkOperations, times(1)).insert(List.of(validNote));
+        verify(bulkOperations, times(1)).execute();
+        verify(eventPublisher, times(1)).publishEvent(any(NotesInsertedEvent.class));
     }
 
     @Test
     @DisplayName("Update an existing note")
     void updateNote_whenNoteAlreadyExist_thenReturnTheModifiedNote() {
-        Note note = new Note();
-        when(noteRepository.save(note)).thenReturn(note);
-        Note result = noteService.updateNote(note);
-        assertEquals(note, result);
-        verify(noteRepository, times(1)).save(note);
+        Note previousNote = new Note("1", 1, "comment");
+        previousNote.setVersion(3L);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class))).thenReturn(previousNote);
+        Optional<Note> result = noteService.updateNote(new Note("1", null, "new comment"));
+        assertTrue(result.isPresent());
+        assertEquals("new comment", result.get().getComment());
+        assertEquals(1, result.get().getPatientId());
+        assertEquals(4L, result.get().getVersion());
+        verify(noteRepository, never()).findById(any());
+        ArgumentCaptor<NoteChangedEvent> event = ArgumentCaptor.forClass(NoteChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(previousNote, event.getValue().getPrevious());
+        assertEquals(result.get(), event.getValue().getCurrent());
+    }
+
+    @Test
+    @DisplayName("Update a note that does not exist")
+    void updateNote_whenNoteDoesNotExist_thenReturnAnEmptyOptional() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class))).thenReturn(null);
+        assertTrue(noteService.updateNote(new Note("1", null, "new comment")).isEmpty());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("Update a note at another version than the expected one")
+    void updateNote_whenVersionDoesNotMatch_thenThrowAConflict() {
+        Note note = new Note("1", null, "new comment");
+        note.setVersion(2L);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Note.class))).thenReturn(true);
+        assertThrows(NoteVersionConflictException.class, () -> noteService.updateNote(note));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("The conditional write query treats a missing version as version 0")
+    void byIdAndVersion_whenVersionIsZero_thenMatchMissingVersion() {
+        assertEquals("{\"_id\": \"1\"}", NoteServiceImpl.byIdAndVersion("1", null, null).getQueryObject().toJson());
+        assertEquals("{\"_id\": \"1\", \"version\": 5}", NoteServiceImpl.byIdAndVersion("1", null, 5L).getQueryObject().toJson());
+        assertEquals("{\"_id\": \"1\", \"version\": {\"$in\": [0, null]}}", NoteServiceImpl.byIdAndVersion("1", null, 0L).getQueryObject().toJson());
+        assertEquals("{\"_id\": \"1\", \"patientId\": 3, \"version\": 5}", NoteServiceImpl.byIdAndVersion("1", 3, 5L).getQueryObject().toJson());
     }
 
     @Test
     @DisplayName("Delete an existing note")
     void deleteNoteById_whenNoteAlreadyExist_thenRepositoryIsCall() {
         String noteId = "1";
-        noteService.deleteNoteById(noteId);
-        verify(noteRepository, times(1)).deleteById(noteId);
+        Note note = new Note(noteId, 1, "comment");
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Note.class))).thenReturn(note);
+        assertTrue(noteService.deleteNoteById(noteId, null, null));
+        verify(noteRepository, never()).findById(any());
+        ArgumentCaptor<NoteChangedEvent> event = ArgumentCaptor.forClass(NoteChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(note, event.getValue().getPrevious());
+        assertNull(event.getValue().getCurrent());
+        ArgumentCaptor<NoteTombstone> tombstone = ArgumentCaptor.forClass(NoteTombstone.class);
+        verify(mongoTemplate, times(1)).save(tombstone.capture());
+        assertEquals(noteId, tombstone.getValue().getId());
+        assertEquals(1, tombstone.getValue().getPatientId());
+    }
+
+    @Test
+    @DisplayName("Delete a note that does not exist")
+    void deleteNoteById_whenNoteDoesNotExist_thenReturnFalse() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Note.class))).thenReturn(null);
+        assertFalse(noteService.deleteNoteById("1", null, null));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Note.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("Get the changes of a first sync, complete")
+    void getChangesSince_whenAllChangesFit_thenReturnCompleteChangesAndAdvanceTheWatermark() {
+        Note note = new Note("1", 1, "comment");
+        note.setUpdatedAt(new Date(1000));
+        NoteTombstone tombstone = new NoteTombstone("2", 1, new Date(2000));
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note));
+        when(mongoTemplate.find(any(Query.class), eq(NoteTombstone.class))).thenReturn(List.of(tombstone));
+        NoteChanges result = noteService.getChangesSince(null, 10);
+        assertTrue(result.isComplete());
+        assertEquals(List.of(note), result.getNotes());
+        assertEquals(List.of(tombstone), result.getDeleted());
+        ChangeWatermark watermark = ChangeWatermark.decode(result.getWatermark());
+        assertEquals(1000, watermark.noteTime);
+        assertEquals("1", watermark.noteId);
+        assertEquals(2000, watermark.tombstoneTime);
+        assertEquals("2", watermark.tombstoneId);
+        assertTrue(watermark.syncedAt > 0);
+    }
+
+    @Test
+    @DisplayName("Get more changes than the limit")
+    void getChangesSince_whenMoreChangesThanTheLimit_thenReturnIncompleteChangesAndKeepTheSyncDate() {
+        Note first = new Note("1", 1, "comment");
+        first.setUpdatedAt(new Date(1000));
+        Note second = new Note("2", 1, "comment");
+        second.setUpdatedAt(new Date(1000));
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(first, second));
+        when(mongoTemplate.find(any(Query.class), eq(NoteTombstone.class))).thenReturn(List.of());
+        NoteChanges result = noteService.getChangesSince(null, 1);
+        assertFalse(result.isComplete());
+        assertEquals(List.of(first), result.getNotes());
+        ChangeWatermark watermark = ChangeWatermark.decode(result.getWatermark());
+        assertEquals("1", watermark.noteId);
+        assertEquals(0, watermark.syncedAt);
+    }
+
+    @Test
+    @DisplayName("Get the changes since a watermark older than the tombstone retention")
+    void getChangesSince_whenWatermarkIsExpired_thenThrowAnException() {
+        long expired = System.currentTimeMillis() - noteProperties.getSync().getTombstoneRetention().toMillis() - 1;
+        String watermark = new ChangeWatermark(0, "", 0, "", expired).encode();
+        assertThrows(WatermarkExpiredException.class, () -> noteService.getChangesSince(watermark, 10));
+        verify(mongoTemplate, never()).find(any(Query.class), any());
+    }
+
+    @Test
+    @DisplayName("Get the changes since an invalid watermark")
+    void getChangesSince_whenWatermarkIsInvalid_thenThrowAnException() {
+        assertThrows(IllegalArgumentException.class, () -> noteService.getChangesSince("not a watermark", 10));
+    }
+
+    @Test
+    @DisplayName("A summary keeps the preview length of the stored preview")
+    void toSummary_whenCommentIsLongerThanThePreview_thenItIsTruncated() {
+        Document text = new Document("_id", "1").append("patientId", 1).append("version", 2L).append("preview", "abcdef");
+        NoteSummary textSummary = NoteServiceImpl.toSummary(text, 5);
+        assertEquals("abcde", textSummary.getPreview());
+        assertTrue(textSummary.isTruncated());
+        assertEquals(2L, textSummary.getVersion());
+        assertFalse(NoteServiceImpl.toSummary(new Document("_id", "3").append("preview", "abc"), 5).isTruncated());
+    }
+
+    @Test
+    @DisplayName("The stored preview keeps one character more than the preview length, whole code points")
+    void preview_whenCommentIsLongerThanThePreview_thenOneMoreCharacterIsKept() {
+        assertEquals("abcdef", NotePreviewCallback.preview("abcdefgh", 5));
+        assertEquals("abc", NotePreviewCallback.preview("abc", 5));
+        assertEquals("\uD83D\uDE00".repeat(3), NotePreviewCallback.preview("\uD83D\uDE00".repeat(10), 2));
+        assertNull(NotePreviewCallback.preview(null, 5));
+    }
+
+    @Test
+    @DisplayName("A journaled note rejected by the database is kept in the dead letters, a duplicate is skipped")
+    void insertJournaledNotes_whenNotesAreRejected_thenOnlyTheInvalidOnesAreDeadLettered() {
+        List<Note> notes = List.of(new Note("1", 1, "inserted"), new Note("2", 1, "duplicate"), new Note("3", -1, "invalid"));
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1),
+                new BulkWriteError(121, "Document failed validation", new BsonDocument(), 2)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(exception);
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(new Note("2", 1, "duplicate")));
+        List<Note> inserted = noteService.insertJournaledNotes(notes);
+        assertEquals(List.of(notes.get(0)), inserted);
+        ArgumentCaptor<NoteDeadLetter> deadLetter = ArgumentCaptor.forClass(NoteDeadLetter.class);
+        verify(mongoTemplate, times(1)).save(deadLetter.capture());
+        assertEquals("3", deadLetter.getValue().getId());
+        assertEquals(121, deadLetter.getValue().getErrorCode());
+        assertSame(notes.get(2), deadLetter.getValue().getNote());
+        verify(eventPublisher).publishEvent(any(NotesInsertedEvent.class));
+    }
+
+    @Test
+    @DisplayName("A journaled note whose id is taken by another note is kept in the dead letters")
+    void insertJournaledNotes_whenIdIsTakenByAnotherNote_thenTheNoteIsDeadLettered() {
+        Note note = new Note("1", 1, "journaled");
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(exception);
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(new Note("1", 2, "another note")));
+        assertTrue(noteService.insertJournaledNotes(List.of(note)).isEmpty());
+        ArgumentCaptor<NoteDeadLetter> deadLetter = ArgumentCaptor.forClass(NoteDeadLetter.class);
+        verify(mongoTemplate, times(1)).save(deadLetter.capture());
+        assertEquals(11000, deadLetter.getValue().getErrorCode());
+        assertSame(note, deadLetter.getValue().getNote());
+        verify(eventPublisher, never()).publishEvent(any(NotesInsertedEvent.class));
+    }
+
+    @Test
+    @DisplayName("A rejected journaled note that can not be dead lettered fails the flush, to be flushed again")
+    void insertJournaledNotes_whenDeadLetterCanNotBeSaved_thenTheFlushFails() {
+        BulkOperations bulkOperations = mock(BulkOperations.class);
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(new BulkWriteError(121, "Document failed validation", new BsonDocument(), 0)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(exception);
+        when(mongoTemplate.save(any(NoteDeadLetter.class))).thenThrow(new DataAccessResourceFailureException("Database down"));
+        assertThrows(DataAccessResourceFailureException.class, () -> noteService.insertJournaledNotes(List.of(new Note("1", -1, "invalid"))));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import com.openclassroomsProject.Mediscreennotes.event.NoteChangedEvent;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import com.openclassroomsProject.Mediscreennotes.service.ITriggerService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration test of the trigger index against the writes running while the counts are computed.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest
+@Testcontainers
+class PatientTriggerIndexTest {
+
+    private static final Integer PATIENT_ID = 301;
+    private static final int MAX_COUNTED_NOTES = 2;
+
+    @SpyBean
+    private PatientTriggerIndex patientTriggerIndex;
+
+    @Autowired
+    private TriggerMatcherProvider matcherProvider;
+
+    @Autowired
+    private ITriggerService triggerService;
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+        registry.add("mediscreen.triggers.max-counted-notes", () -> MAX_COUNTED_NOTES);
+    }
+
+    @BeforeEach
+    void clear() {
+        mongoTemplate.remove(new Query(), Note.class);
+        mongoTemplate.remove(new Query(), PatientTriggerIndex.COLLECTION);
+    }
+
+    @Test
+    @DisplayName("A note created between the count and the write of the counts is counted")
+    void indexPatient_whenNoteIsCreatedDuringTheCount_thenItIsCounted() {
+        noteService.createNote(new Note(null, PATIENT_ID, "Smoker"));
+        createNoteAfterFirstCount("Smoker since 1990");
+
+        assertEquals(2, triggerService.countTriggersByPatientId(PATIENT_ID).getCounts().get("Smoker"));
+        assertEquals(2, indexedSmokerCount());
+        verify(patientTriggerIndex, times(2)).computeCounts(eq(PATIENT_ID), any());
+    }
+
+    @Test
+    @DisplayName("A note created between the count and the write of the counts of a rebuild is counted")
+    void reindexPatient_whenNoteIsCreatedDuringTheCount_thenItIsCounted() {
+        noteService.createNote(new Note(null, PATIENT_ID, "Smoker"));
+        triggerService.countTriggersByPatientId(PATIENT_ID);
+        createNoteAfterFirstCount("Smoker again");
+
+        patientTriggerIndex.reindexPatient(PATIENT_ID, matcherProvider.getMatcher());
+
+        assertEquals(2, indexedSmokerCount());
+    }
+
+    @Test
+    @DisplayName("The difference of a note already counted is not applied twice")
+    void onNoteChanged_whenNoteIsAlreadyCounted_thenItIsNotCountedTwice() {
+        Note note = mongoTemplate.insert(new Note(null, PATIENT_ID, "Smoker"));
+        triggerService.countTriggersByPatientId(PATIENT_ID);
+
+        patientTriggerIndex.onNoteChanged(new NoteChangedEvent(null, note));
+
+        assertEquals(1, indexedSmokerCount());
+    }
+
+    @Test
+    @DisplayName("Updates applied out of order clear the counts, which are then computed again")
+    void onNoteChanged_whenUpdatesAreAppliedOutOfOrder_thenTheCountsAreComputedAgain() {
+        Note note = noteService.createNote(new Note(null, PATIENT_ID, "Smoker"));
+        triggerService.countTriggersByPatientId(PATIENT_ID);
+        noteService.updateNote(new Note(note.getId(), PATIENT_ID, "Relapse"));
+        Note updated = noteService.updateNote(new Note(note.getId(), PATIENT_ID, "Smoker relapse")).orElseThrow();
+
+        Note firstUpdate = new Note(note.getId(), PATIENT_ID, "Relapse");
+        firstUpdate.setVersion(1L);
+        patientTriggerIndex.onNoteChanged(new NoteChangedEvent(firstUpdate, updated));
+
+        assertTrue(patientTriggerIndex.findCounts(PATIENT_ID, matcherProvider.getMatcher()).isPresent());
+        Note laterUpdate = new Note(note.getId(), PATIENT_ID, "Dizziness");
+        laterUpdate.setVersion(4L);
+        Note previous = new Note(note.getId(), PATIENT_ID, "Smoker relapse");
+        previous.setVersion(3L);
+        patientTriggerIndex.onNoteChanged(new NoteChangedEvent(previous, laterUpdate));
+
+        assertTrue(patientTriggerIndex.findCounts(PATIENT_ID, matcherProvider.getMatcher()).isEmpty());
+        assertEquals(1, triggerService.countTriggersByPatientId(PATIENT_ID).getCounts().get("Smoker"));
+    }
+
+    @Test
+    @DisplayName("A created note that does not fit in the list of counted notes clears the counts, which are then computed again")
+    void onNoteChanged_whenCountedNotesAreFull_thenTheCountsAreComputedAgain() {
+        noteService.createNote(new Note(null, PATIENT_ID, "Smoker"));
+        noteService.createNote(new Note(null, PATIENT_ID, "Smoker again"));
+        assertEquals(2, triggerService.countTriggersByPatientId(PATIENT_ID).getCounts().get("Smoker"));
+
+        noteService.createNote(new Note(null, PATIENT_ID, "Still a smoker"));
+
+        assertTrue(patientTriggerIndex.findCounts(PATIENT_ID, matcherProvider.getMatcher()).isEmpty());
+        assertEquals(3, triggerService.countTriggersByPatientId(PATIENT_ID).getCounts().get("Smoker"));
+        assertFalse(indexedEntry().containsKey("notes"));
+    }
+
+    @Test
+    @DisplayName("A patient with more notes than the list bound is counted without listing them, and counted again after a write")
+    void onNoteChanged_whenNotesAreNotListed_thenTheCountsAreComputedAgain() {
+        for (int index = 0; index <= MAX_COUNTED_NOTES; index++) {
+            mongoTemplate.insert(new Note(null, PATIENT_ID, "Smoker"));
+        }
+        assertEquals(MAX_COUNTED_NOTES + 1, indexedSmokerCount(patientTriggerIndex.indexPatient(PATIENT_ID, matcherProvider.getMatcher())));
+        assertFalse(indexedEntry().containsKey("notes"));
+
+        noteService.createNote(new Note(null, PATIENT_ID, "Smoker"));
+
+        assertTrue(patientTriggerIndex.findCounts(PATIENT_ID, matcherProvider.getMatcher()).isEmpty());
+        assertEquals(MAX_COUNTED_NOTES + 2, indexedSmokerCount(patientTriggerIndex.indexPatient(PATIENT_ID, matcherProvider.getMatcher())));
+    }
+
+    private Document indexedEntry() {
+        return mongoTemplate.findById(PATIENT_ID, Document.class, PatientTriggerIndex.COLLECTION);
+    }
+
+    private long indexedSmokerCount(long[] counts) {
+        return counts[matcherProvider.getMatcher().getTerms().indexOf("Smoker")];
+    }
+
+    private void createNoteAfterFirstCount(String comment) {
+        AtomicBoolean created = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object counted = invocation.callRealMethod();
+            if (created.compareAndSet(false, true)) {
+                noteService.createNote(new Note(null, PATIENT_ID, comment));
+            }
+            return counted;
+        }).when(patientTriggerIndex).computeCounts(eq(PATIENT_ID), any());
+    }
+
+    private long indexedSmokerCount() {
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        long[] counts = patientTriggerIndex.findCounts(PATIENT_ID, matcher).orElseThrow();
+        return counts[matcher.getTerms().indexOf("Smoker")];
+    }
+}
@@ -0,0 +1,42 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import com.openclassroomsProject.Mediscreennotes.config.TriggerProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TriggerMatcherProviderTest {
+
+    @Mock
+    private TriggerProperties triggerProperties;
+
+    @InjectMocks
+    private TriggerMatcherProvider matcherProvider;
+
+    @Test
+    @DisplayName("The matcher is compiled once and reused while the term list does not change")
+    void getMatcher_whenTermsAreUnchanged_thenTheMatcherIsReused() {
+        when(triggerProperties.getTerms()).thenReturn(List.of("Smoker", "Relapse"));
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        assertSame(matcher, matcherProvider.getMatcher());
+        assertEquals(List.of("Smoker", "Relapse"), matcher.getTerms());
+    }
+
+    @Test
+    @DisplayName("The matcher is compiled again when the term list changes")
+    void getMatcher_whenTermsChange_thenANewMatcherIsCompiled() {
+        when(triggerProperties.getTerms()).thenReturn(List.of("Smoker"), List.of("Smoker", "Dizziness"));
+        TriggerTermMatcher matcher = matcherProvider.getMatcher();
+        TriggerTermMatcher changedMatcher = matcherProvider.getMatcher();
+        assertNotSame(matcher, changedMatcher);
+        assertEquals(List.of("Smoker", "Dizziness"), changedMatcher.getTerms());
+        assertNotEquals(matcher.getFingerprint(), changedMatcher.getFingerprint());
+    }
+}
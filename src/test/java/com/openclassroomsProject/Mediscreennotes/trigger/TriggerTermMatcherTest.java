@@ -0,0 +1,41 @@
+package com.openclassroomsProject.Mediscreennotes.trigger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriggerTermMatcherTest {
+
+    @Test
+    @DisplayName("Terms are matched whatever the case, accents and spacing")
+    void count_whenTextHasCaseAccentsAndSpaces_thenTermsAreFound() {
+        TriggerTermMatcher matcher = TriggerTermMatcher.compile(List.of("Hémoglobine A1C", "Body Height", "Réaction"));
+        long[] result = matcher.count("HEMOGLOBINE   a1c above level, body\theight, reaction and RÉACTION");
+        assertArrayEquals(new long[]{1, 1, 2}, result);
+    }
+
+    @Test
+    @DisplayName("Terms only match whole words")
+    void count_whenTermIsPartOfAWord_thenItIsNotCounted() {
+        TriggerTermMatcher matcher = TriggerTermMatcher.compile(List.of("Smoker", "he", "hers"));
+        long[] result = matcher.count("Smokers, smoker; she ushers hers he");
+        assertArrayEquals(new long[]{1, 1, 1}, result);
+    }
+
+    @Test
+    @DisplayName("Overlapping terms are all counted")
+    void count_whenTermsOverlap_thenEachTermIsCounted() {
+        TriggerTermMatcher matcher = TriggerTermMatcher.compile(List.of("Cholesterol", "Cholesterol LDL"));
+        long[] result = matcher.count("Lab reports Cholesterol LDL high");
+        assertArrayEquals(new long[]{1, 1}, result);
+    }
+
+    @Test
+    @DisplayName("Null text and blank terms never match")
+    void count_whenTextIsNullOrTermIsBlank_thenNothingIsCounted() {
+        TriggerTermMatcher matcher = TriggerTermMatcher.compile(List.of(" ", "Abnormal"));
+        assertArrayEquals(new long[]{0, 0}, matcher.count(null));
+        assertArrayEquals(new long[]{0, 1}, matcher.count("  Abnormal  "));
+    }
+}
@@ -0,0 +1,156 @@
+package com.openclassroomsProject.Mediscreennotes.warmup;
+
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNoteVersionTracker;
+import com.openclassroomsProject.Mediscreennotes.cache.PatientNotesCache;
+import com.openclassroomsProject.Mediscreennotes.config.NoteProperties;
+import com.openclassroomsProject.Mediscreennotes.model.Note;
+import com.openclassroomsProject.Mediscreennotes.model.WarmUpStatus;
+import com.openclassroomsProject.Mediscreennotes.service.INoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test of the warm-up at startup.
+ * * @author jonathan GOUVEIA
+ * * @version 1.0
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"mediscreen.notes.warm-up.enabled=true", "mediscreen.notes.warm-up.requests=10"})
+@Testcontainers
+class NoteWarmUpTest {
+
+    @Autowired
+    private NoteWarmUp noteWarmUp;
+
+    @Autowired
+    private INoteService noteService;
+
+    @Autowired
+    private PatientNotesCache patientNotesCache;
+
+    @Autowired
+    private PatientNoteVersionTracker patientNoteVersionTracker;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private NoteProperties noteProperties;
+
+    @Container
+    private static final MongoDBContainer MONGODB_CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+    @DynamicPropertySource
+    static void setProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGODB_CONTAINER::getReplicaSetUrl);
+    }
+
+    @BeforeEach
+    void insertNotes() {
+        mongoTemplate.remove(new Query(), Note.class);
+        mongoTemplate.getCollection(NoteWarmUp.SAMPLE_COLLECTION).deleteMany(new Document());
+        // Written through the service, which gives the patients a note list version: the lists without version are not cached
+        List.of(new Note(null, 1, "First"), new Note(null, 1, "Second"), new Note(null, 1, "Third"), new Note(null, 2, "First"))
+                .forEach(noteService::createNote);
+        patientNotesCache.evictAll();
+    }
+
+    @Test
+    @DisplayName("Without a recorded sample, the notes of the patients having the most notes are loaded, then the endpoints are called")
+    void run_whenNoSampleIsRecorded_thenTheMostActivePatientsAreWarmedUp() {
+        noteWarmUp.run(null);
+        WarmUpStatus status = noteWarmUp.getStatus();
+        assertEquals("COMPLETED", status.getPhase());
+        assertEquals(NoteWarmUp.MOST_ACTIVE, status.getPatientSource());
+        assertEquals(2, status.getPatients());
+        assertEquals(2, status.getWarmedPatients());
+        assertEquals(10, status.getSentRequests());
+        assertEquals(0, status.getFailedRequests());
+        assertFalse(status.isTimedOut());
+        assertEquals(3, cachedNotes(1).size());
+        assertEquals(1, cachedNotes(2).size());
+        assertNull(meterRegistry.find("http.server.requests").tag("uri", "/api/note/patient/{patientId}").meter());
+        assertNull(meterRegistry.find("mediscreen.http.response.size").tag("uri", "/api/note/patient/{patientId}").meter());
+    }
+
+    @Test
+    @DisplayName("The patients recorded at the last stop are warmed up")
+    void run_whenSampleIsRecorded_thenTheRecordedPatientsAreWarmedUp() {
+        mongoTemplate.getCollection(NoteWarmUp.SAMPLE_COLLECTION).insertOne(
+                new Document("_id", NoteWarmUp.SAMPLE_ID).append(NoteWarmUp.PATIENT_IDS, List.of(2)));
+        noteWarmUp.run(null);
+        WarmUpStatus status = noteWarmUp.getStatus();
+        assertEquals(NoteWarmUp.RECORDED, status.getPatientSource());
+        assertEquals(1, status.getWarmedPatients());
+        assertNotNull(cachedNotes(2));
+        assertNull(cachedNotes(1));
+    }
+
+    @Test
+    @DisplayName("The lists are cached by the warm-up also when they are read from the secondaries")
+    void run_whenPatientListsAreReadFromTheSecondaries_thenTheCacheIsFilled() {
+        noteProperties.getReads().setPreferences("getAllNotesByPatientId=secondaryPreferred");
+        try {
+            noteWarmUp.run(null);
+        } finally {
+            noteProperties.getReads().setPreferences("");
+        }
+        assertEquals(3, cachedNotes(1).size());
+        assertEquals(1, cachedNotes(2).size());
+    }
+
+    @Test
+    @DisplayName("The patients read by the clients are recorded at shutdown, not those read by the warm-up")
+    void recordSample_whenPatientsAreRead_thenOnlyTheReadsOfTheClientsAreRecorded() {
+        restTemplate.getForEntity("/api/note/patient/1", String.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(NoteWarmUp.WARM_UP_HEADER, "true");
+        for (int request = 0; request < 3; request++) {
+            restTemplate.exchange("/api/note/patient/2", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        }
+        noteWarmUp.recordSample();
+        Document sample = mongoTemplate.getCollection(NoteWarmUp.SAMPLE_COLLECTION).find(new Document("_id", NoteWarmUp.SAMPLE_ID)).first();
+        assertNotNull(sample);
+        assertEquals(List.of(1), sample.getList(NoteWarmUp.PATIENT_IDS, Integer.class));
+    }
+
+    @Test
+    @DisplayName("The progress of the warm-up is exposed by the actuator")
+    void warmUpEndpoint_whenCalled_thenReturnsTheStatus() {
+        ResponseEntity<Map> response = restTemplate.getForEntity("/actuator/warmup", Map.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("COMPLETED", response.getBody().get("phase"));
+    }
+
+    private List<Note> cachedNotes(Integer patientId) {
+        return patientNotesCache.getIfPresent(patientId, patientNoteVersionTracker.getVersion(patientId));
+    }
+}